@@ -11,28 +11,102 @@ public class ZetterConfig {
     static final ForgeConfigSpec serverSpec;
     public static final ZetterConfig.Server SERVER;
 
+    static final ForgeConfigSpec clientSpec;
+    public static final ZetterConfig.Client CLIENT;
+
     static {
         Pair<ZetterConfig.Server, ForgeConfigSpec> pair = new ForgeConfigSpec.Builder()
             .configure(ZetterConfig.Server::new);
         serverSpec = pair.getRight();
         SERVER = pair.getLeft();
+
+        Pair<ZetterConfig.Client, ForgeConfigSpec> clientPair = new ForgeConfigSpec.Builder()
+            .configure(ZetterConfig.Client::new);
+        clientSpec = clientPair.getRight();
+        CLIENT = clientPair.getLeft();
     }
 
     public static class Server {
         public final ForgeConfigSpec.ConfigValue<String> resolution;
+        public final ForgeConfigSpec.IntValue canvasMemoryBudget;
+        public final ForgeConfigSpec.ConfigValue<String> canvasColorEncoding;
+        public final ForgeConfigSpec.ConfigValue<String> canvasSweep;
+        public final ForgeConfigSpec.IntValue canvasSweepInterval;
+        public final ForgeConfigSpec.IntValue canvasSweepGracePeriod;
+        public final ForgeConfigSpec.IntValue canvasBandwidth;
 
         public Server(ForgeConfigSpec.Builder builder) {
             builder.comment("Painting options");
             builder.push("painting");
 
-            List<String> availableResolution = new ArrayList<>(Arrays.asList("x16", "x32", "x64"));
+            List<String> availableResolution = new ArrayList<>(Arrays.asList("x16", "x32", "x64", "x128", "x256"));
 
             this.resolution = builder
-                .comment("The size of paintings on that server [x16, x32, 64]")
+                .comment("The size of paintings on that server [x16, x32, x64, x128, x256]")
                 .translation("forge.configgui.zetter.painting.resolution")
                 .defineInList("resolution", availableResolution.get(0), availableResolution);
 
             builder.pop();
+
+            builder.comment("Storage options");
+            builder.push("storage");
+
+            this.canvasMemoryBudget = builder
+                .comment("How much memory loaded canvases could take before unused ones are unloaded, in megabytes")
+                .translation("forge.configgui.zetter.storage.canvasMemoryBudget")
+                .defineInRange("canvasMemoryBudget", 64, 1, 4096);
+
+            List<String> availableColorEncodings = new ArrayList<>(Arrays.asList("indexed", "raw"));
+
+            this.canvasColorEncoding = builder
+                .comment("How color data of new canvases is saved and synced: palette or RGB chosen by pixels, or 4 bytes per pixel as before [indexed, raw]")
+                .translation("forge.configgui.zetter.storage.canvasColorEncoding")
+                .defineInList("canvasColorEncoding", availableColorEncodings.get(0), availableColorEncodings);
+
+            List<String> availableSweepModes = new ArrayList<>(Arrays.asList("off", "report", "free"));
+
+            this.canvasSweep = builder
+                .comment("Look for canvases that are not in any inventory, container or entity anymore: only report them, or free their ids and data [off, report, free]")
+                .translation("forge.configgui.zetter.storage.canvasSweep")
+                .defineInList("canvasSweep", availableSweepModes.get(1), availableSweepModes);
+
+            this.canvasSweepInterval = builder
+                .comment("How often to look for lost canvases, in minutes")
+                .translation("forge.configgui.zetter.storage.canvasSweepInterval")
+                .defineInRange("canvasSweepInterval", 60, 10, 10080);
+
+            this.canvasSweepGracePeriod = builder
+                .comment("How long canvas should be lost before it's freed, in hours")
+                .translation("forge.configgui.zetter.storage.canvasSweepGracePeriod")
+                .defineInRange("canvasSweepGracePeriod", 72, 1, 8760);
+
+            builder.pop();
+
+            builder.comment("Network options");
+            builder.push("network");
+
+            this.canvasBandwidth = builder
+                .comment("How much canvas data could be sent to every player, in kilobytes per second")
+                .translation("forge.configgui.zetter.network.canvasBandwidth")
+                .defineInRange("canvasBandwidth", 256, 8, 65536);
+
+            builder.pop();
+        }
+    }
+
+    public static class Client {
+        public final ForgeConfigSpec.IntValue paintingCacheSize;
+
+        public Client(ForgeConfigSpec.Builder builder) {
+            builder.comment("Cache options");
+            builder.push("cache");
+
+            this.paintingCacheSize = builder
+                .comment("How much disk space paintings downloaded from servers could take, in megabytes, 0 to disable cache")
+                .translation("forge.configgui.zetter.cache.paintingCacheSize")
+                .defineInRange("paintingCacheSize", 128, 0, 16384);
+
+            builder.pop();
         }
     }
 }
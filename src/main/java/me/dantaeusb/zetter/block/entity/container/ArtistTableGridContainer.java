@@ -4,7 +4,6 @@ import com.google.common.collect.Lists;
 import me.dantaeusb.zetter.block.entity.ArtistTableBlockEntity;
 import me.dantaeusb.zetter.core.ItemStackHandlerListener;
 import me.dantaeusb.zetter.core.ZetterItems;
-import me.dantaeusb.zetter.item.CanvasItem;
 import me.dantaeusb.zetter.menu.ArtistTableMenu;
 import net.minecraft.world.entity.player.Player;
 import net.minecraft.world.item.ItemStack;
@@ -54,9 +53,9 @@ public class ArtistTableGridContainer extends ItemStackHandler {
     }
 
     /**
-     * All non-compound canvases are valid.
-     * Compound canvases are invalid for grid,
-     * they can be only split.
+     * All canvases are valid. Compound canvases
+     * can be combined with canvases of the same size
+     * into larger paintings, which do not fit the grid.
      *
      * @param index    Slot to query for validity
      * @param stack   Stack to test with for validity
@@ -64,8 +63,7 @@ public class ArtistTableGridContainer extends ItemStackHandler {
      * @return
      */
     public boolean isItemValid(int index, ItemStack stack) {
-        return  stack.getItem().equals(ZetterItems.CANVAS.get()) &&
-                !CanvasItem.isCompound(stack);
+        return stack.getItem().equals(ZetterItems.CANVAS.get());
     }
 
     @Override
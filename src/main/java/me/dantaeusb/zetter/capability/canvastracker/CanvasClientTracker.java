@@ -20,6 +20,8 @@ import java.util.BitSet;
 import java.util.Map;
 
 public class CanvasClientTracker implements CanvasTracker {
+    private static final String DEFAULT_CANVAS_CODE_PREFIX = CanvasData.CODE_PREFIX + "default_";
+
     private Level level;
     Map<String, AbstractCanvasData> canvases = Maps.newHashMap();
     Map<String, Long> timestamps = Maps.newHashMap();
@@ -35,13 +37,62 @@ public class CanvasClientTracker implements CanvasTracker {
         }
 
         this.level = level;
+    }
+
+    @Override
+    public Level getLevel() {
+        return this.level;
+    }
+
+    @Override
+    @Nullable
+    public <T extends AbstractCanvasData> T getCanvasData(String canvasCode) {
+        AbstractCanvasData canvasData = this.canvases.get(canvasCode);
+
+        if (canvasData == null && canvasCode != null && canvasCode.startsWith(DEFAULT_CANVAS_CODE_PREFIX)) {
+            canvasData = this.createDefaultCanvas(canvasCode);
+        }
+
+        return (T) canvasData;
+    }
+
+    /**
+     * @param canvasCode
+     * @return timestamp of the last sync, 0 if canvas was not synced
+     */
+    public long getTimestamp(String canvasCode) {
+        return this.timestamps.getOrDefault(canvasCode, 0L);
+    }
+
+    /**
+     * When canvas is updated in place with delta,
+     * it's the same as registered at this time
+     *
+     * @param canvasCode
+     * @param timestamp
+     */
+    public void setTimestamp(String canvasCode, long timestamp) {
+        this.timestamps.put(canvasCode, timestamp);
+    }
 
+    /**
+     * Blank canvases for items without canvas data. They're
+     * created on first use, with large shapes and resolutions
+     * textures for every shape would take too much memory
+     *
+     * @param canvasCode default canvas code
+     * @return null if it's not a shape of painting
+     */
+    private @Nullable CanvasData createDefaultCanvas(String canvasCode) {
         for (int[] size : CanvasCombinationAction.paintingShapes) {
-            final int resolution = Helper.getResolution().getNumeric();
             final int width = size[0];
             final int height = size[1];
 
-            final String canvasCode = CanvasData.getDefaultCanvasCode(width, height);
+            if (!canvasCode.equals(CanvasData.getDefaultCanvasCode(width, height))) {
+                continue;
+            }
+
+            final int resolution = Helper.getResolution().getNumeric();
             final CanvasData canvasData = CanvasData.BUILDER.createFresh(
                 Helper.getResolution(),
                 width * resolution,
@@ -51,18 +102,11 @@ public class CanvasClientTracker implements CanvasTracker {
 
             this.canvases.put(canvasCode, canvasData);
             CanvasRenderer.getInstance().addCanvas(canvasCode, canvasData);
-        }
-    }
 
-    @Override
-    public Level getLevel() {
-        return this.level;
-    }
+            return canvasData;
+        }
 
-    @Override
-    @Nullable
-    public <T extends AbstractCanvasData> T getCanvasData(String canvasCode) {
-        return (T) this.canvases.get(canvasCode);
+        return null;
     }
 
     /**
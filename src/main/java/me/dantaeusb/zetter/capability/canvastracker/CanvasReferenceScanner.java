@@ -0,0 +1,255 @@
+package me.dantaeusb.zetter.capability.canvastracker;
+
+import me.dantaeusb.zetter.Zetter;
+import me.dantaeusb.zetter.storage.CanvasData;
+import net.minecraft.nbt.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Looks for canvas codes in saved world data: chunks and
+ * entities in region files, player data and saved data.
+ *
+ * Every string tag is checked, so canvases are found
+ * in any container, including containers of other mods,
+ * as long as canvas item is saved with its tag.
+ *
+ * Files are only read, region files are parsed
+ * directly instead of opening them with RegionFile,
+ * which opens files for writing.
+ *
+ * Broken or half-written chunks and files are skipped
+ * and counted, canvases in them could be missed, so
+ * caller should not trust the scan if there were any.
+ */
+public class CanvasReferenceScanner {
+    private static final int SECTOR_SIZE = 4096;
+    private static final int REGION_CHUNKS = 1024;
+
+    private static final int COMPRESSION_GZIP = 1;
+    private static final int COMPRESSION_ZLIB = 2;
+    private static final int COMPRESSION_NONE = 3;
+    private static final int COMPRESSION_EXTERNAL = 128;
+
+    /**
+     * Scan every .mca file in region or entities directory
+     *
+     * @param directory
+     * @param reachable ids of found canvases
+     * @return amount of chunks and files that could not be read
+     * @throws IOException
+     */
+    public static int scanRegionDirectory(Path directory, BitSet reachable) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return 0;
+        }
+
+        int unreadable = 0;
+
+        try (DirectoryStream<Path> regionFiles = Files.newDirectoryStream(directory, "r.*.mca")) {
+            for (Path regionFile : regionFiles) {
+                try {
+                    unreadable += scanRegionFile(regionFile, reachable);
+                } catch (IOException e) {
+                    Zetter.LOG.warn("Could not read region file " + regionFile + ", skipping it", e);
+                    unreadable++;
+                }
+            }
+        }
+
+        return unreadable;
+    }
+
+    /**
+     * Scan gzipped NBT files, like player data or saved data,
+     * Zetter's own files are skipped
+     *
+     * @param directory
+     * @param reachable ids of found canvases
+     * @return amount of files that could not be read
+     * @throws IOException
+     */
+    public static int scanDataDirectory(Path directory, BitSet reachable) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return 0;
+        }
+
+        int unreadable = 0;
+
+        try (DirectoryStream<Path> dataFiles = Files.newDirectoryStream(directory, "*.dat")) {
+            for (Path dataFile : dataFiles) {
+                if (dataFile.getFileName().toString().startsWith(Zetter.MOD_ID)) {
+                    continue;
+                }
+
+                try {
+                    collect(NbtIo.readCompressed(dataFile.toFile()), reachable);
+                } catch (IOException | RuntimeException e) {
+                    Zetter.LOG.warn("Could not read " + dataFile + ", skipping it: " + e.getMessage());
+                    unreadable++;
+                }
+            }
+        }
+
+        return unreadable;
+    }
+
+    /**
+     * @param regionFile
+     * @param reachable ids of found canvases
+     * @return amount of chunks that could not be read
+     * @throws IOException if file header could not be read
+     */
+    private static int scanRegionFile(Path regionFile, BitSet reachable) throws IOException {
+        // r.<x>.<z>.mca
+        final String[] nameParts = regionFile.getFileName().toString().split("\\.");
+
+        if (nameParts.length != 4) {
+            return 0;
+        }
+
+        final int regionX;
+        final int regionZ;
+
+        try {
+            regionX = Integer.parseInt(nameParts[1]);
+            regionZ = Integer.parseInt(nameParts[2]);
+        } catch (NumberFormatException e) {
+            // Not a region file, game won't read it either
+            return 0;
+        }
+
+        int unreadable = 0;
+
+        try (FileChannel channel = FileChannel.open(regionFile, StandardOpenOption.READ)) {
+            if (channel.size() < SECTOR_SIZE * 2) {
+                return 0;
+            }
+
+            ByteBuffer header = readFully(channel, 0, SECTOR_SIZE);
+
+            for (int chunkIndex = 0; chunkIndex < REGION_CHUNKS; chunkIndex++) {
+                final int location = header.getInt(chunkIndex * 4);
+                final int sectorOffset = location >>> 8;
+                final int sectorCount = location & 0xFF;
+
+                if (sectorOffset < 2 || sectorCount == 0) {
+                    continue;
+                }
+
+                try {
+                    scanChunk(channel, regionFile, regionX, regionZ, chunkIndex, sectorOffset, sectorCount, reachable);
+                } catch (IOException | RuntimeException e) {
+                    Zetter.LOG.warn("Could not read chunk " + chunkIndex + " in " + regionFile + ", skipping it: " + e.getMessage());
+                    unreadable++;
+                }
+            }
+        }
+
+        return unreadable;
+    }
+
+    private static void scanChunk(FileChannel channel, Path regionFile, int regionX, int regionZ, int chunkIndex, int sectorOffset, int sectorCount, BitSet reachable) throws IOException {
+        ByteBuffer chunk = readFully(channel, (long) sectorOffset * SECTOR_SIZE, sectorCount * SECTOR_SIZE);
+        final int length = chunk.getInt();
+        final int compression = chunk.get() & 0xFF;
+
+        InputStream stream;
+
+        if ((compression & COMPRESSION_EXTERNAL) != 0) {
+            final int chunkX = regionX * 32 + (chunkIndex & 31);
+            final int chunkZ = regionZ * 32 + (chunkIndex >> 5);
+            Path externalFile = regionFile.resolveSibling("c." + chunkX + "." + chunkZ + ".mcc");
+
+            stream = new ByteArrayInputStream(Files.readAllBytes(externalFile));
+        } else {
+            if (length <= 1 || length - 1 > chunk.remaining()) {
+                throw new IOException("Broken chunk " + chunkIndex + " in " + regionFile);
+            }
+
+            stream = new ByteArrayInputStream(chunk.array(), chunk.position(), length - 1);
+        }
+
+        try (DataInputStream chunkStream = new DataInputStream(new BufferedInputStream(decompress(stream, compression & ~COMPRESSION_EXTERNAL)))) {
+            collect(NbtIo.read(chunkStream, NbtAccounter.UNLIMITED), reachable);
+        }
+    }
+
+    private static InputStream decompress(InputStream stream, int compression) throws IOException {
+        return switch (compression) {
+            case COMPRESSION_GZIP -> new GZIPInputStream(stream);
+            case COMPRESSION_ZLIB -> new InflaterInputStream(stream);
+            case COMPRESSION_NONE -> stream;
+            default -> throw new IOException("Unknown chunk compression " + compression);
+        };
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) == -1) {
+                break;
+            }
+        }
+
+        buffer.flip();
+
+        return buffer;
+    }
+
+    /**
+     * Walk the tag and mark every canvas code found
+     *
+     * @param tag
+     * @param reachable ids of found canvases
+     */
+    public static void collect(Tag tag, BitSet reachable) {
+        if (tag instanceof StringTag stringTag) {
+            final int canvasId = getCanvasId(stringTag.getAsString());
+
+            if (canvasId != -1) {
+                reachable.set(canvasId);
+            }
+        } else if (tag instanceof CompoundTag compoundTag) {
+            for (String key : compoundTag.getAllKeys()) {
+                collect(compoundTag.get(key), reachable);
+            }
+        } else if (tag instanceof ListTag listTag) {
+            for (Tag element : listTag) {
+                collect(element, reachable);
+            }
+        }
+    }
+
+    /**
+     * @param canvasCode
+     * @return id of the canvas, or -1 if it's not a canvas code
+     */
+    public static int getCanvasId(String canvasCode) {
+        final int prefixLength = CanvasData.CODE_PREFIX.length();
+
+        if (canvasCode.length() <= prefixLength || canvasCode.length() > prefixLength + 9 || !canvasCode.startsWith(CanvasData.CODE_PREFIX)) {
+            return -1;
+        }
+
+        for (int i = prefixLength; i < canvasCode.length(); i++) {
+            final char c = canvasCode.charAt(i);
+
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+        }
+
+        return Integer.parseInt(canvasCode.substring(prefixLength));
+    }
+}
@@ -1,24 +1,42 @@
 package me.dantaeusb.zetter.capability.canvastracker;
 
 import me.dantaeusb.zetter.Zetter;
+import me.dantaeusb.zetter.ZetterConfig;
 import me.dantaeusb.zetter.core.ZetterCanvasTypes;
-import me.dantaeusb.zetter.core.ZetterNetwork;
 import me.dantaeusb.zetter.core.ZetterRegistries;
 import me.dantaeusb.zetter.event.CanvasRegisterEvent;
 import me.dantaeusb.zetter.event.CanvasUnregisterEvent;
+import me.dantaeusb.zetter.menu.ArtistTableMenu;
+import me.dantaeusb.zetter.menu.EaselMenu;
+import me.dantaeusb.zetter.network.CanvasDispatcher;
+import me.dantaeusb.zetter.network.SharedPacket;
+import me.dantaeusb.zetter.network.packet.SCanvasDeltaSyncPacket;
+import me.dantaeusb.zetter.network.packet.SCanvasRegionSyncPacket;
 import me.dantaeusb.zetter.network.packet.SCanvasRemovalPacket;
 import me.dantaeusb.zetter.network.packet.SCanvasSyncPacket;
 import me.dantaeusb.zetter.storage.AbstractCanvasData;
 import me.dantaeusb.zetter.storage.CanvasData;
+import me.dantaeusb.zetter.storage.CanvasDataUpgrader;
 import me.dantaeusb.zetter.storage.CanvasDataType;
+import me.dantaeusb.zetter.storage.PaintingData;
+import me.dantaeusb.zetter.storage.PaintingIndex;
+import me.dantaeusb.zetter.storage.archive.CanvasArchiveStorage;
+import me.dantaeusb.zetter.storage.archive.CanvasPixelStore;
+import me.dantaeusb.zetter.storage.archive.CanvasResidencyManager;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.resources.ResourceLocation;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.level.Level;
+import net.minecraft.world.level.storage.DimensionDataStorage;
+import net.minecraft.world.level.storage.LevelResource;
 import net.minecraftforge.common.MinecraftForge;
-import net.minecraftforge.network.PacketDistributor;
+import net.minecraftforge.registries.IForgeRegistry;
 
 import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
 
 public class CanvasServerTracker implements CanvasTracker {
@@ -29,7 +47,34 @@ public class CanvasServerTracker implements CanvasTracker {
 
     private final Map<String, Vector<PlayerTrackingCanvas>> trackedCanvases = new HashMap<>();
     private final Vector<String> desyncCanvases = new Vector<>();
+
+    /**
+     * Version of canvas data that was sent to tracking
+     * players last time, to skip sync if nothing changed
+     */
+    private final Map<String, Integer> syncedVersions = new HashMap<>();
+
     private int ticksFromLastSync = 0;
+    private int ticksFromLastEviction = 0;
+
+    /**
+     * How often loaded canvases are checked
+     * against memory budget, in ticks
+     */
+    private static final int EVICTION_INTERVAL = 200;
+
+    /**
+     * Canvases and paintings are packed into archives,
+     * created on first access
+     */
+    private @Nullable CanvasArchiveStorage storage;
+    private boolean storageFailed = false;
+
+    private @Nullable PaintingIndex paintingIndex;
+
+    private final CanvasSweeper sweeper = new CanvasSweeper(this);
+    private final CanvasSyncStats syncStats = new CanvasSyncStats();
+    private final CanvasDispatcher dispatcher = new CanvasDispatcher();
 
     public CanvasServerTracker() {
         super();
@@ -82,6 +127,36 @@ public class CanvasServerTracker implements CanvasTracker {
 
     private void clearCanvasId(int id) {
         this.canvasIds.clear(id);
+        this.sweeper.forget(id);
+    }
+
+    public CanvasSweeper getSweeper() {
+        return this.sweeper;
+    }
+
+    /**
+     * Free canvas which is not referenced anywhere, called by sweeper
+     *
+     * @param canvasId
+     * @return false if canvas is used again
+     */
+    boolean freeOrphanedCanvas(int canvasId) {
+        final String canvasCode = CanvasData.getCanvasCode(canvasId);
+
+        if (!this.canvasIds.get(canvasId) || this.isCanvasInUse(canvasCode)) {
+            return false;
+        }
+
+        AbstractCanvasData canvasData = this.getCanvasData(canvasCode);
+
+        if (canvasData == null) {
+            // Id was taken, but canvas was never saved
+            this.clearCanvasId(canvasId);
+        } else {
+            this.unregisterCanvasData(canvasCode);
+        }
+
+        return true;
     }
 
     /*
@@ -112,72 +187,68 @@ public class CanvasServerTracker implements CanvasTracker {
         this.desyncCanvases.add(canvasCode);
     }
 
-    /**
-     * @todo: [MED] Remove deprecated sections on next release
-     * @param canvasCode
-     * @return
-     * @param <T>
-     */
     @Override
     @Nullable
-    @SuppressWarnings("unchecked")
     public <T extends AbstractCanvasData> T getCanvasData(String canvasCode) {
         if (canvasCode == null) {
             return null;
         }
 
-        return this.level.getServer().overworld().getDataStorage().get(
-            (compoundTag) -> {
-                int canvasTypeInt = -1;
-                String canvasResourceLocation = compoundTag.getString(AbstractCanvasData.NBT_TAG_TYPE);
+        CanvasArchiveStorage storage = this.getStorage();
 
-                if (canvasResourceLocation.isEmpty()) {
-                    if (!compoundTag.contains(AbstractCanvasData.NBT_TAG_TYPE_DEPRECATED)) {
-                        throw new IllegalStateException("Cannot find canvas type");
-                    }
+        if (storage != null && CanvasArchiveStorage.isArchivable(canvasCode)) {
+            return storage.get(this::loadUpgradedCanvasData, canvasCode);
+        }
 
-                    canvasTypeInt = compoundTag.getInt(AbstractCanvasData.NBT_TAG_TYPE_DEPRECATED);
-
-                    switch (canvasTypeInt) {
-                        case 1:
-                            canvasResourceLocation = ZetterCanvasTypes.CANVAS.get().resourceLocation.toString();
-                            break;
-                        case 0:
-                        case 2:
-                        default:
-                            canvasResourceLocation = ZetterCanvasTypes.PAINTING.get().resourceLocation.toString();
-                            break;
-                    }
-                }
+        return this.level.getServer().overworld().getDataStorage().get(this::loadUpgradedCanvasData, canvasCode);
+    }
 
-                // Minor beta versions were saving data without modid separator
-                boolean deprecatedType = !canvasResourceLocation.contains(":");
-                if (deprecatedType) {
-                    canvasResourceLocation = Zetter.MOD_ID + ":" + canvasResourceLocation;
-                }
+    /**
+     * Type is looked up in the registry, tag
+     * should be in current format already
+     *
+     * @param compoundTag
+     * @return
+     * @param <T>
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends AbstractCanvasData> T loadCanvasData(CompoundTag compoundTag) {
+        final String canvasResourceLocation = compoundTag.getString(AbstractCanvasData.NBT_TAG_TYPE);
+        final ResourceLocation typeLocation = ResourceLocation.tryParse(canvasResourceLocation);
+        final IForgeRegistry<CanvasDataType<?>> canvasTypes = ZetterRegistries.CANVAS_TYPE.get();
+
+        // Registry has default value, check key first
+        if (typeLocation == null || !canvasTypes.containsKey(typeLocation)) {
+            throw new IllegalStateException("No type of canvas " + canvasResourceLocation + " is registered");
+        }
 
-                final String finalCanvasResourceLocation = canvasResourceLocation;
-                Optional<? extends CanvasDataType<?>> type = ZetterRegistries.CANVAS_TYPE.get().getEntries().stream()
-                    .filter((entry) -> entry.getKey().location().toString().equals(finalCanvasResourceLocation))
-                    .map(Map.Entry::getValue)
-                    .findFirst();
+        T canvasData = (T) canvasTypes.getValue(typeLocation).loadFromNbt(compoundTag);
+        canvasData.correctData(this.level);
 
-                if (type.isEmpty()) {
-                    throw new IllegalStateException("No type of canvas " + canvasResourceLocation + " is registered");
-                }
+        return canvasData;
+    }
 
-                T canvasData = (T) type.get().loadFromNbt(compoundTag);
-                canvasData.correctData(this.level);
+    /**
+     * Canvases stored as separate files could be saved
+     * by older versions, archived canvases are upgraded
+     * when archives are opened, but ones that were skipped
+     * then, or all of them if that upgrade failed, are
+     * upgraded on load. Current tags are not changed.
+     *
+     * @param compoundTag
+     * @return
+     * @param <T>
+     */
+    private <T extends AbstractCanvasData> T loadUpgradedCanvasData(CompoundTag compoundTag) {
+        final boolean upgraded = CanvasDataUpgrader.upgrade(compoundTag);
+        T canvasData = this.loadCanvasData(compoundTag);
 
-                // Remove deprecated tags
-                if (canvasTypeInt != -1 || deprecatedType) {
-                    canvasData.setDirty();
-                }
+        // Remove deprecated tags
+        if (upgraded) {
+            canvasData.setDirty();
+        }
 
-                return canvasData;
-            },
-            canvasCode
-        );
+        return canvasData;
     }
 
     /**
@@ -197,7 +268,26 @@ public class CanvasServerTracker implements CanvasTracker {
         CanvasRegisterEvent.Pre preEvent = new CanvasRegisterEvent.Pre(canvasCode, canvasData, this.level, timestamp);
         MinecraftForge.EVENT_BUS.post(preEvent);
 
-        this.level.getServer().overworld().getDataStorage().set(canvasCode, canvasData);
+        // New canvases are encoded as server prefers, loaded ones keep their encoding
+        canvasData.setColorEncoding(
+            ZetterConfig.SERVER.canvasColorEncoding.get().equals("raw") ? AbstractCanvasData.ColorEncoding.RAW : AbstractCanvasData.ColorEncoding.INDEXED
+        );
+
+        CanvasArchiveStorage storage = this.getStorage();
+
+        if (storage != null && CanvasArchiveStorage.isArchivable(canvasCode)) {
+            storage.set(canvasCode, canvasData);
+        } else {
+            this.level.getServer().overworld().getDataStorage().set(canvasCode, canvasData);
+        }
+
+        // Versions are valid only for the same data object
+        this.syncedVersions.remove(canvasCode);
+
+        if (canvasData instanceof PaintingData paintingData && canvasCode.startsWith(PaintingData.CODE_PREFIX)) {
+            final int paintingId = Integer.parseInt(canvasCode.substring(PaintingData.CODE_PREFIX.length()));
+            this.getPaintingIndex().put(paintingId, paintingData);
+        }
 
         CanvasRegisterEvent.Post postEvent = new CanvasRegisterEvent.Post(canvasCode, canvasData, this.level, timestamp);
         MinecraftForge.EVENT_BUS.post(postEvent);
@@ -230,17 +320,27 @@ public class CanvasServerTracker implements CanvasTracker {
 
         int canvasId = Integer.parseInt(canvasCode.substring(CanvasData.CODE_PREFIX.length()));
         this.clearCanvasId(canvasId);
+        this.syncedVersions.remove(canvasCode);
+
+        CanvasArchiveStorage storage = this.getStorage();
+
+        if (storage != null && CanvasArchiveStorage.isArchivable(canvasCode)) {
+            storage.remove(canvasCode);
+        }
 
         Vector<PlayerTrackingCanvas> trackingPlayers = this.trackedCanvases.get(canvasCode);
 
         if (trackingPlayers != null) {
             for (PlayerTrackingCanvas trackingPlayer : trackingPlayers) {
-                SCanvasRemovalPacket canvasRemovalPacket = new SCanvasRemovalPacket(canvasCode, System.currentTimeMillis());
+                ServerPlayer player = this.level.getServer().getPlayerList().getPlayer(trackingPlayer.playerId);
 
-                ZetterNetwork.simpleChannel.send(PacketDistributor.PLAYER.with(
-                    () -> (ServerPlayer) this.level.getPlayerByUUID(trackingPlayer.playerId)),
-                    canvasRemovalPacket
-                );
+                if (player == null) {
+                    continue;
+                }
+
+                // Should come after syncs which are still queued
+                SCanvasRemovalPacket canvasRemovalPacket = new SCanvasRemovalPacket(canvasCode, System.currentTimeMillis());
+                this.dispatcher.send(player, canvasCode, canvasRemovalPacket, CanvasDispatcher.Kind.OTHER);
             }
         }
 
@@ -248,11 +348,199 @@ public class CanvasServerTracker implements CanvasTracker {
         MinecraftForge.EVENT_BUS.post(postEvent);
     }
 
+    /*
+     * Storage
+     */
+
+    /**
+     * Archive storage is opened on first access, at
+     * the same time canvases saved as separate files
+     * by previous versions are moved to archives.
+     *
+     * If archives cannot be opened, level data
+     * storage is used as before
+     *
+     * @return
+     */
+    private @Nullable CanvasArchiveStorage getStorage() {
+        if (this.storage != null || this.storageFailed) {
+            return this.storage;
+        }
+
+        Path dataDirectory = this.level.getServer().getWorldPath(LevelResource.ROOT).resolve("data");
+
+        try {
+            this.storage = new CanvasArchiveStorage(dataDirectory);
+        } catch (IOException e) {
+            Zetter.LOG.error("Could not open canvas archives, using separate files", e);
+            this.storageFailed = true;
+            return null;
+        }
+
+        try {
+            final int migrated = this.storage.migrate(dataDirectory, List.of(
+                CanvasData.CODE_PREFIX.substring(0, CanvasData.CODE_PREFIX.length() - 1),
+                PaintingData.CODE_PREFIX.substring(0, PaintingData.CODE_PREFIX.length() - 1)
+            ), CanvasDataUpgrader::upgrade);
+
+            if (migrated > 0) {
+                Zetter.LOG.info("Moved " + migrated + " canvases to archives");
+            }
+        } catch (IOException e) {
+            Zetter.LOG.error("Could not move canvases to archives, will retry on next start", e);
+        }
+
+        try {
+            final int upgraded = this.storage.upgrade(CanvasDataUpgrader::upgrade);
+
+            if (upgraded > 0) {
+                Zetter.LOG.info("Upgraded " + upgraded + " canvases saved by previous versions");
+            }
+        } catch (IOException e) {
+            Zetter.LOG.error("Could not upgrade canvases, will retry on next start", e);
+        }
+
+        try {
+            final int recovered = this.storage.recoverJournals();
+
+            if (recovered > 0) {
+                Zetter.LOG.warn("Applied journals of " + recovered + " canvases left after unexpected shutdown");
+            }
+        } catch (IOException e) {
+            Zetter.LOG.error("Could not recover canvas changes", e);
+        }
+
+        try {
+            if (this.storage.recoverPixels()) {
+                Zetter.LOG.warn("Recounted references to painting pixels after unexpected shutdown");
+            }
+        } catch (IOException e) {
+            Zetter.LOG.error("Could not recount references to painting pixels", e);
+        }
+
+        return this.storage;
+    }
+
+    /**
+     * Index of painting titles and authors, if there's
+     * no index yet (world was created before index was
+     * introduced), it's built from existing paintings once
+     *
+     * @return
+     */
+    public PaintingIndex getPaintingIndex() {
+        if (this.paintingIndex != null) {
+            return this.paintingIndex;
+        }
+
+        DimensionDataStorage dataStorage = this.level.getServer().overworld().getDataStorage();
+        this.paintingIndex = dataStorage.get(PaintingIndex::load, PaintingIndex.CODE);
+
+        if (this.paintingIndex == null) {
+            this.paintingIndex = new PaintingIndex();
+
+            for (int id = 0; id < this.getLastPaintingId() + 1; id++) {
+                AbstractCanvasData canvasData = this.getCanvasData(PaintingData.getCanvasCode(id));
+
+                if (canvasData instanceof PaintingData paintingData) {
+                    this.paintingIndex.put(id, paintingData);
+                }
+            }
+
+            dataStorage.set(PaintingIndex.CODE, this.paintingIndex);
+            Zetter.LOG.info("Indexed " + this.paintingIndex.size() + " paintings");
+        }
+
+        return this.paintingIndex;
+    }
+
+    /**
+     * Write changed canvases, called when overworld is saved
+     */
+    public void saveStorage() {
+        if (this.storage != null) {
+            this.storage.save();
+        }
+    }
+
+    /**
+     * Called when overworld is unloaded, after it's saved
+     */
+    public void closeStorage() {
+        if (this.storage != null) {
+            this.storage.save();
+            this.storage.close();
+            this.storage = null;
+        }
+    }
+
+    /**
+     * Residency of loaded canvases, hit, miss and eviction
+     * counters; null if archive storage is not used
+     * @return
+     */
+    public @Nullable CanvasResidencyManager getResidency() {
+        CanvasArchiveStorage storage = this.getStorage();
+
+        return storage != null ? storage.getResidency() : null;
+    }
+
+    /**
+     * Shared color data of paintings; null
+     * if archive storage is not used
+     * @return
+     */
+    public @Nullable CanvasPixelStore getPixelStore() {
+        CanvasArchiveStorage storage = this.getStorage();
+
+        return storage != null ? storage.getPixelStore() : null;
+    }
+
+    /**
+     * Remove canvases that are not tracked by anyone
+     * from memory if loaded canvases take more than
+     * configured budget
+     */
+    private void evictCanvases() {
+        if (this.storage == null) {
+            return;
+        }
+
+        final long memoryBudget = ZetterConfig.SERVER.canvasMemoryBudget.get() * 1024L * 1024L;
+
+        this.storage.evict(memoryBudget, canvasCode -> {
+            if (this.isCanvasInUse(canvasCode)) {
+                return false;
+            }
+
+            // Versions are valid only for the same data object
+            this.syncedVersions.remove(canvasCode);
+
+            return true;
+        });
+    }
+
+    boolean isCanvasInUse(String canvasCode) {
+        Vector<PlayerTrackingCanvas> trackingEntries = this.trackedCanvases.get(canvasCode);
+
+        return (trackingEntries != null && !trackingEntries.isEmpty()) || this.desyncCanvases.contains(canvasCode);
+    }
+
     /**
      * Server handling - ticking, tracking from players and syncing
      */
 
     public void tick() {
+        this.dispatcher.tick(this.level.getServer());
+        this.sweeper.tick(this.level.getServer());
+
+        this.ticksFromLastEviction++;
+
+        if (this.ticksFromLastEviction >= EVICTION_INTERVAL) {
+            this.evictCanvases();
+            this.ticksFromLastEviction = 0;
+        }
+
         this.ticksFromLastSync++;
 
         if (this.ticksFromLastSync < 20) {
@@ -265,11 +553,87 @@ public class CanvasServerTracker implements CanvasTracker {
         MinecraftServer server = this.level.getServer();
 
         for (String canvasCode : this.desyncCanvases) {
+            AbstractCanvasData canvasData = this.getCanvasData(canvasCode);
+
+            if (canvasData == null) {
+                continue;
+            }
+
+            Integer syncedVersion = this.syncedVersions.put(canvasCode, canvasData.getVersion());
+
+            if (syncedVersion != null && !canvasData.getTiles().hasChangedSince(syncedVersion)) {
+                continue;
+            }
+
+            final long timestamp = System.currentTimeMillis();
+
+            // Every packet is encoded once, on first send
+            SharedPacket syncPacket = null;
+            List<SharedPacket> regionPackets = null;
+
+            // Players who received previous syncs at the same time need the same delta
+            final Map<Integer, Optional<SCanvasDeltaSyncPacket>> deltaPackets = new HashMap<>();
+            final Map<DeltaKey, SharedPacket> encodedDeltaPackets = new HashMap<>();
+
             for (PlayerTrackingCanvas playerTrackingCanvas : this.getTrackingEntries(canvasCode)) {
                 ServerPlayer playerEntity = server.getPlayerList().getPlayer(playerTrackingCanvas.playerId);
 
-                SCanvasSyncPacket<?> canvasSyncMessage = new SCanvasSyncPacket(canvasCode, this.getCanvasData(canvasCode), System.currentTimeMillis());
-                ZetterNetwork.simpleChannel.send(PacketDistributor.PLAYER.with(() -> playerEntity), canvasSyncMessage);
+                if (playerEntity == null) {
+                    continue;
+                }
+
+                SCanvasDeltaSyncPacket deltaPacket = null;
+                final boolean sent;
+
+                if (playerTrackingCanvas.syncedCanvasData == canvasData && !needsFullSync(playerEntity, canvasCode)) {
+                    deltaPacket = deltaPackets.computeIfAbsent(
+                        playerTrackingCanvas.syncedVersion,
+                        version -> Optional.ofNullable(SCanvasDeltaSyncPacket.createDelta(canvasCode, canvasData, version, timestamp))
+                    ).orElse(null);
+                }
+
+                if (deltaPacket != null) {
+                    final SCanvasDeltaSyncPacket playerDeltaPacket = deltaPacket.withBaseTimestamp(playerTrackingCanvas.syncedTimestamp);
+
+                    final SharedPacket encodedDeltaPacket = encodedDeltaPackets.computeIfAbsent(
+                        new DeltaKey(playerTrackingCanvas.syncedVersion, playerTrackingCanvas.syncedTimestamp),
+                        key -> SharedPacket.encode(playerDeltaPacket)
+                    );
+
+                    sent = this.dispatcher.send(playerEntity, canvasCode, encodedDeltaPacket, CanvasDispatcher.Kind.DELTA);
+                } else {
+                    if (syncPacket == null) {
+                        syncPacket = SharedPacket.encode(new SCanvasSyncPacket<>(canvasCode, canvasData, timestamp));
+                    }
+
+                    sent = this.dispatcher.send(playerEntity, canvasCode, syncPacket, CanvasDispatcher.Kind.SYNC);
+
+                    if (sent && canvasData.isStreamed()) {
+                        if (regionPackets == null) {
+                            regionPackets = new ArrayList<>();
+
+                            for (SCanvasRegionSyncPacket regionPacket : SCanvasRegionSyncPacket.createBands(canvasCode, canvasData, timestamp)) {
+                                regionPackets.add(SharedPacket.encode(regionPacket));
+                            }
+                        }
+
+                        for (SharedPacket regionPacket : regionPackets) {
+                            this.dispatcher.send(playerEntity, canvasCode, regionPacket, CanvasDispatcher.Kind.BAND);
+                        }
+                    }
+                }
+
+                // Player's queue is full, player still has previous state
+                if (sent) {
+                    playerTrackingCanvas.markSynced(canvasData, timestamp);
+                }
+            }
+
+            this.syncStats.record(syncPacket);
+            this.syncStats.record(encodedDeltaPackets.values());
+
+            if (regionPackets != null) {
+                this.syncStats.record(regionPackets);
             }
         }
 
@@ -277,6 +641,41 @@ public class CanvasServerTracker implements CanvasTracker {
         this.ticksFromLastSync = 0;
     }
 
+    /**
+     * Players painting on the canvas or using it on artist
+     * table need full sync: easel applies local changes on
+     * top of synced canvas, and artist table updates preview
+     * when canvas is registered
+     *
+     * @param player
+     * @param canvasCode
+     * @return
+     */
+    private static boolean needsFullSync(ServerPlayer player, String canvasCode) {
+        if (player.containerMenu instanceof EaselMenu easelMenu) {
+            return canvasCode.equals(easelMenu.getCanvasItemCode());
+        }
+
+        return player.containerMenu instanceof ArtistTableMenu;
+    }
+
+    /**
+     * Remember which data player has received outside of
+     * regular sync, so next time only changes are sent
+     *
+     * @param playerId
+     * @param canvasCode
+     * @param canvasData
+     * @param timestamp of the sync packet
+     */
+    public void markCanvasSynced(UUID playerId, String canvasCode, AbstractCanvasData canvasData, long timestamp) {
+        for (PlayerTrackingCanvas playerTrackingCanvas : this.getTrackingEntries(canvasCode)) {
+            if (playerTrackingCanvas.playerId.equals(playerId)) {
+                playerTrackingCanvas.markSynced(canvasData, timestamp);
+            }
+        }
+    }
+
     /**
      * @todo: [MED] check if already tracking
      * @param playerId
@@ -313,13 +712,38 @@ public class CanvasServerTracker implements CanvasTracker {
         return this.trackedCanvases.computeIfAbsent(canvasName, k -> new Vector<>());
     }
 
+    public CanvasDispatcher getDispatcher() {
+        return this.dispatcher;
+    }
+
+    public CanvasSyncStats getSyncStats() {
+        return this.syncStats;
+    }
+
+    private record DeltaKey(int sinceVersion, long baseTimestamp) {}
+
     private static class PlayerTrackingCanvas {
         public final UUID playerId;
         public final String canvasName;
 
+        /**
+         * Data object, its version and timestamp of the last
+         * sync player has received, versions are valid only
+         * for the same data object, otherwise full sync is sent
+         */
+        private @Nullable AbstractCanvasData syncedCanvasData;
+        private int syncedVersion;
+        private long syncedTimestamp;
+
         PlayerTrackingCanvas(UUID playerId, String canvasName) {
             this.playerId = playerId;
             this.canvasName = canvasName;
         }
+
+        private void markSynced(AbstractCanvasData canvasData, long timestamp) {
+            this.syncedCanvasData = canvasData;
+            this.syncedVersion = canvasData.getVersion();
+            this.syncedTimestamp = timestamp;
+        }
     }
 }
\ No newline at end of file
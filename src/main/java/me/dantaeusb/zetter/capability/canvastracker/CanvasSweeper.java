@@ -0,0 +1,429 @@
+package me.dantaeusb.zetter.capability.canvastracker;
+
+import me.dantaeusb.zetter.Zetter;
+import me.dantaeusb.zetter.ZetterConfig;
+import me.dantaeusb.zetter.storage.CanvasData;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.network.chat.Component;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ChunkHolder;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.dimension.DimensionType;
+import net.minecraft.world.level.storage.LevelResource;
+
+import javax.annotation.Nullable;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Finds canvases which are not referenced anywhere anymore:
+ * burned in lava, despawned, or removed with the region,
+ * and frees their ids and data.
+ *
+ * Sweep is incremental: saved world (region files, player
+ * and saved data) is scanned on a separate thread, loaded
+ * chunks, entities and online players are scanned on the
+ * server thread in small batches every tick.
+ *
+ * Canvas that was not found is remembered as orphaned,
+ * and is freed only if it's still orphaned after grace
+ * period, so canvas moved while sweep was running, or
+ * in a chunk that is not saved yet, is not lost.
+ * In report mode, orphaned canvases are only counted.
+ * If some chunks or files could not be read, sweep
+ * is incomplete and nothing is freed.
+ */
+public class CanvasSweeper {
+    private static final int CHUNKS_PER_TICK = 8;
+    private static final int ENTITIES_PER_TICK = 128;
+    private static final int FREE_PER_TICK = 32;
+
+    private static final String NBT_TAG_ID = "Id";
+    private static final String NBT_TAG_SINCE = "Since";
+
+    private final CanvasServerTracker canvasTracker;
+
+    /**
+     * Canvas id to time when canvas
+     * was not found for the first time
+     */
+    private final Map<Integer, Long> orphanedSince = new HashMap<>();
+
+    private @Nullable Sweep sweep;
+    private @Nullable Report lastReport;
+    private long lastSweepTime = System.currentTimeMillis();
+
+    public CanvasSweeper(CanvasServerTracker canvasTracker) {
+        this.canvasTracker = canvasTracker;
+    }
+
+    /**
+     * Start sweep if it's not running yet
+     *
+     * @param server
+     * @param free if orphaned canvases after grace period should be freed
+     * @param source who should get the report, null for scheduled sweeps
+     * @return false if sweep is already running
+     */
+    public boolean start(MinecraftServer server, boolean free, @Nullable CommandSourceStack source) {
+        if (this.sweep != null) {
+            return false;
+        }
+
+        this.sweep = new Sweep(server, this.canvasTracker.getCanvasIds(), free, source);
+
+        return true;
+    }
+
+    public boolean isRunning() {
+        return this.sweep != null;
+    }
+
+    public @Nullable Report getLastReport() {
+        return this.lastReport;
+    }
+
+    /**
+     * Canvas id was freed or reused, it should not be freed again
+     * @param canvasId
+     */
+    public void forget(int canvasId) {
+        this.orphanedSince.remove(canvasId);
+
+        if (this.sweep != null) {
+            this.sweep.candidates.clear(canvasId);
+        }
+    }
+
+    public void tick(MinecraftServer server) {
+        if (this.sweep == null) {
+            final String mode = ZetterConfig.SERVER.canvasSweep.get();
+            final long interval = TimeUnit.MINUTES.toMillis(ZetterConfig.SERVER.canvasSweepInterval.get());
+
+            if (!mode.equals("off") && System.currentTimeMillis() - this.lastSweepTime >= interval) {
+                this.start(server, mode.equals("free"), null);
+            }
+
+            return;
+        }
+
+        try {
+            if (this.sweep.freeQueue == null) {
+                this.scan(this.sweep);
+            } else {
+                this.free(this.sweep);
+            }
+        } catch (Exception e) {
+            Zetter.LOG.error("Could not look for lost canvases", e);
+            this.finish(new Report(this.sweep.startTime, !this.sweep.free, 0, 0, 0, 0, 0, Objects.toString(e.getMessage(), e.getClass().getSimpleName())));
+        }
+    }
+
+    /**
+     * Scan a batch of loaded chunks and entities, when everything
+     * is scanned and saved world is scanned, find orphaned canvases
+     *
+     * @param sweep
+     */
+    private void scan(Sweep sweep) throws ExecutionException, InterruptedException {
+        for (int i = 0; i < CHUNKS_PER_TICK && !sweep.chunks.isEmpty(); i++) {
+            LoadedChunk loadedChunk = sweep.chunks.poll();
+            LevelChunk chunk = loadedChunk.level.getChunkSource().getChunkNow(loadedChunk.pos.x, loadedChunk.pos.z);
+
+            if (chunk == null) {
+                continue;
+            }
+
+            for (BlockEntity blockEntity : chunk.getBlockEntities().values()) {
+                CanvasReferenceScanner.collect(blockEntity.saveWithoutMetadata(), sweep.reachable);
+            }
+        }
+
+        for (int i = 0; i < ENTITIES_PER_TICK && !sweep.entities.isEmpty(); i++) {
+            Entity entity = sweep.entities.poll();
+
+            if (!entity.isRemoved()) {
+                CanvasReferenceScanner.collect(entity.saveWithoutId(new CompoundTag()), sweep.reachable);
+            }
+        }
+
+        if (!sweep.chunks.isEmpty() || !sweep.entities.isEmpty() || !sweep.diskScan.isDone()) {
+            return;
+        }
+
+        // Players could move canvases around while we were scanning, check them last
+        for (ServerPlayer player : sweep.server.getPlayerList().getPlayers()) {
+            CanvasReferenceScanner.collect(player.saveWithoutId(new CompoundTag()), sweep.reachable);
+            CanvasReferenceScanner.collect(player.containerMenu.getCarried().save(new CompoundTag()), sweep.reachable);
+        }
+
+        final DiskScan diskScan = sweep.diskScan.get();
+        sweep.reachable.or(diskScan.reachable());
+        sweep.unreadable = diskScan.unreadable();
+
+        BitSet orphaned = (BitSet) sweep.candidates.clone();
+        orphaned.andNot(sweep.reachable);
+
+        for (int canvasId = orphaned.nextSetBit(0); canvasId >= 0; canvasId = orphaned.nextSetBit(canvasId + 1)) {
+            if (this.canvasTracker.isCanvasInUse(CanvasData.getCanvasCode(canvasId))) {
+                orphaned.clear(canvasId);
+            }
+        }
+
+        final long now = System.currentTimeMillis();
+        final long gracePeriod = TimeUnit.HOURS.toMillis(ZetterConfig.SERVER.canvasSweepGracePeriod.get());
+
+        // Found canvases are not orphaned anymore
+        this.orphanedSince.keySet().removeIf(canvasId -> !orphaned.get(canvasId));
+
+        sweep.freeQueue = new ArrayDeque<>();
+
+        for (int canvasId = orphaned.nextSetBit(0); canvasId >= 0; canvasId = orphaned.nextSetBit(canvasId + 1)) {
+            // Canvas could be in unreadable chunk, grace period starts only when it's surely not found
+            final Long since = sweep.unreadable > 0 ? this.orphanedSince.get(canvasId) : this.orphanedSince.computeIfAbsent(canvasId, k -> now);
+
+            if (since != null && now - since >= gracePeriod) {
+                sweep.freeQueue.add(canvasId);
+            }
+        }
+
+        sweep.orphaned = orphaned.cardinality();
+        sweep.expired = sweep.freeQueue.size();
+
+        if (!sweep.free || sweep.unreadable > 0) {
+            sweep.freeQueue.clear();
+        }
+    }
+
+    private void free(Sweep sweep) {
+        for (int i = 0; i < FREE_PER_TICK && !sweep.freeQueue.isEmpty(); i++) {
+            final int canvasId = sweep.freeQueue.poll();
+
+            // Could be found or used again since scan
+            if (!sweep.candidates.get(canvasId) || !this.orphanedSince.containsKey(canvasId)) {
+                continue;
+            }
+
+            if (this.canvasTracker.freeOrphanedCanvas(canvasId)) {
+                sweep.freed++;
+            }
+        }
+
+        if (sweep.freeQueue.isEmpty()) {
+            this.finish(new Report(
+                sweep.startTime,
+                !sweep.free,
+                sweep.candidates.cardinality(),
+                sweep.orphaned,
+                sweep.expired,
+                sweep.freed,
+                sweep.unreadable,
+                null
+            ));
+        }
+    }
+
+    private void finish(Report report) {
+        Sweep sweep = this.sweep;
+
+        this.lastReport = report;
+        this.lastSweepTime = System.currentTimeMillis();
+        this.sweep = null;
+
+        if (sweep != null) {
+            sweep.executor.shutdownNow();
+        }
+
+        if (report.error != null) {
+            if (sweep != null && sweep.source != null) {
+                sweep.source.sendFailure(Component.translatable("console.zetter.error.sweep_failed", report.error));
+            }
+
+            return;
+        }
+
+        Zetter.LOG.info(
+            (report.dryRun ? "Canvas sweep report: " : "Canvas sweep: ")
+            + report.canvases + " canvases, " + report.orphaned + " not found, "
+            + report.expired + " not found for longer than grace period, " + report.freed + " freed"
+        );
+
+        if (report.unreadable > 0) {
+            Zetter.LOG.warn("Canvas sweep is incomplete, " + report.unreadable + " chunks or files could not be read, nothing was freed");
+        }
+
+        if (sweep != null && sweep.source != null) {
+            sweep.source.sendSuccess(report.toComponent(), true);
+        }
+    }
+
+    /*
+     * Serialization
+     */
+
+    public ListTag save() {
+        ListTag orphanedTag = new ListTag();
+
+        for (Map.Entry<Integer, Long> entry : this.orphanedSince.entrySet()) {
+            CompoundTag entryTag = new CompoundTag();
+            entryTag.putInt(NBT_TAG_ID, entry.getKey());
+            entryTag.putLong(NBT_TAG_SINCE, entry.getValue());
+
+            orphanedTag.add(entryTag);
+        }
+
+        return orphanedTag;
+    }
+
+    public void load(ListTag orphanedTag) {
+        this.orphanedSince.clear();
+
+        for (int i = 0; i < orphanedTag.size(); i++) {
+            CompoundTag entryTag = orphanedTag.getCompound(i);
+            this.orphanedSince.put(entryTag.getInt(NBT_TAG_ID), entryTag.getLong(NBT_TAG_SINCE));
+        }
+    }
+
+    /**
+     * State of running sweep, created on the server thread
+     */
+    private static class Sweep {
+        private final MinecraftServer server;
+        private final long startTime = System.currentTimeMillis();
+        private final boolean free;
+        private final @Nullable CommandSourceStack source;
+
+        /**
+         * Canvas ids which existed when sweep started,
+         * canvases created later are not checked
+         */
+        private final BitSet candidates;
+        private final BitSet reachable = new BitSet();
+
+        private final Deque<LoadedChunk> chunks = new ArrayDeque<>();
+        private final Deque<Entity> entities = new ArrayDeque<>();
+
+        private final ExecutorService executor;
+        private final Future<DiskScan> diskScan;
+
+        private @Nullable Deque<Integer> freeQueue;
+        private int orphaned;
+        private int expired;
+        private int freed;
+        private int unreadable;
+
+        private Sweep(MinecraftServer server, BitSet canvasIds, boolean free, @Nullable CommandSourceStack source) {
+            this.server = server;
+            this.free = free;
+            this.source = source;
+
+            this.candidates = (BitSet) canvasIds.clone();
+            this.candidates.clear(0);
+
+            final Path worldDirectory = server.getWorldPath(LevelResource.ROOT);
+            List<Path> regionDirectories = new ArrayList<>();
+            List<Path> dataDirectories = new ArrayList<>();
+
+            dataDirectories.add(server.getWorldPath(LevelResource.PLAYER_DATA_DIR));
+
+            for (ServerLevel level : server.getAllLevels()) {
+                Path levelDirectory = DimensionType.getStorageFolder(level.dimension(), worldDirectory);
+                regionDirectories.add(levelDirectory.resolve("region"));
+                regionDirectories.add(levelDirectory.resolve("entities"));
+                dataDirectories.add(levelDirectory.resolve("data"));
+
+                // Every chunk holder, not only player and forced chunks: spawn chunks and other tickets too
+                for (ChunkHolder chunkHolder : level.getChunkSource().chunkMap.getChunks()) {
+                    if (chunkHolder.getFullChunk() != null) {
+                        this.chunks.add(new LoadedChunk(level, chunkHolder.getPos()));
+                    }
+                }
+
+                for (Entity entity : level.getAllEntities()) {
+                    if (!(entity instanceof ServerPlayer)) {
+                        this.entities.add(entity);
+                    }
+                }
+            }
+
+            this.executor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "Zetter Canvas Sweep");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+
+                return thread;
+            });
+
+            this.diskScan = this.executor.submit(() -> {
+                BitSet reachable = new BitSet();
+                int unreadable = 0;
+
+                for (Path regionDirectory : regionDirectories) {
+                    unreadable += CanvasReferenceScanner.scanRegionDirectory(regionDirectory, reachable);
+                }
+
+                for (Path dataDirectory : dataDirectories) {
+                    unreadable += CanvasReferenceScanner.scanDataDirectory(dataDirectory, reachable);
+                }
+
+                return new DiskScan(reachable, unreadable);
+            });
+        }
+    }
+
+    private record LoadedChunk(ServerLevel level, ChunkPos pos) {
+    }
+
+    /**
+     * @param reachable ids of canvases found in saved world
+     * @param unreadable amount of chunks and files that could not be read
+     */
+    private record DiskScan(BitSet reachable, int unreadable) {
+    }
+
+    /**
+     * Result of the last sweep
+     *
+     * @param startTime
+     * @param dryRun if orphaned canvases were only counted
+     * @param canvases amount of checked canvases
+     * @param orphaned canvases that were not found
+     * @param expired canvases that were not found for longer than grace period
+     * @param freed canvases that were freed
+     * @param unreadable chunks and files that could not be read, nothing is freed then
+     * @param error why sweep failed, nothing is freed then
+     */
+    public record Report(long startTime, boolean dryRun, int canvases, int orphaned, int expired, int freed, int unreadable, @Nullable String error) {
+        public Component toComponent() {
+            if (this.error != null) {
+                return Component.translatable("console.zetter.error.sweep_failed", this.error);
+            }
+
+            if (this.unreadable > 0) {
+                return Component.translatable(
+                    "console.zetter.result.sweep_incomplete",
+                    this.canvases,
+                    this.orphaned,
+                    this.expired,
+                    this.unreadable
+                );
+            }
+
+            return Component.translatable(
+                this.dryRun ? "console.zetter.result.sweep_report" : "console.zetter.result.sweep_freed",
+                this.canvases,
+                this.orphaned,
+                this.expired,
+                this.freed
+            );
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package me.dantaeusb.zetter.capability.canvastracker;
+
+import me.dantaeusb.zetter.network.SharedPacket;
+
+import javax.annotation.Nullable;
+import java.util.Collection;
+
+/**
+ * Counts how many sync packets were encoded, and how
+ * many encodes were saved by sending the same encoded
+ * packet to every player tracking the canvas
+ */
+public class CanvasSyncStats {
+    private long encodedPackets = 0;
+    private long encodedBytes = 0;
+    private long savedEncodes = 0;
+    private long savedBytes = 0;
+
+    /**
+     * @param packet null if nothing was sent
+     */
+    public void record(@Nullable SharedPacket packet) {
+        if (packet == null || packet.getRecipients() == 0) {
+            return;
+        }
+
+        this.encodedPackets++;
+        this.encodedBytes += packet.getSize();
+        this.savedEncodes += packet.getRecipients() - 1;
+        this.savedBytes += (long) packet.getSize() * (packet.getRecipients() - 1);
+    }
+
+    public void record(Collection<SharedPacket> packets) {
+        for (SharedPacket packet : packets) {
+            this.record(packet);
+        }
+    }
+
+    public long getEncodedPackets() {
+        return this.encodedPackets;
+    }
+
+    public long getEncodedBytes() {
+        return this.encodedBytes;
+    }
+
+    public long getSavedEncodes() {
+        return this.savedEncodes;
+    }
+
+    public long getSavedBytes() {
+        return this.savedBytes;
+    }
+}
@@ -9,6 +9,7 @@ public class CanvasTrackerStorage {
     private static final String NBT_TAG_CANVAS_LAST_ID = "LastCanvasId";
     private static final String NBT_TAG_CANVAS_IDS = "CanvasIds";
     private static final String NBT_TAG_PAINTING_LAST_ID = "LastPaintingId";
+    private static final String NBT_TAG_ORPHANED_CANVASES = "OrphanedCanvases";
 
     public static Tag save(CanvasTracker canvasTracker) {
         CompoundTag compound = new CompoundTag();
@@ -17,6 +18,10 @@ public class CanvasTrackerStorage {
         compound.putInt(NBT_TAG_CANVAS_LAST_ID, canvasTracker.getLastCanvasId());
         compound.putInt(NBT_TAG_PAINTING_LAST_ID, canvasTracker.getLastPaintingId());
 
+        if (canvasTracker instanceof CanvasServerTracker canvasServerTracker) {
+            compound.put(NBT_TAG_ORPHANED_CANVASES, canvasServerTracker.getSweeper().save());
+        }
+
         return compound;
     }
 
@@ -40,6 +45,10 @@ public class CanvasTrackerStorage {
             }
 
             canvasTracker.setLastPaintingId(compoundTag.getInt(NBT_TAG_PAINTING_LAST_ID));
+
+            if (canvasTracker instanceof CanvasServerTracker canvasServerTracker) {
+                canvasServerTracker.getSweeper().load(compoundTag.getList(NBT_TAG_ORPHANED_CANVASES, Tag.TAG_COMPOUND));
+            }
         }
     }
 }
@@ -1,42 +1,294 @@
-package me.dantaeusb.zetter.capability.paintingregistry;
-
-import net.minecraft.world.level.Level;
-
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-
-/**
- * Painting registry can be used to control
- * and moderate painting that exist on server.
- * It is just a list of strings.
- *
- * @todo: [HIGH] Serializer needs more love, it's poor
- */
-public class PaintingRegistry {
-    private final Level world;
-    private ArrayList<String> paintingCanvasCodeList = new ArrayList<>();
-
-    public PaintingRegistry(Level world) {
-        super();
-
-        this.world = world;
-    }
-
-    /**
-     * World accessor for canvas tracker
-     *
-     * @return
-     */
-    public Level getWorld() {
-        return this.world;
-    }
-
-    public void addPaintingCanvasCode(String canvasCode) {
-        this.paintingCanvasCodeList.add(canvasCode);
-    }
-
-    public List<String> getPaintingCanvasCodes() {
-        return Collections.unmodifiableList(this.paintingCanvasCodeList);
-    }
-}
+package me.dantaeusb.zetter.capability.paintingregistry;
+
+import me.dantaeusb.zetter.Zetter;
+import me.dantaeusb.zetter.capability.canvastracker.CanvasServerTracker;
+import me.dantaeusb.zetter.core.Helper;
+import me.dantaeusb.zetter.storage.PaintingData;
+import me.dantaeusb.zetter.storage.PaintingIndex;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.storage.DimensionDataStorage;
+
+import javax.annotation.Nullable;
+import java.util.*;
+
+/**
+ * Painting registry can be used to control
+ * and moderate painting that exist on server.
+ *
+ * Keeps painting ids as a bit set, and for every painting
+ * author and creation time, so paintings could be listed
+ * page by page, by author or by creation time.
+ *
+ * Records are split into {@link PaintingRegistryChunk}s
+ * saved as separate SavedData, which are loaded on
+ * first access; only changed chunks are written.
+ */
+public class PaintingRegistry {
+    private final Level world;
+
+    private final BitSet paintingIds = new BitSet();
+    private final Map<UUID, BitSet> byAuthor = new HashMap<>();
+    private final TreeMap<Integer, PaintingRegistryChunk> chunks = new TreeMap<>();
+
+    private int lastChunkIndex = -1;
+    private boolean loaded = false;
+
+    /**
+     * Codes from the registry saved by previous
+     * versions, added when registry is loaded
+     */
+    private final List<Integer> legacyPaintingIds = new ArrayList<>();
+
+    public PaintingRegistry(Level world) {
+        super();
+
+        this.world = world;
+    }
+
+    /**
+     * World accessor for canvas tracker
+     *
+     * @return
+     */
+    public Level getWorld() {
+        return this.world;
+    }
+
+    /**
+     * Add painting, or update author if it's already registered
+     *
+     * @param paintingId
+     * @param authorUuid
+     * @param createdAt timestamp
+     */
+    public void addPainting(int paintingId, UUID authorUuid, long createdAt) {
+        this.ensureLoaded();
+
+        final int chunkIndex = PaintingRegistryChunk.getChunkIndex(paintingId);
+        PaintingRegistryChunk chunk = this.chunks.get(chunkIndex);
+
+        if (chunk == null) {
+            chunk = new PaintingRegistryChunk();
+            this.getDataStorage().set(PaintingRegistryChunk.getCode(chunkIndex), chunk);
+
+            this.chunks.put(chunkIndex, chunk);
+            this.lastChunkIndex = Math.max(this.lastChunkIndex, chunkIndex);
+        }
+
+        final int index = chunk.indexOf(paintingId);
+
+        if (index >= 0) {
+            removeFromLookup(this.byAuthor, chunk.getAuthorUuid(index), paintingId);
+        }
+
+        chunk.put(paintingId, authorUuid, createdAt);
+
+        this.paintingIds.set(paintingId);
+        this.byAuthor.computeIfAbsent(authorUuid, k -> new BitSet()).set(paintingId);
+    }
+
+    public boolean contains(int paintingId) {
+        this.ensureLoaded();
+
+        return this.paintingIds.get(paintingId);
+    }
+
+    public int size() {
+        this.ensureLoaded();
+
+        return this.paintingIds.cardinality();
+    }
+
+    /**
+     * @param paintingId
+     * @return creation time, 0 if unknown or not registered
+     */
+    public long getCreatedAt(int paintingId) {
+        this.ensureLoaded();
+
+        PaintingRegistryChunk chunk = this.chunks.get(PaintingRegistryChunk.getChunkIndex(paintingId));
+        final int index = chunk != null ? chunk.indexOf(paintingId) : -1;
+
+        return index >= 0 ? chunk.getCreatedAt(index) : 0L;
+    }
+
+    public @Nullable UUID getAuthorUuid(int paintingId) {
+        this.ensureLoaded();
+
+        PaintingRegistryChunk chunk = this.chunks.get(PaintingRegistryChunk.getChunkIndex(paintingId));
+        final int index = chunk != null ? chunk.indexOf(paintingId) : -1;
+
+        return index >= 0 ? chunk.getAuthorUuid(index) : null;
+    }
+
+    /*
+     * Paged queries, every page starts after the
+     * last id of previous page, start with -1
+     */
+
+    /**
+     * @param afterId last id of previous page
+     * @param limit
+     * @return painting ids in order of creation
+     */
+    public List<Integer> getPaintingIds(int afterId, int limit) {
+        this.ensureLoaded();
+
+        return getPage(this.paintingIds, afterId, limit);
+    }
+
+    /**
+     * @param authorUuid
+     * @param afterId last id of previous page
+     * @param limit
+     * @return painting ids of given author in order of creation
+     */
+    public List<Integer> getPaintingIdsByAuthor(UUID authorUuid, int afterId, int limit) {
+        this.ensureLoaded();
+
+        BitSet authorPaintingIds = this.byAuthor.get(authorUuid);
+
+        return authorPaintingIds != null ? getPage(authorPaintingIds, afterId, limit) : Collections.emptyList();
+    }
+
+    /**
+     * Paintings are in order of creation in chunks,
+     * so we find first chunk with paintings created
+     * after given time and go on from there
+     *
+     * @param from timestamp, inclusive
+     * @param to timestamp, exclusive
+     * @param afterId last id of previous page
+     * @param limit
+     * @return painting ids created in given time
+     */
+    public List<Integer> getPaintingIdsCreatedBetween(long from, long to, int afterId, int limit) {
+        this.ensureLoaded();
+
+        List<Integer> page = new ArrayList<>();
+
+        for (PaintingRegistryChunk chunk : this.chunks.tailMap(PaintingRegistryChunk.getChunkIndex(Math.max(afterId, 0)), true).values()) {
+            if (chunk.size() == 0 || chunk.getCreatedAt(chunk.size() - 1) < from) {
+                continue;
+            }
+
+            for (int index = chunk.indexOfCreatedAfter(from); index < chunk.size(); index++) {
+                if (chunk.getCreatedAt(index) >= to || page.size() >= limit) {
+                    return page;
+                }
+
+                if (chunk.getId(index) > afterId) {
+                    page.add(chunk.getId(index));
+                }
+            }
+        }
+
+        return page;
+    }
+
+    private static List<Integer> getPage(BitSet ids, int afterId, int limit) {
+        List<Integer> page = new ArrayList<>(Math.min(limit, 64));
+
+        for (int id = ids.nextSetBit(afterId + 1); id >= 0 && page.size() < limit; id = ids.nextSetBit(id + 1)) {
+            page.add(id);
+        }
+
+        return page;
+    }
+
+    private static void removeFromLookup(Map<UUID, BitSet> lookup, UUID key, int paintingId) {
+        BitSet paintingIds = lookup.get(key);
+
+        if (paintingIds == null) {
+            return;
+        }
+
+        paintingIds.clear(paintingId);
+
+        if (paintingIds.isEmpty()) {
+            lookup.remove(key);
+        }
+    }
+
+    /*
+     * Loading
+     */
+
+    public int getLastChunkIndex() {
+        return this.lastChunkIndex;
+    }
+
+    public void setLastChunkIndex(int lastChunkIndex) {
+        this.lastChunkIndex = lastChunkIndex;
+    }
+
+    /**
+     * Painting from the list saved by previous versions,
+     * it's moved to chunks when registry is loaded
+     * @param canvasCode
+     */
+    public void addLegacyPaintingCanvasCode(String canvasCode) {
+        if (!canvasCode.startsWith(PaintingData.CODE_PREFIX)) {
+            Zetter.LOG.warn("Unexpected code " + canvasCode + " in painting registry");
+            return;
+        }
+
+        try {
+            this.legacyPaintingIds.add(Integer.parseInt(canvasCode.substring(PaintingData.CODE_PREFIX.length())));
+        } catch (NumberFormatException e) {
+            Zetter.LOG.warn("Unexpected code " + canvasCode + " in painting registry");
+        }
+    }
+
+    /**
+     * Paintings from the old list that are not moved yet,
+     * if registry wasn't used since it was loaded
+     *
+     * @return
+     */
+    public List<Integer> getLegacyPaintingIds() {
+        return Collections.unmodifiableList(this.legacyPaintingIds);
+    }
+
+    private void ensureLoaded() {
+        if (this.loaded) {
+            return;
+        }
+
+        this.loaded = true;
+        DimensionDataStorage dataStorage = this.getDataStorage();
+
+        for (int chunkIndex = 0; chunkIndex <= this.lastChunkIndex; chunkIndex++) {
+            PaintingRegistryChunk chunk = dataStorage.get(PaintingRegistryChunk::load, PaintingRegistryChunk.getCode(chunkIndex));
+
+            if (chunk == null) {
+                continue;
+            }
+
+            this.chunks.put(chunkIndex, chunk);
+
+            for (int index = 0; index < chunk.size(); index++) {
+                this.paintingIds.set(chunk.getId(index));
+                this.byAuthor.computeIfAbsent(chunk.getAuthorUuid(index), k -> new BitSet()).set(chunk.getId(index));
+            }
+        }
+
+        if (!this.legacyPaintingIds.isEmpty()) {
+            // Author is known from the painting index, creation time is lost
+            PaintingIndex paintingIndex = ((CanvasServerTracker) Helper.getLevelCanvasTracker(this.world)).getPaintingIndex();
+
+            for (int paintingId : this.legacyPaintingIds) {
+                UUID authorUuid = paintingIndex.getAuthorUuid(paintingId);
+                this.addPainting(paintingId, authorUuid != null ? authorUuid : PaintingData.FALLBACK_UUID, 0L);
+            }
+
+            Zetter.LOG.info("Moved " + this.legacyPaintingIds.size() + " paintings to new painting registry");
+            this.legacyPaintingIds.clear();
+        }
+    }
+
+    private DimensionDataStorage getDataStorage() {
+        return ((ServerLevel) this.world).getDataStorage();
+    }
+}
@@ -0,0 +1,163 @@
+package me.dantaeusb.zetter.capability.paintingregistry;
+
+import me.dantaeusb.zetter.Zetter;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.world.level.saveddata.SavedData;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Part of painting registry for {@link #SIZE} consecutive
+ * painting ids, saved as a separate SavedData, so when
+ * painting is added, only one chunk is written.
+ *
+ * Records are kept in parallel arrays sorted by id,
+ * as ids are given in order of creation, creation
+ * time is sorted too, except for paintings imported
+ * from the old registry, which have no time.
+ */
+public class PaintingRegistryChunk extends SavedData {
+    public static final String CODE_PREFIX = Zetter.MOD_ID + "_painting_registry_";
+    public static final int SIZE = 1024;
+
+    private static final String NBT_TAG_IDS = "Ids";
+    private static final String NBT_TAG_CREATED_AT = "CreatedAt";
+    private static final String NBT_TAG_AUTHORS = "Authors";
+
+    private int[] ids = new int[16];
+    private long[] createdAt = new long[16];
+    private long[] authors = new long[32];
+    private int size = 0;
+
+    public PaintingRegistryChunk() {
+    }
+
+    public static String getCode(int chunkIndex) {
+        return CODE_PREFIX + chunkIndex;
+    }
+
+    public static int getChunkIndex(int paintingId) {
+        return paintingId / SIZE;
+    }
+
+    /**
+     * Add painting, or update author if it's already here
+     *
+     * @param paintingId
+     * @param authorUuid
+     * @param createdAt
+     */
+    public void put(int paintingId, UUID authorUuid, long createdAt) {
+        int index = Arrays.binarySearch(this.ids, 0, this.size, paintingId);
+
+        if (index < 0) {
+            index = -index - 1;
+            this.ensureCapacity(this.size + 1);
+
+            System.arraycopy(this.ids, index, this.ids, index + 1, this.size - index);
+            System.arraycopy(this.createdAt, index, this.createdAt, index + 1, this.size - index);
+            System.arraycopy(this.authors, index * 2, this.authors, index * 2 + 2, (this.size - index) * 2);
+
+            this.ids[index] = paintingId;
+            this.createdAt[index] = createdAt;
+            this.size++;
+        }
+
+        this.authors[index * 2] = authorUuid.getMostSignificantBits();
+        this.authors[index * 2 + 1] = authorUuid.getLeastSignificantBits();
+
+        this.setDirty();
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @param index position in the chunk, not painting id
+     * @return
+     */
+    public int getId(int index) {
+        return this.ids[index];
+    }
+
+    public long getCreatedAt(int index) {
+        return this.createdAt[index];
+    }
+
+    public UUID getAuthorUuid(int index) {
+        return new UUID(this.authors[index * 2], this.authors[index * 2 + 1]);
+    }
+
+    /**
+     * @param paintingId
+     * @return position in the chunk, or negative if there's no such painting
+     */
+    public int indexOf(int paintingId) {
+        return Arrays.binarySearch(this.ids, 0, this.size, paintingId);
+    }
+
+    /**
+     * First position of painting created at or after given time
+     *
+     * @param time
+     * @return position in the chunk, size if every painting is older
+     */
+    public int indexOfCreatedAfter(long time) {
+        int low = 0;
+        int high = this.size;
+
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+
+            if (this.createdAt[middle] < time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= this.ids.length) {
+            return;
+        }
+
+        final int newCapacity = Math.min(SIZE, Math.max(capacity, this.ids.length * 2));
+
+        this.ids = Arrays.copyOf(this.ids, newCapacity);
+        this.createdAt = Arrays.copyOf(this.createdAt, newCapacity);
+        this.authors = Arrays.copyOf(this.authors, newCapacity * 2);
+    }
+
+    /*
+     * Serialization
+     */
+
+    public static PaintingRegistryChunk load(CompoundTag compoundTag) {
+        PaintingRegistryChunk chunk = new PaintingRegistryChunk();
+
+        chunk.ids = compoundTag.getIntArray(NBT_TAG_IDS);
+        chunk.createdAt = compoundTag.getLongArray(NBT_TAG_CREATED_AT);
+        chunk.authors = compoundTag.getLongArray(NBT_TAG_AUTHORS);
+        chunk.size = chunk.ids.length;
+
+        if (chunk.createdAt.length != chunk.size || chunk.authors.length != chunk.size * 2) {
+            throw new IllegalStateException("Broken painting registry chunk");
+        }
+
+        return chunk;
+    }
+
+    @Override
+    public CompoundTag save(CompoundTag compoundTag) {
+        compoundTag.putIntArray(NBT_TAG_IDS, Arrays.copyOf(this.ids, this.size));
+        compoundTag.putLongArray(NBT_TAG_CREATED_AT, Arrays.copyOf(this.createdAt, this.size));
+        compoundTag.putLongArray(NBT_TAG_AUTHORS, Arrays.copyOf(this.authors, this.size * 2));
+
+        return compoundTag;
+    }
+}
@@ -0,0 +1,341 @@
+package me.dantaeusb.zetter.client.cache;
+
+import me.dantaeusb.zetter.Zetter;
+import me.dantaeusb.zetter.ZetterConfig;
+import me.dantaeusb.zetter.network.packet.CCanvasRequestPacket;
+import me.dantaeusb.zetter.storage.PaintingData;
+import me.dantaeusb.zetter.storage.util.CanvasColorCodec;
+import net.minecraft.Util;
+import net.minecraft.client.Minecraft;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.Tag;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Pattern;
+
+/**
+ * Paintings can't be changed, so once downloaded, they're
+ * kept on disk, and next time client asks server if its
+ * copy is still valid instead of downloading pixels again,
+ * see {@link CCanvasRequestPacket#cachedHash}.
+ *
+ * Files are named by content hash, so copies of the same
+ * painting share the file. Index keeps which hash client
+ * has for every painting code, different servers have
+ * different paintings with the same code, that's why
+ * server always checks the hash first. Hash sent by server
+ * is checked against pixels before file is written, so
+ * one server can't put its pixels under the hash of
+ * another server's painting.
+ *
+ * Least recently used files are removed when cache is over
+ * the size limit. Order of use is saved with the index
+ * when painting is added, reads only change it in memory.
+ */
+public class PaintingCache {
+    private static final String CACHE_DIRECTORY = "cache";
+    private static final String INDEX_FILE = "index.dat";
+    private static final String FILE_EXTENSION = ".dat";
+
+    private static final Pattern HASH_PATTERN = Pattern.compile("[0-9a-f]{64}");
+
+    private static final String NBT_TAG_PAINTINGS = "Paintings";
+    private static final String NBT_TAG_FILES = "Files";
+    private static final String NBT_TAG_CODE = "Code";
+    private static final String NBT_TAG_HASH = "Hash";
+    private static final String NBT_TAG_SIZE = "Size";
+
+    private static @Nullable PaintingCache instance;
+
+    private final Path directory;
+
+    /**
+     * Painting code to content hash
+     */
+    private final Map<String, String> hashes = new HashMap<>();
+
+    /**
+     * Content hash to file size, in order of use
+     */
+    private final LinkedHashMap<String, Long> files = new LinkedHashMap<>(16, 0.75F, true);
+    private long size = 0;
+
+    private PaintingCache(Path directory) {
+        this.directory = directory;
+        this.loadIndex();
+    }
+
+    public static PaintingCache getInstance() {
+        if (instance == null) {
+            instance = new PaintingCache(new File(Minecraft.getInstance().gameDirectory, Zetter.MOD_ID).toPath().resolve(CACHE_DIRECTORY));
+        }
+
+        return instance;
+    }
+
+    private static long getMaxSize() {
+        return ZetterConfig.CLIENT.paintingCacheSize.get() * 1024L * 1024L;
+    }
+
+    /**
+     * @param canvasCode
+     * @return hash of the cached painting, null if it's not cached
+     */
+    public synchronized @Nullable String getHash(String canvasCode) {
+        if (getMaxSize() == 0) {
+            return null;
+        }
+
+        final String contentHash = this.hashes.get(canvasCode);
+
+        return contentHash != null && this.files.containsKey(contentHash) ? contentHash : null;
+    }
+
+    /**
+     * Painting is read on IO thread, future is
+     * completed there too
+     *
+     * @param canvasCode
+     * @param contentHash
+     * @return completed with null if painting is not in cache or file is broken
+     */
+    public CompletableFuture<PaintingData> read(String canvasCode, String contentHash) {
+        return CompletableFuture.supplyAsync(() -> this.readFile(canvasCode, contentHash), Util.ioPool());
+    }
+
+    private @Nullable PaintingData readFile(String canvasCode, String contentHash) {
+        synchronized (this) {
+            // Marks file as used
+            if (this.files.get(contentHash) == null) {
+                return null;
+            }
+        }
+
+        try {
+            CompoundTag paintingTag = NbtIo.readCompressed(this.getFile(contentHash).toFile());
+
+            return PaintingData.BUILDER.load(paintingTag);
+        } catch (Exception e) {
+            Zetter.LOG.warn("Could not read cached painting " + canvasCode + ": " + e);
+
+            synchronized (this) {
+                this.removeFile(contentHash);
+                this.saveIndex();
+            }
+
+            return null;
+        }
+    }
+
+    /**
+     * Painting is written on IO thread, it can't be
+     * changed so it's safe to read pixels there
+     *
+     * @param canvasCode
+     * @param paintingData
+     */
+    public void write(String canvasCode, PaintingData paintingData) {
+        final String contentHash = paintingData.getContentHash();
+
+        if (contentHash == null || !isValidHash(contentHash) || paintingData.isPreview() || getMaxSize() == 0) {
+            return;
+        }
+
+        Util.ioPool().execute(() -> this.writeFile(canvasCode, contentHash, paintingData));
+    }
+
+    private void writeFile(String canvasCode, String contentHash, PaintingData paintingData) {
+        final String actualHash = CanvasColorCodec.hash(paintingData.getColorData(), 0, paintingData.getWidth(), paintingData.getHeight());
+
+        if (!contentHash.equals(actualHash)) {
+            Zetter.LOG.warn("Painting " + canvasCode + " does not match its hash, not caching it");
+            return;
+        }
+
+        synchronized (this) {
+            if (this.files.containsKey(contentHash)) {
+                if (!contentHash.equals(this.hashes.put(canvasCode, contentHash))) {
+                    this.saveIndex();
+                }
+
+                return;
+            }
+        }
+
+        try {
+            Files.createDirectories(this.directory);
+
+            Path temporaryFile = Files.createTempFile(this.directory, contentHash, ".tmp");
+            NbtIo.writeCompressed(paintingData.save(new CompoundTag()), temporaryFile.toFile());
+
+            synchronized (this) {
+                Path file = this.getFile(contentHash);
+                Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+                final long fileSize = Files.size(file);
+                final Long previousSize = this.files.put(contentHash, fileSize);
+
+                this.size += fileSize - (previousSize != null ? previousSize : 0L);
+                this.hashes.put(canvasCode, contentHash);
+
+                this.evict();
+                this.saveIndex();
+            }
+        } catch (IOException e) {
+            Zetter.LOG.warn("Could not cache painting " + canvasCode + ": " + e);
+        }
+    }
+
+    /**
+     * Remove least recently used files until
+     * cache fits the size limit
+     */
+    private void evict() {
+        final long maxSize = getMaxSize();
+        Iterator<Map.Entry<String, Long>> iterator = this.files.entrySet().iterator();
+
+        // Access ordered map can't be read while iterating
+        while (this.size > maxSize && iterator.hasNext()) {
+            final Map.Entry<String, Long> file = iterator.next();
+            final String contentHash = file.getKey();
+
+            this.size -= file.getValue();
+            iterator.remove();
+
+            this.hashes.values().removeIf(contentHash::equals);
+            this.deleteFile(contentHash);
+        }
+    }
+
+    private void removeFile(String contentHash) {
+        final Long fileSize = this.files.remove(contentHash);
+
+        if (fileSize != null) {
+            this.size -= fileSize;
+        }
+
+        this.hashes.values().removeIf(contentHash::equals);
+        this.deleteFile(contentHash);
+    }
+
+    private void deleteFile(String contentHash) {
+        try {
+            Files.deleteIfExists(this.getFile(contentHash));
+        } catch (IOException e) {
+            Zetter.LOG.warn("Could not remove cached painting " + contentHash + ": " + e);
+        }
+    }
+
+    /**
+     * Hash comes from server and is used as a file
+     * name, so it should be exactly what server
+     * computes: hex of SHA-256
+     *
+     * @param contentHash
+     * @return
+     */
+    private static boolean isValidHash(String contentHash) {
+        return HASH_PATTERN.matcher(contentHash).matches();
+    }
+
+    private Path getFile(String contentHash) {
+        return this.directory.resolve(contentHash + FILE_EXTENSION);
+    }
+
+    /*
+     * Index
+     */
+
+    private void loadIndex() {
+        Path indexFile = this.directory.resolve(INDEX_FILE);
+
+        if (!Files.exists(indexFile)) {
+            return;
+        }
+
+        try {
+            CompoundTag indexTag = NbtIo.readCompressed(indexFile.toFile());
+
+            for (Tag tag : indexTag.getList(NBT_TAG_FILES, Tag.TAG_COMPOUND)) {
+                final CompoundTag fileTag = (CompoundTag) tag;
+                final String contentHash = fileTag.getString(NBT_TAG_HASH);
+
+                if (!isValidHash(contentHash) || !Files.exists(this.getFile(contentHash))) {
+                    continue;
+                }
+
+                this.files.put(contentHash, fileTag.getLong(NBT_TAG_SIZE));
+                this.size += fileTag.getLong(NBT_TAG_SIZE);
+            }
+
+            for (Tag tag : indexTag.getList(NBT_TAG_PAINTINGS, Tag.TAG_COMPOUND)) {
+                final CompoundTag paintingTag = (CompoundTag) tag;
+                final String contentHash = paintingTag.getString(NBT_TAG_HASH);
+
+                if (this.files.containsKey(contentHash)) {
+                    this.hashes.put(paintingTag.getString(NBT_TAG_CODE), contentHash);
+                }
+            }
+        } catch (Exception e) {
+            Zetter.LOG.warn("Could not read painting cache index, cache is cleared: " + e);
+
+            this.files.clear();
+            this.hashes.clear();
+            this.size = 0;
+        }
+    }
+
+    /**
+     * Written to temporary file and moved,
+     * so index is never half-written
+     */
+    private void saveIndex() {
+        ListTag filesTag = new ListTag();
+
+        for (Map.Entry<String, Long> file : this.files.entrySet()) {
+            CompoundTag fileTag = new CompoundTag();
+            fileTag.putString(NBT_TAG_HASH, file.getKey());
+            fileTag.putLong(NBT_TAG_SIZE, file.getValue());
+
+            filesTag.add(fileTag);
+        }
+
+        ListTag paintingsTag = new ListTag();
+
+        for (Map.Entry<String, String> painting : this.hashes.entrySet()) {
+            CompoundTag paintingTag = new CompoundTag();
+            paintingTag.putString(NBT_TAG_CODE, painting.getKey());
+            paintingTag.putString(NBT_TAG_HASH, painting.getValue());
+
+            paintingsTag.add(paintingTag);
+        }
+
+        CompoundTag indexTag = new CompoundTag();
+        indexTag.put(NBT_TAG_FILES, filesTag);
+        indexTag.put(NBT_TAG_PAINTINGS, paintingsTag);
+
+        try {
+            Files.createDirectories(this.directory);
+
+            Path indexFile = this.directory.resolve(INDEX_FILE);
+            Path temporaryFile = this.directory.resolve(INDEX_FILE + ".tmp");
+
+            NbtIo.writeCompressed(indexTag, temporaryFile.toFile());
+            Files.move(temporaryFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Zetter.LOG.warn("Could not save painting cache index: " + e);
+        }
+    }
+}
@@ -44,7 +44,7 @@ public class PreviewWidget extends AbstractArtistTableWidget implements Renderab
 
     private void drawCanvas(PoseStack matrixStack, @Nullable DummyCanvasData canvasData) {
         if (canvasData != null) {
-            int scale = getScale(canvasData);
+            float scale = getScale(canvasData);
             Tuple<Integer, Integer> displacement = getDisplacement(canvasData, scale);
 
             matrixStack.pushPose();
@@ -59,10 +59,10 @@ public class PreviewWidget extends AbstractArtistTableWidget implements Renderab
         }
     }
 
-    public static Tuple<Integer, Integer> getDisplacement(@Nullable DummyCanvasData canvasData, int scale) {
+    public static Tuple<Integer, Integer> getDisplacement(@Nullable DummyCanvasData canvasData, float scale) {
         if (canvasData != null) {
-            int xSize = (canvasData.getWidth() / Helper.getResolution().getNumeric()) * Helper.getBasicResolution().getNumeric() * scale;
-            int ySize = (canvasData.getHeight() / Helper.getResolution().getNumeric()) * Helper.getBasicResolution().getNumeric() * scale;
+            int xSize = Math.round((canvasData.getWidth() / canvasData.getResolution().getNumeric()) * Helper.getBasicResolution().getNumeric() * scale);
+            int ySize = Math.round((canvasData.getHeight() / canvasData.getResolution().getNumeric()) * Helper.getBasicResolution().getNumeric() * scale);
 
             int width = Helper.getBasicResolution().getNumeric() * ArtistTableMenu.CANVAS_COLUMN_COUNT;
             int height = Helper.getBasicResolution().getNumeric() * ArtistTableMenu.CANVAS_ROW_COUNT;
@@ -73,12 +73,26 @@ public class PreviewWidget extends AbstractArtistTableWidget implements Renderab
         return new Tuple<>(0, 0);
     }
 
-    public static int getScale(@Nullable DummyCanvasData canvasData) {
+    /**
+     * Whole scale for canvases that fit into the grid,
+     * larger canvases are shrunk to fit
+     *
+     * @param canvasData
+     * @return
+     */
+    public static float getScale(@Nullable DummyCanvasData canvasData) {
         if (canvasData != null) {
-            int xScale = ArtistTableMenu.CANVAS_COLUMN_COUNT / (canvasData.getWidth() / Helper.getResolution().getNumeric());
-            int yScale = ArtistTableMenu.CANVAS_ROW_COUNT / (canvasData.getHeight() / Helper.getResolution().getNumeric());
+            final int blockWidth = canvasData.getWidth() / canvasData.getResolution().getNumeric();
+            final int blockHeight = canvasData.getHeight() / canvasData.getResolution().getNumeric();
 
-            return Math.min(xScale, yScale);
+            if (blockWidth > ArtistTableMenu.CANVAS_COLUMN_COUNT || blockHeight > ArtistTableMenu.CANVAS_ROW_COUNT) {
+                return Math.min(
+                    (float) ArtistTableMenu.CANVAS_COLUMN_COUNT / blockWidth,
+                    (float) ArtistTableMenu.CANVAS_ROW_COUNT / blockHeight
+                );
+            }
+
+            return Math.min(ArtistTableMenu.CANVAS_COLUMN_COUNT / blockWidth, ArtistTableMenu.CANVAS_ROW_COUNT / blockHeight);
         }
 
         return 1;
@@ -4,23 +4,36 @@ import com.google.common.collect.Maps;
 import com.mojang.blaze3d.vertex.PoseStack;
 import com.mojang.blaze3d.vertex.VertexConsumer;
 import me.dantaeusb.zetter.Zetter;
+import me.dantaeusb.zetter.client.cache.PaintingCache;
 import me.dantaeusb.zetter.core.Helper;
 import me.dantaeusb.zetter.core.ZetterNetwork;
+import me.dantaeusb.zetter.network.packet.CCanvasBatchRequestPacket;
 import me.dantaeusb.zetter.network.packet.CCanvasRequestPacket;
 import me.dantaeusb.zetter.storage.AbstractCanvasData;
 import me.dantaeusb.zetter.storage.CanvasData;
+import me.dantaeusb.zetter.storage.PaintingData;
+import me.dantaeusb.zetter.storage.util.CanvasTileTracker;
+import net.minecraft.client.Camera;
+import net.minecraft.client.Minecraft;
 import net.minecraft.client.Timer;
 import net.minecraft.client.renderer.MultiBufferSource;
 import net.minecraft.client.renderer.RenderType;
 import net.minecraft.client.renderer.texture.DynamicTexture;
 import net.minecraft.client.renderer.texture.TextureManager;
 import net.minecraft.resources.ResourceLocation;
+import net.minecraft.util.Mth;
+import net.minecraft.world.phys.Vec3;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.api.distmarker.OnlyIn;
 import org.joml.Matrix4f;
+import org.joml.Vector3f;
 
 import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -28,6 +41,13 @@ import java.util.Map;
  * Instead, some advanced tracking would be good.
  */
 public class CanvasRenderer implements AutoCloseable {
+    /**
+     * How many requests could wait for an answer from
+     * server at once, others wait in the queue, so
+     * the closest canvases are requested first
+     */
+    private static final int MAX_IN_FLIGHT_REQUESTS = 16;
+
     private static CanvasRenderer instance;
     private final TextureManager textureManager;
     private final Map<String, CanvasRenderer.Instance> canvasRendererInstances = Maps.newHashMap();
@@ -64,13 +84,19 @@ public class CanvasRenderer implements AutoCloseable {
      * Only updates texture
      * @param canvas
      */
-    public void updateCanvasTexture(String canvasCode, CanvasData canvas) {
+    public void updateCanvasTexture(String canvasCode, AbstractCanvasData canvas) {
         this.getCanvasRendererInstance(canvasCode, canvas, true).updateCanvasTexture(canvas);
     }
 
     public void addCanvas(String canvasCode, AbstractCanvasData canvasData) {
         this.canvasRendererInstances.remove(canvasCode);
 
+        TextureRequest textureRequest = this.textureRequestTimeout.get(canvasCode);
+
+        if (textureRequest != null) {
+            textureRequest.answer();
+        }
+
         this.createCanvasRendererInstance(canvasCode, canvasData);
     }
 
@@ -87,6 +113,18 @@ public class CanvasRenderer implements AutoCloseable {
      * @param combinedLight
      */
     public void renderCanvas(PoseStack matrixStack, MultiBufferSource renderTypeBuffer, String canvasCode, AbstractCanvasData canvas, int combinedLight) {
+        this.renderCanvas(matrixStack, renderTypeBuffer, canvasCode, canvas, combinedLight, true);
+    }
+
+    /**
+     * @param matrixStack
+     * @param renderTypeBuffer
+     * @param canvasCode
+     * @param canvas
+     * @param combinedLight
+     * @param detailed if canvas is close enough, and if only preview was requested, full pixels should be requested
+     */
+    public void renderCanvas(PoseStack matrixStack, MultiBufferSource renderTypeBuffer, String canvasCode, AbstractCanvasData canvas, int combinedLight, boolean detailed) {
         // 0 is a reserved fallback value
         if (canvasCode.equals(CanvasData.getCanvasCode(0))) return;
 
@@ -106,6 +144,10 @@ public class CanvasRenderer implements AutoCloseable {
             return;
         }
 
+        if (detailed && canvas.isPreview()) {
+            this.queueCanvasTextureRefinement(canvasCode);
+        }
+
         rendererInstance.render(matrixStack, renderTypeBuffer, combinedLight);
     }
 
@@ -148,7 +190,20 @@ public class CanvasRenderer implements AutoCloseable {
         }
     }
 
+    /**
+     * Due requests are sent in order of how large canvas
+     * looks from where the camera is now, and not more than
+     * {@link #MAX_IN_FLIGHT_REQUESTS} are waiting for server
+     * at once. Requests that didn't fit wait for the next tick,
+     * when order is decided again, so when player moves
+     * around, canvases in front of them go first.
+     *
+     * @param partialTicks
+     */
     private void updateTextureRequestTimeout(int partialTicks) {
+        List<TextureRequest> dueRequests = new ArrayList<>();
+        int inFlightRequests = 0;
+
         for (Map.Entry<String, TextureRequest> textureRequestEntry : this.textureRequestTimeout.entrySet()) {
             if (textureRequestEntry.getKey().equals(Helper.FALLBACK_CANVAS_CODE)) {
                 continue;
@@ -157,11 +212,33 @@ public class CanvasRenderer implements AutoCloseable {
             TextureRequest textureRequest = textureRequestEntry.getValue();
 
             if (textureRequest.canUpdate()) {
-                this.requestCanvasTexture(textureRequest);
+                dueRequests.add(textureRequest);
             } else {
                 textureRequest.tick(partialTicks);
+
+                if (textureRequest.isInFlight()) {
+                    inFlightRequests++;
+                }
             }
         }
+
+        final int freeSlots = MAX_IN_FLIGHT_REQUESTS - inFlightRequests;
+
+        if (dueRequests.isEmpty() || freeSlots <= 0) {
+            return;
+        }
+
+        if (dueRequests.size() > 1) {
+            final Camera camera = Minecraft.getInstance().gameRenderer.getMainCamera();
+            final Vec3 cameraPosition = camera.getPosition();
+            final Vector3f lookVector = camera.getLookVector();
+
+            dueRequests.sort(Comparator.comparingDouble(
+                (TextureRequest request) -> request.getPriority(cameraPosition, lookVector)
+            ).reversed());
+        }
+
+        this.requestCanvasTextures(dueRequests.subList(0, Math.min(freeSlots, dueRequests.size())));
     }
 
     /**
@@ -209,6 +286,19 @@ public class CanvasRenderer implements AutoCloseable {
      * @param canvasCode
      */
     public void queueCanvasTextureUpdate(String canvasCode) {
+        this.queueCanvasTextureUpdate(canvasCode, false);
+    }
+
+    /**
+     * Large canvases are sent as a downsampled preview
+     * first, if preview is requested, server won't send
+     * full pixels until they're requested with
+     * {@link #queueCanvasTextureRefinement(String)}
+     *
+     * @param canvasCode
+     * @param preview
+     */
+    public void queueCanvasTextureUpdate(String canvasCode, boolean preview) {
         if (canvasCode == null) {
             Zetter.LOG.debug("Tried to queue null canvas");
             return;
@@ -217,22 +307,99 @@ public class CanvasRenderer implements AutoCloseable {
         if (this.textureRequestTimeout.containsKey(canvasCode)) {
             TextureRequest textureRequest = this.textureRequestTimeout.get(canvasCode);
 
+            if (!preview) {
+                textureRequest.setPreview(false);
+            }
+
             // Already requested
             if (textureRequest.isNeedUpdate()) return;
 
             textureRequest.markDirty();
         } else {
-            this.textureRequestTimeout.put(canvasCode, new TextureRequest(canvasCode));
+            this.textureRequestTimeout.put(canvasCode, new TextureRequest(canvasCode, preview));
+        }
+    }
+
+    /**
+     * Queue canvas shown in the world, position and size
+     * are used to request canvases player sees better first.
+     * Canvases queued without position are needed by
+     * screens, and requested before any in the world.
+     *
+     * @param canvasCode
+     * @param preview
+     * @param position where canvas is shown
+     * @param blockWidth
+     * @param blockHeight
+     */
+    public void queueCanvasTextureUpdate(String canvasCode, boolean preview, Vec3 position, int blockWidth, int blockHeight) {
+        this.queueCanvasTextureUpdate(canvasCode, preview);
+
+        TextureRequest textureRequest = this.textureRequestTimeout.get(canvasCode);
+
+        if (textureRequest != null) {
+            textureRequest.setLocation(position, blockWidth, blockHeight);
         }
     }
 
+    /**
+     * When only preview was requested, request full pixels,
+     * not earlier than request timeout from the previous request
+     *
+     * @param canvasCode
+     */
+    public void queueCanvasTextureRefinement(String canvasCode) {
+        TextureRequest textureRequest = this.textureRequestTimeout.get(canvasCode);
+
+        if (textureRequest == null || !textureRequest.isPreview()) {
+            return;
+        }
+
+        textureRequest.setPreview(false);
+        textureRequest.markDirty();
+    }
+
+    /**
+     * Paintings can't be changed, if we have painting in cache,
+     * server only checks that it has the same pixels
+     *
+     * @param request
+     */
     protected void requestCanvasTexture(TextureRequest request) {
-        CCanvasRequestPacket requestSyncPacket = new CCanvasRequestPacket(request.getCanvasCode());
+        CCanvasRequestPacket requestSyncPacket = new CCanvasRequestPacket(request.getCanvasCode(), request.isPreview(), getCachedHash(request.getCanvasCode()));
         ZetterNetwork.simpleChannel.sendToServer(requestSyncPacket);
 
         request.update();
     }
 
+    /**
+     * Requests which are due in the same tick are sent
+     * together, i.e. when player enters a gallery
+     *
+     * @param requests
+     */
+    protected void requestCanvasTextures(List<TextureRequest> requests) {
+        if (requests.size() == 1) {
+            this.requestCanvasTexture(requests.get(0));
+            return;
+        }
+
+        for (int from = 0; from < requests.size(); from += CCanvasBatchRequestPacket.MAX_REQUESTS) {
+            List<CCanvasBatchRequestPacket.Request> batch = new ArrayList<>();
+
+            for (TextureRequest request : requests.subList(from, Math.min(from + CCanvasBatchRequestPacket.MAX_REQUESTS, requests.size()))) {
+                batch.add(new CCanvasBatchRequestPacket.Request(request.getCanvasCode(), request.isPreview(), getCachedHash(request.getCanvasCode())));
+                request.update();
+            }
+
+            ZetterNetwork.simpleChannel.sendToServer(new CCanvasBatchRequestPacket(batch));
+        }
+    }
+
+    private static @Nullable String getCachedHash(String canvasCode) {
+        return canvasCode.startsWith(PaintingData.CODE_PREFIX) ? PaintingCache.getInstance().getHash(canvasCode) : null;
+    }
+
     /*
      * Renderer instances
      */
@@ -286,6 +453,13 @@ public class CanvasRenderer implements AutoCloseable {
         private final int blockPixelWidth;
         private final int blockPixelHeight;
 
+        /**
+         * Data object and its version that were uploaded
+         * to the texture last time, to upload only changes
+         */
+        private @Nullable AbstractCanvasData uploadedCanvas;
+        private int uploadedVersion;
+
         private Instance(String canvasCode, int width, int height, AbstractCanvasData.Resolution resolution) {
             this.code = canvasCode;
             this.canvasTexture = new DynamicTexture(width, height, true);
@@ -301,19 +475,70 @@ public class CanvasRenderer implements AutoCloseable {
             this.blockPixelHeight = height / downScale;
         }
 
+        /**
+         * If we already uploaded this data object, upload only
+         * tiles that were changed since last upload, otherwise
+         * update whole texture
+         *
+         * @param canvas
+         */
+        private void updateCanvasTexture(AbstractCanvasData canvas) {
+            final CanvasTileTracker tiles = canvas.getTiles();
+
+            if (canvas != this.uploadedCanvas || tiles == null) {
+                this.updateWholeTexture(canvas);
+                return;
+            }
+
+            if (!tiles.hasChangedSince(this.uploadedVersion)) {
+                return;
+            }
+
+            final BitSet changedTiles = tiles.getTilesChangedSince(this.uploadedVersion);
+
+            // Not worth to upload tile-by-tile
+            if (changedTiles.cardinality() > tiles.getTileCount() / 2) {
+                this.updateWholeTexture(canvas);
+                return;
+            }
+
+            this.canvasTexture.bind();
+
+            for (int tile = changedTiles.nextSetBit(0); tile >= 0; tile = changedTiles.nextSetBit(tile + 1)) {
+                final int tileX = tiles.getTileX(tile);
+                final int tileY = tiles.getTileY(tile);
+                final int tileWidth = tiles.getTileWidth(tile);
+                final int tileHeight = tiles.getTileHeight(tile);
+
+                this.copyPixels(canvas, tileX, tileY, tileWidth, tileHeight);
+
+                this.canvasTexture.getPixels().upload(
+                    0, tileX, tileY, tileX, tileY, tileWidth, tileHeight, false, false
+                );
+            }
+
+            this.uploadedVersion = tiles.getVersion();
+        }
+
         /*
          * Updates a map {@link net.minecraft.client.gui.MapItemRenderer.Instance#mapTexture texture}
          * Maybe update with asByteArray() instead of pixel-by-pixel?
          */
-        private void updateCanvasTexture(AbstractCanvasData canvas) {
-            for(int pixelY = 0; pixelY < canvas.getHeight(); pixelY++) {
-                for(int pixelX = 0; pixelX < canvas.getWidth(); pixelX++) {
-                    int color = canvas.getColorAt(pixelX, pixelY);
+        private void updateWholeTexture(AbstractCanvasData canvas) {
+            this.copyPixels(canvas, 0, 0, canvas.getWidth(), canvas.getHeight());
+            this.canvasTexture.upload();
+
+            this.uploadedCanvas = canvas;
+            this.uploadedVersion = canvas.getTiles() != null ? canvas.getTiles().getVersion() : 0;
+        }
+
+        private void copyPixels(AbstractCanvasData canvas, int fromX, int fromY, int width, int height) {
+            for(int pixelY = fromY; pixelY < fromY + height; pixelY++) {
+                for(int pixelX = fromX; pixelX < fromX + width; pixelX++) {
+                    int color = canvas.getColorAt(canvas.getPixelIndexUnchecked(pixelX, pixelY));
                     this.canvasTexture.getPixels().setPixelRGBA(pixelX, pixelY, this.ARGBtoABGR(color));
                 }
             }
-
-            this.canvasTexture.upload();
         }
 
         private int ARGBtoABGR(int x)
@@ -343,12 +568,41 @@ public class CanvasRenderer implements AutoCloseable {
     static class TextureRequest {
         private final int TEXTURE_REQUEST_TIMEOUT = 30; // Not often than once in a second and a half
 
+        /**
+         * Canvases behind the camera are needed only
+         * when player turns around
+         */
+        private static final float BEHIND_CAMERA_FACTOR = 0.25F;
+
         private final String code;
         private boolean needUpdate = true;
+        private boolean preview;
         private int timeout = 0;
 
-        TextureRequest(String canvasCode) {
+        /**
+         * Sent and not answered yet, request is
+         * considered lost when timeout is over
+         */
+        private boolean inFlight = false;
+
+        /**
+         * Where canvas was rendered last time, null
+         * if it's requested for a screen
+         */
+        private @Nullable Vec3 position;
+        private float size = 1.0F;
+
+        TextureRequest(String canvasCode, boolean preview) {
             this.code = canvasCode;
+            this.preview = preview;
+        }
+
+        public boolean isPreview() {
+            return this.preview;
+        }
+
+        public void setPreview(boolean preview) {
+            this.preview = preview;
         }
 
         public void markDirty() {
@@ -361,9 +615,47 @@ public class CanvasRenderer implements AutoCloseable {
 
         public void update() {
             this.needUpdate = false;
+            this.inFlight = true;
             this.timeout = TEXTURE_REQUEST_TIMEOUT;
         }
 
+        public void answer() {
+            this.inFlight = false;
+        }
+
+        public boolean isInFlight() {
+            return this.inFlight && this.timeout > 0;
+        }
+
+        public void setLocation(Vec3 position, int blockWidth, int blockHeight) {
+            this.position = position;
+            this.size = Mth.sqrt(blockWidth * blockHeight);
+        }
+
+        /**
+         * How large canvas looks from the camera:
+         * size divided by distance, with canvases
+         * behind the camera put after ones in front
+         *
+         * @param cameraPosition
+         * @param lookVector
+         * @return larger is more urgent
+         */
+        public double getPriority(Vec3 cameraPosition, Vector3f lookVector) {
+            if (this.position == null) {
+                return Double.MAX_VALUE;
+            }
+
+            final Vec3 direction = this.position.subtract(cameraPosition);
+            double priority = this.size / Math.max(direction.length(), 1.0D);
+
+            if (direction.x * lookVector.x() + direction.y * lookVector.y() + direction.z * lookVector.z() < 0.0D) {
+                priority *= BEHIND_CAMERA_FACTOR;
+            }
+
+            return priority;
+        }
+
         public String getCanvasCode() {
             return this.code;
         }
@@ -10,6 +10,7 @@ import me.dantaeusb.zetter.client.model.EaselModel;
 import me.dantaeusb.zetter.client.renderer.CanvasRenderer;
 import me.dantaeusb.zetter.core.Helper;
 import me.dantaeusb.zetter.entity.item.EaselEntity;
+import me.dantaeusb.zetter.item.CanvasItem;
 import me.dantaeusb.zetter.storage.CanvasData;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.model.EntityModel;
@@ -21,6 +22,7 @@ import net.minecraft.client.renderer.entity.layers.RenderLayer;
 import net.minecraft.client.renderer.texture.OverlayTexture;
 import net.minecraft.core.Direction;
 import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.level.Level;
 import org.joml.Matrix4f;
 
@@ -62,7 +64,16 @@ public class EaselRenderer extends EntityRenderer<EaselEntity> {
             if (canvasData != null) {
                 this.renderCanvas(easelEntity, canvasData, partialTicks, poseStack, buffer, packedLight);
             } else {
-                CanvasRenderer.getInstance().queueCanvasTextureUpdate(easelEntity.getEntityCanvasCode());
+                ItemStack canvasStack = easelEntity.getCanvasStack();
+                int[] size = canvasStack != null ? CanvasItem.getBlockSize(canvasStack) : null;
+
+                if (size == null) {
+                    size = new int[]{1, 1};
+                }
+
+                CanvasRenderer.getInstance().queueCanvasTextureUpdate(
+                    easelEntity.getEntityCanvasCode(), false, easelEntity.position(), size[0], size[1]
+                );
             }
         }
 
@@ -58,6 +58,12 @@ public class FramedPaintingRenderer extends EntityRenderer<PaintingEntity> {
         "center_vertical"
     };
 
+    /**
+     * Further than that only downsampled preview of
+     * large paintings is requested, squared, in blocks
+     */
+    public static final double PREVIEW_DISTANCE_SQR = 24.0D * 24.0D;
+
     public static final HashMap<String, ModelResourceLocation> FRAME_MODELS = new HashMap<>();
     public static final HashMap<String, ResourceLocation> PLATE_TEXTURES = new HashMap<>();
 
@@ -204,6 +210,7 @@ public class FramedPaintingRenderer extends EntityRenderer<PaintingEntity> {
 
         // Doesn't make sense to get CanvasData from item since we're on client, requesting directly from capability
         AbstractCanvasData canvasData = getCanvasData(world, entity.getPaintingCode());
+        final boolean detailed = this.entityRenderDispatcher.distanceToSqr(entity) <= PREVIEW_DISTANCE_SQR;
 
         // @todo: Has painting - render fallback, no painting - disable canvas render
         if (canvasData != null) {
@@ -221,10 +228,12 @@ public class FramedPaintingRenderer extends EntityRenderer<PaintingEntity> {
             matrixStack.mulPose(Axis.ZP.rotationDegrees(180.0F));
             matrixStack.translate(-16.0D, -16.0D, 0D);
 
-            CanvasRenderer.getInstance().renderCanvas(matrixStack, renderBuffers, entity.getPaintingCode(), canvasData, combinedLight);
+            CanvasRenderer.getInstance().renderCanvas(matrixStack, renderBuffers, entity.getPaintingCode(), canvasData, combinedLight, detailed);
             matrixStack.popPose();
         } else {
-            CanvasRenderer.getInstance().queueCanvasTextureUpdate(entity.getPaintingCode());
+            CanvasRenderer.getInstance().queueCanvasTextureUpdate(
+                entity.getPaintingCode(), !detailed, entity.position(), entity.getBlockWidth(), entity.getBlockHeight()
+            );
         }
 
         // Render plate
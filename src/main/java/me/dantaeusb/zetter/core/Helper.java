@@ -19,8 +19,6 @@ import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.IntBuffer;
 import java.util.List;
 import java.util.UUID;
 
@@ -53,6 +51,12 @@ public class Helper {
     public static AbstractCanvasData.Resolution getResolution() {
         int resolution = 16;
         switch (ZetterConfig.SERVER.resolution.get()) {
+            case "x256":
+                resolution = 256;
+                break;
+            case "x128":
+                resolution = 128;
+                break;
             case "x64":
                 resolution = 64;
                 break;
@@ -164,12 +168,8 @@ public class Helper {
             TYPE_INT_ARGB
         );
 
-        IntBuffer colorByteBuffer = ByteBuffer.wrap(paintingData.getColorData()).asIntBuffer();
-        int[] colorIntArray = new int[colorByteBuffer.remaining()];
-        colorByteBuffer.get(colorIntArray);
-
         bufferedImage.setRGB(
-            0, 0, width, height, colorIntArray, 0, width
+            0, 0, width, height, paintingData.getColorData(), 0, width
         );
 
         try {
@@ -181,27 +181,19 @@ public class Helper {
 
     /**
      * Try to find a painting by it's name using
-     * level canvas tracker
+     * painting index of level canvas tracker
      * @param paintingName
      * @param level
      * @return
      */
     public static @Nullable String lookupPaintingCodeByName(String paintingName, Level level) {
         CanvasServerTracker canvasTracker = (CanvasServerTracker) Helper.getLevelCanvasTracker(level);
+        Integer paintingId = canvasTracker.getPaintingIndex().findByTitle(paintingName);
 
-        for (int id = 0; id < canvasTracker.getLastPaintingId() + 1; id++) {
-            final String code = PaintingData.getCanvasCode(id);
-            PaintingData paintingData = canvasTracker.getCanvasData(code);
-
-            if (paintingData == null || !paintingData.getType().equals(ZetterCanvasTypes.PAINTING.get())) {
-                continue;
-            }
-
-            if (paintingData.getPaintingName().equals(paintingName)) {
-                return code;
-            }
+        if (paintingId == null) {
+            return null;
         }
 
-        return null;
+        return PaintingData.getCanvasCode(paintingId);
     }
 }
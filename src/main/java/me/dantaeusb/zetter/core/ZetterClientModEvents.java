@@ -3,17 +3,22 @@ package me.dantaeusb.zetter.core;
 import me.dantaeusb.zetter.Zetter;
 import me.dantaeusb.zetter.client.gui.overlay.CanvasOverlay;
 import me.dantaeusb.zetter.client.gui.overlay.PaintingInfoOverlay;
+import me.dantaeusb.zetter.client.renderer.CanvasRenderer;
 import me.dantaeusb.zetter.event.CanvasOverlayViewEvent;
 import me.dantaeusb.zetter.event.CanvasRegisterEvent;
 import me.dantaeusb.zetter.event.CanvasViewEvent;
+import me.dantaeusb.zetter.item.CanvasItem;
 import me.dantaeusb.zetter.menu.ArtistTableMenu;
 import me.dantaeusb.zetter.menu.EaselMenu;
 import me.dantaeusb.zetter.storage.AbstractCanvasData;
 import me.dantaeusb.zetter.storage.CanvasData;
 import me.dantaeusb.zetter.storage.PaintingData;
 import net.minecraft.client.Minecraft;
+import net.minecraft.world.entity.decoration.ItemFrame;
 import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.item.ItemStack;
 import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.client.event.RenderItemInFrameEvent;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.fml.common.Mod;
 
@@ -117,4 +122,31 @@ public class ZetterClientModEvents {
             }
         }
     }
+
+    /**
+     * Canvas item renderer doesn't know about the frame,
+     * so canvases in frames are queued here, with
+     * frame position to prioritize the request
+     * @param event
+     */
+    @SubscribeEvent
+    public static void onRenderItemInFrame(RenderItemInFrameEvent event) {
+        final ItemStack itemStack = event.getItemStack();
+        final String canvasCode = CanvasItem.getCanvasCode(itemStack);
+
+        if (canvasCode == null) {
+            return;
+        }
+
+        final ItemFrame itemFrame = event.getItemFrame();
+
+        if (CanvasItem.getCanvasData(itemStack, itemFrame.getLevel()) != null) {
+            return;
+        }
+
+        int[] size = CanvasItem.getBlockSize(itemStack);
+        assert size != null && size.length == 2;
+
+        CanvasRenderer.getInstance().queueCanvasTextureUpdate(canvasCode, false, itemFrame.position(), size[0], size[1]);
+    }
 }
@@ -7,10 +7,13 @@ import me.dantaeusb.zetter.client.renderer.CanvasRenderer;
 import me.dantaeusb.zetter.menu.EaselMenu;
 import net.minecraft.Util;
 import net.minecraft.client.Minecraft;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.Level;
 import net.minecraft.world.entity.player.Player;
 import net.minecraftforge.event.TickEvent;
 import net.minecraftforge.event.entity.player.PlayerContainerEvent;
 import net.minecraftforge.event.entity.player.PlayerEvent;
+import net.minecraftforge.event.level.LevelEvent;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.fml.common.Mod;
 import net.minecraftforge.server.ServerLifecycleHooks;
@@ -23,6 +26,7 @@ public class ZetterGameEvents {
         CanvasServerTracker canvasTracker = (CanvasServerTracker) Helper.getLevelCanvasTracker(player.level);
 
         canvasTracker.stopTrackingAllCanvases(player.getUUID());
+        canvasTracker.getDispatcher().forget(player.getUUID());
     }
 
     @SubscribeEvent
@@ -31,6 +35,27 @@ public class ZetterGameEvents {
         canvasTracker.tick();
     }
 
+    /**
+     * Canvases are kept in the overworld tracker,
+     * write changed ones with the overworld
+     * @param event
+     */
+    @SubscribeEvent
+    public static void onLevelSave(LevelEvent.Save event) {
+        if (event.getLevel() instanceof ServerLevel level && level.dimension() == Level.OVERWORLD) {
+            CanvasServerTracker canvasTracker = (CanvasServerTracker) Helper.getLevelCanvasTracker(level);
+            canvasTracker.saveStorage();
+        }
+    }
+
+    @SubscribeEvent
+    public static void onLevelUnload(LevelEvent.Unload event) {
+        if (event.getLevel() instanceof ServerLevel level && level.dimension() == Level.OVERWORLD) {
+            CanvasServerTracker canvasTracker = (CanvasServerTracker) Helper.getLevelCanvasTracker(level);
+            canvasTracker.closeStorage();
+        }
+    }
+
     /**
      * @todo: [MED] Do we really need that hook here? It might be called very frequently
      * @param event
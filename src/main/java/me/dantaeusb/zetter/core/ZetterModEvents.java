@@ -7,6 +7,9 @@ import me.dantaeusb.zetter.storage.PaintingData;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.fml.common.Mod;
 
+import java.util.Objects;
+import java.util.UUID;
+
 @Mod.EventBusSubscriber(modid = Zetter.MOD_ID, bus = Mod.EventBusSubscriber.Bus.FORGE)
 public class ZetterModEvents {
     /**
@@ -20,9 +23,12 @@ public class ZetterModEvents {
      */
     @SubscribeEvent
     public static void onCanvasPostRegistered(CanvasRegisterEvent.Post event) {
-        if (!event.level.isClientSide() && event.canvasData instanceof PaintingData) {
+        if (!event.level.isClientSide() && event.canvasData instanceof PaintingData paintingData) {
+            final int paintingId = Integer.parseInt(event.canvasCode.substring(PaintingData.CODE_PREFIX.length()));
+            final UUID authorUuid = Objects.requireNonNullElse(paintingData.getAuthorUuid(), PaintingData.FALLBACK_UUID);
+
             PaintingRegistry registry = Helper.getLevelPaintingRegistry(event.level);
-            registry.addPaintingCanvasCode(event.canvasCode);
+            registry.addPainting(paintingId, authorUuid, event.timestamp);
         }
     }
 }
@@ -19,11 +19,14 @@ public class ZetterNetwork {
     public static SimpleChannel simpleChannel;
     // @todo: [LOW] Rename this on release, it's zetter:zetter_channel 0.1
     public static final ResourceLocation simpleChannelRL = new ResourceLocation(Zetter.MOD_ID, "zetter_channel");
-    public static final String MESSAGE_PROTOCOL_VERSION = "0.3";
+    public static final String MESSAGE_PROTOCOL_VERSION = "0.12";
 
     public static final byte PAINTING_FRAME = 21;
     public static final byte CANVAS_REQUEST = 22;
     public static final byte CANVAS_SYNC = 24;
+    public static final byte CANVAS_BATCH_REQUEST = 39;
+    public static final byte CANVAS_BATCH_SYNC = 43;
+    public static final byte CANVAS_CHUNK = 44;
 
     public static final byte PAINTING_UNLOAD_CANVAS = 23;
 
@@ -34,6 +37,9 @@ public class ZetterNetwork {
     public static final byte CANVAS_SYNC_VIEW = 27;
 
     public static final byte CANVAS_REMOVE = 29;
+    public static final byte CANVAS_REGION_SYNC = 36;
+    public static final byte CANVAS_DELTA_SYNC = 37;
+    public static final byte CANVAS_NOT_MODIFIED = 38;
     public static final byte EASEL_SYNC = 30;
 
     public static final byte HISTORY_UPDATE = 31;
@@ -103,6 +109,36 @@ public class ZetterNetwork {
             SCanvasRemovalPacket::handle,
             Optional.of(PLAY_TO_CLIENT));
 
+        simpleChannel.registerMessage(CANVAS_REGION_SYNC, SCanvasRegionSyncPacket.class,
+            SCanvasRegionSyncPacket::writePacketData, SCanvasRegionSyncPacket::readPacketData,
+            SCanvasRegionSyncPacket::handle,
+            Optional.of(PLAY_TO_CLIENT));
+
+        simpleChannel.registerMessage(CANVAS_DELTA_SYNC, SCanvasDeltaSyncPacket.class,
+            SCanvasDeltaSyncPacket::writePacketData, SCanvasDeltaSyncPacket::readPacketData,
+            SCanvasDeltaSyncPacket::handle,
+            Optional.of(PLAY_TO_CLIENT));
+
+        simpleChannel.registerMessage(CANVAS_BATCH_REQUEST, CCanvasBatchRequestPacket.class,
+            CCanvasBatchRequestPacket::writePacketData, CCanvasBatchRequestPacket::readPacketData,
+            CCanvasBatchRequestPacket::handle,
+            Optional.of(PLAY_TO_SERVER));
+
+        simpleChannel.registerMessage(CANVAS_BATCH_SYNC, SCanvasSyncBatchPacket.class,
+            SCanvasSyncBatchPacket::writePacketData, SCanvasSyncBatchPacket::readPacketData,
+            SCanvasSyncBatchPacket::handle,
+            Optional.of(PLAY_TO_CLIENT));
+
+        simpleChannel.registerMessage(CANVAS_CHUNK, SCanvasChunkPacket.class,
+            SCanvasChunkPacket::writePacketData, SCanvasChunkPacket::readPacketData,
+            SCanvasChunkPacket::handle,
+            Optional.of(PLAY_TO_CLIENT));
+
+        simpleChannel.registerMessage(CANVAS_NOT_MODIFIED, SCanvasNotModifiedPacket.class,
+            SCanvasNotModifiedPacket::writePacketData, SCanvasNotModifiedPacket::readPacketData,
+            SCanvasNotModifiedPacket::handle,
+            Optional.of(PLAY_TO_CLIENT));
+
         simpleChannel.registerMessage(EASEL_SYNC, SEaselStateSyncPacket.class,
             SEaselStateSyncPacket::writePacketData, SEaselStateSyncPacket::readPacketData,
             SEaselStateSyncPacket::handle,
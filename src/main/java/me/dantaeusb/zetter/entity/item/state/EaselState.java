@@ -11,6 +11,7 @@ import me.dantaeusb.zetter.entity.item.EaselEntity;
 import me.dantaeusb.zetter.entity.item.state.representation.CanvasAction;
 import me.dantaeusb.zetter.entity.item.state.representation.CanvasSnapshot;
 import me.dantaeusb.zetter.item.CanvasItem;
+import me.dantaeusb.zetter.network.ServerHandler;
 import me.dantaeusb.zetter.network.packet.*;
 import me.dantaeusb.zetter.painting.Tools;
 import me.dantaeusb.zetter.painting.parameters.AbstractToolParameters;
@@ -281,6 +282,10 @@ public class EaselState {
      * @param posY
      */
     public void useTool(Player player, Tools tool, float posX, float posY, int color, AbstractToolParameters parameters) {
+        // Server receives positions in 1/16 of a pixel, apply tool where server will
+        posX = CanvasAction.quantize(posX);
+        posY = CanvasAction.quantize(posY);
+
         ItemStack paletteStack = this.easel.getEaselContainer().getPaletteStack();
 
         // No palette or no paints left and player is not creative mode player
@@ -554,10 +559,12 @@ public class EaselState {
         CanvasData canvasData = CanvasItem.createEmpty(canvasStack, AbstractCanvasData.Resolution.get(resolution), size[0], size[1], this.easel.getLevel());
         canvasCode = CanvasItem.getCanvasCode(canvasStack);
 
-        SEaselCanvasInitializationPacket initPacket = new SEaselCanvasInitializationPacket(this.easel.getId(), canvasCode,canvasData, System.currentTimeMillis());
+        final long timestamp = System.currentTimeMillis();
+        SEaselCanvasInitializationPacket initPacket = new SEaselCanvasInitializationPacket(this.easel.getId(), canvasCode,canvasData, timestamp);
 
         for (Player player : this.easel.getPlayersUsing()) {
             ZetterNetwork.simpleChannel.send(PacketDistributor.PLAYER.with(() -> (ServerPlayer) player), initPacket);
+            ServerHandler.sendCanvasRegions((ServerPlayer) player, canvasCode, canvasData, timestamp);
         }
 
         // Drop things but not sync yet
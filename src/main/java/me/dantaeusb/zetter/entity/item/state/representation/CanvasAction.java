@@ -18,8 +18,9 @@ import java.util.stream.Stream;
  * To do so, we store common information, like tool, parameters and color
  * In one place, and canvas actions (where action was applied) in another.
  *
- * Theoretically, we also can use relative time of "sub-action" but
- * it's complicated and not yet worth it
+ * Over the network, sub-actions are sent compressed: time and
+ * position as differences from the previous sub-action in varints,
+ * see {@link #writeSubActions(CanvasAction, FriendlyByteBuf)}
  */
 public class CanvasAction {
     private static final Random RANDOM = new Random();
@@ -29,6 +30,12 @@ public class CanvasAction {
 
     private static final long MAX_INACTIVE_TIME = 750L;
 
+    /**
+     * Positions are kept in 1/16 of a pixel, so they
+     * could be sent as small integer differences
+     */
+    public static final float POSITION_STEPS = 16.0F;
+
     public final int id;
 
     /**
@@ -198,7 +205,7 @@ public class CanvasAction {
         final long currentTime = System.currentTimeMillis();
         final int passedTime = (int) (currentTime - this.startTime);
 
-        final CanvasSubAction action = new CanvasSubAction(passedTime, posX, posY);
+        final CanvasSubAction action = new CanvasSubAction(passedTime, quantize(posX), quantize(posY));
         CanvasSubAction.writeToBuffer(action, this.subActionBuffer);
 
         this.lastAction = action;
@@ -302,6 +309,18 @@ public class CanvasAction {
         return this.lastAction;
     }
 
+    /**
+     * Round position to the precision it's sent with,
+     * client should apply tool at the same position
+     * as server will
+     *
+     * @param position
+     * @return
+     */
+    public static float quantize(float position) {
+        return Math.round(position * POSITION_STEPS) / POSITION_STEPS;
+    }
+
     /**
      * Prepare the data for sending - flip & lock
      * @return
@@ -355,7 +374,7 @@ public class CanvasAction {
             final byte meta = buffer.get();
 
             // Time
-            final int time = buffer.get() << 8 & buffer.get();
+            final int time = (buffer.get() & 0xFF) | (buffer.get() & 0xFF) << 8;
 
             // Position
             final float posX = buffer.getFloat();
@@ -367,29 +386,27 @@ public class CanvasAction {
 
     public static void writePacketData(CanvasAction actionBuffer, FriendlyByteBuf buffer) {
         buffer.writeInt(actionBuffer.id);
-        buffer.writeUtf(actionBuffer.tool.toString(), 32);
+        buffer.writeByte(actionBuffer.tool.getId());
         buffer.writeInt(actionBuffer.color);
         buffer.writeLong(actionBuffer.startTime);
         buffer.writeLong(actionBuffer.commitTime);
         buffer.writeBoolean(actionBuffer.canceled);
         AbstractToolParameters.writePacketData(actionBuffer.parameters, buffer);
 
-        buffer.writeInt(actionBuffer.subActionBuffer.rewind().limit());
-        buffer.writeBytes(actionBuffer.subActionBuffer);
+        writeSubActions(actionBuffer, buffer);
     }
 
     public static CanvasAction readPacketData(FriendlyByteBuf buffer) {
-        int actionId = buffer.readInt();
-        Tools tool = Tools.valueOf(buffer.readUtf(32));
-        int color = buffer.readInt();
-        Long startTime = buffer.readLong();
-        Long commitTime = buffer.readLong();
-        boolean canceled = buffer.readBoolean();
-        AbstractToolParameters parameters = AbstractToolParameters.readPacketData(buffer, tool);
-
-        int bufferSize = buffer.readInt();
         try {
-            ByteBuffer actionsBuffer = buffer.readBytes(bufferSize).nioBuffer();
+            int actionId = buffer.readInt();
+            Tools tool = Tools.byId(buffer.readUnsignedByte());
+            int color = buffer.readInt();
+            Long startTime = buffer.readLong();
+            Long commitTime = buffer.readLong();
+            boolean canceled = buffer.readBoolean();
+            AbstractToolParameters parameters = AbstractToolParameters.readPacketData(buffer, tool);
+
+            ByteBuffer actionsBuffer = readSubActions(buffer);
 
             return new CanvasAction(
                     actionId,
@@ -401,10 +418,89 @@ public class CanvasAction {
                     actionsBuffer,
                     canceled
             );
-        } catch (IndexOutOfBoundsException e) {
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
             Zetter.LOG.error(e);
         }
 
         return null;
     }
+
+    /**
+     * Count, then for every sub-action: time since the
+     * previous one, and change of position in 1/16 of
+     * a pixel, zigzag-encoded so small negative steps
+     * are small too. Usually 3-4 bytes per sub-action
+     * instead of {@link #FRAME_SIZE}.
+     *
+     * Meta is reserved and not sent.
+     *
+     * @param actionBuffer
+     * @param buffer
+     */
+    private static void writeSubActions(CanvasAction actionBuffer, FriendlyByteBuf buffer) {
+        final ByteBuffer frames = actionBuffer.subActionBuffer.duplicate().rewind();
+        final int count = frames.limit() / FRAME_SIZE;
+
+        buffer.writeVarInt(count);
+
+        int lastTime = 0, lastX = 0, lastY = 0;
+
+        for (int i = 0; i < count; i++) {
+            final CanvasSubAction subAction = CanvasSubAction.readFromBuffer(frames);
+            final int posX = Math.round(subAction.posX * POSITION_STEPS);
+            final int posY = Math.round(subAction.posY * POSITION_STEPS);
+
+            buffer.writeVarInt(subAction.time - lastTime);
+            buffer.writeVarInt(zigzag(posX - lastX));
+            buffer.writeVarInt(zigzag(posY - lastY));
+
+            lastTime = subAction.time;
+            lastX = posX;
+            lastY = posY;
+        }
+    }
+
+    /**
+     * Restore fixed-size frames, so received actions
+     * are read the same way as local ones
+     *
+     * @param buffer
+     * @return
+     */
+    private static ByteBuffer readSubActions(FriendlyByteBuf buffer) {
+        final int count = buffer.readVarInt();
+
+        if (count < 0 || count > MAX_ACTIONS_IN_BUFFER) {
+            throw new IllegalArgumentException("Incorrect amount of frames in buffer: " + count);
+        }
+
+        final ByteBuffer frames = ByteBuffer.allocate(count * FRAME_SIZE);
+
+        int time = 0, posX = 0, posY = 0;
+
+        for (int i = 0; i < count; i++) {
+            time += buffer.readVarInt();
+            posX += unzigzag(buffer.readVarInt());
+            posY += unzigzag(buffer.readVarInt());
+
+            if (time < 0 || time > 0xFFFF) {
+                throw new IllegalArgumentException("Time offset for action is out of bounds");
+            }
+
+            CanvasSubAction.writeToBuffer(
+                new CanvasSubAction((byte) 0x1, time, posX / POSITION_STEPS, posY / POSITION_STEPS),
+                frames
+            );
+        }
+
+        return frames.flip();
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
 }
@@ -13,10 +13,10 @@ public class CanvasSnapshot {
 
     public final int id;
     public final Long timestamp;
-    public final byte[] colors;
+    public final int[] colors;
     public final boolean weak;
 
-    private CanvasSnapshot(int id, byte[] colors, Long snapshotTime, boolean weak) {
+    private CanvasSnapshot(int id, int[] colors, Long snapshotTime, boolean weak) {
         this.id = id;
         this.timestamp = snapshotTime;
         this.colors = colors;
@@ -27,7 +27,7 @@ public class CanvasSnapshot {
      * Client-only "weak" snapshot is created when server
      * sends regular canvas sync message (not a snapshot)
      */
-    public static CanvasSnapshot createWeakSnapshot(byte[] colors, Long snapshotTime) {
+    public static CanvasSnapshot createWeakSnapshot(int[] colors, Long snapshotTime) {
         return new CanvasSnapshot(RANDOM.nextInt(), colors, snapshotTime, true);
     }
 
@@ -39,7 +39,7 @@ public class CanvasSnapshot {
      * @param snapshotTime
      * @return
      */
-    public static CanvasSnapshot createNetworkSnapshot(int id, byte[] colors, Long snapshotTime) {
+    public static CanvasSnapshot createNetworkSnapshot(int id, int[] colors, Long snapshotTime) {
         return new CanvasSnapshot(id, colors, snapshotTime, false);
     }
 
@@ -49,7 +49,7 @@ public class CanvasSnapshot {
      * @param colors
      * @return
      */
-    public static CanvasSnapshot createServerSnapshot(byte[] colors, long timestamp) {
+    public static CanvasSnapshot createServerSnapshot(int[] colors, long timestamp) {
         return new CanvasSnapshot(RANDOM.nextInt(), colors, timestamp, false);
     }
 }
@@ -19,7 +19,9 @@ import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.level.Level;
 import net.minecraftforge.items.ItemStackHandler;
 
-import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
 
 /**
  * Canvas combination is a helper structure that
@@ -34,25 +36,27 @@ import java.nio.ByteBuffer;
  * we're not using recipe model
  */
 public class CanvasCombinationAction extends AbstractCanvasAction {
-    public static final int[][] paintingShapes = new int[][]{
-            {1, 1},
-            {1, 2},
-            {1, 3},
-            {2, 1},
-            {2, 2},
-            {2, 3},
-            {2, 4},
-            {3, 1},
-            {3, 2},
-            {3, 3},
-            {3, 4},
-            {4, 2},
-            {4, 3},
-            {4, 4}
-    };
+    /**
+     * Grid is 4x4, larger paintings are combined
+     * from canvases that were already combined
+     */
+    public static final int MAX_BLOCK_SIZE = 8;
+
+    /**
+     * Every size up to {@link #MAX_BLOCK_SIZE} which
+     * sides differ not more than three times
+     */
+    public static final int[][] paintingShapes = createPaintingShapes();
 
     public Rectangle rectangle;
 
+    /**
+     * Size of every canvas in the rectangle, in blocks,
+     * they all should be the same
+     */
+    private int cellWidth = 1;
+    private int cellHeight = 1;
+
     private boolean hasColorData = false;
 
     public CanvasCombinationAction(ArtistTableMenu menu, Level level) {
@@ -100,6 +104,7 @@ public class CanvasCombinationAction extends AbstractCanvasAction {
         }
 
         boolean canvasesReady = true;
+        int[] cellSize = null;
 
         for (int y = 0; y < ArtistTableMenu.CANVAS_ROW_COUNT; y++) {
             for (int x = 0; x < ArtistTableMenu.CANVAS_COLUMN_COUNT; x++) {
@@ -122,6 +127,17 @@ public class CanvasCombinationAction extends AbstractCanvasAction {
                         return;
                     }
 
+                    final int[] stackSize = CanvasItem.getBlockSize(currentStack);
+
+                    if (cellSize == null) {
+                        cellSize = stackSize;
+                    } else if (stackSize == null || cellSize[0] != stackSize[0] || cellSize[1] != stackSize[1]) {
+                        this.state = State.INVALID;
+                        this.rectangle = CanvasCombinationAction.getZeroRect();
+                        this.canvasData = null;
+                        return;
+                    }
+
                     if (
                         this.level.isClientSide()
                         && CanvasItem.getCanvasCode(currentStack) != null
@@ -153,9 +169,12 @@ public class CanvasCombinationAction extends AbstractCanvasAction {
             return;
         }
 
+        final int cellWidth = cellSize != null ? cellSize[0] : 1;
+        final int cellHeight = cellSize != null ? cellSize[1] : 1;
+
         boolean shapeAvailable = false;
         for (int[] shape: CanvasCombinationAction.paintingShapes) {
-            if (rectangle.width == shape[0] && rectangle.height == shape[1]) {
+            if (rectangle.width * cellWidth == shape[0] && rectangle.height * cellHeight == shape[1]) {
                 shapeAvailable = true;
                 break;
             }
@@ -170,12 +189,27 @@ public class CanvasCombinationAction extends AbstractCanvasAction {
 
         this.state = State.READY;
         this.rectangle = rectangle;
+        this.cellWidth = cellWidth;
+        this.cellHeight = cellHeight;
         this.canvasData = this.createCanvasData(combinationContainer, rectangle, this.level);
     }
 
+    /**
+     * @return size of combined canvas in blocks
+     */
+    public int getBlockWidth() {
+        return this.rectangle.width * this.cellWidth;
+    }
+
+    public int getBlockHeight() {
+        return this.rectangle.height * this.cellHeight;
+    }
+
     private DummyCanvasData createCanvasData(ItemStackHandler artistTableContainer, Rectangle rectangle, Level world) {
-        final int pixelWidth = rectangle.width * Helper.getResolution().getNumeric();
-        final int pixelHeight = rectangle.height * Helper.getResolution().getNumeric();
+        final int cellPixelWidth = this.cellWidth * Helper.getResolution().getNumeric();
+        final int cellPixelHeight = this.cellHeight * Helper.getResolution().getNumeric();
+        final int pixelWidth = rectangle.width * cellPixelWidth;
+        final int pixelHeight = rectangle.height * cellPixelHeight;
         this.hasColorData = false;
 
         for (int i = 0; i < artistTableContainer.getSlots(); i++) {
@@ -187,23 +221,11 @@ public class CanvasCombinationAction extends AbstractCanvasAction {
 
         // Return default canvas instead
         if (!this.hasColorData) {
-            final int resolutionPixels = Helper.getResolution().getNumeric();
-            byte[] color = new byte[
-                rectangle.width * resolutionPixels *
-                rectangle.height * resolutionPixels *
-                4
-            ];
-            ByteBuffer defaultColorBuffer = ByteBuffer.wrap(color);
-
-            for (int x = 0; x < rectangle.width * resolutionPixels * rectangle.height * resolutionPixels; x++) {
-                defaultColorBuffer.putInt(x * 4, Helper.CANVAS_COLOR);
-            }
-
-            DummyCanvasData combinedCanvasData = ZetterCanvasTypes.DUMMY.get().createWrap(
+            DummyCanvasData combinedCanvasData = ZetterCanvasTypes.DUMMY.get().createFill(
                 Helper.getResolution(),
-                rectangle.width * resolutionPixels,
-                rectangle.height * resolutionPixels,
-                color
+                pixelWidth,
+                pixelHeight,
+                Helper.CANVAS_COLOR
             );
 
             if (world.isClientSide()) {
@@ -213,7 +235,7 @@ public class CanvasCombinationAction extends AbstractCanvasAction {
             return combinedCanvasData;
         }
 
-        ByteBuffer color = ByteBuffer.allocate(pixelWidth * pixelHeight * 4);
+        int[] color = new int[pixelWidth * pixelHeight];
 
         for (int slotY = rectangle.y; slotY < rectangle.y + rectangle.height; slotY++) {
             for (int slotX = rectangle.x; slotX < rectangle.x + rectangle.width; slotX++) {
@@ -227,23 +249,23 @@ public class CanvasCombinationAction extends AbstractCanvasAction {
                 if (smallCanvasData != null) {
                     for (int smallY = 0; smallY < smallCanvasData.getHeight(); smallY++) {
                         for (int smallX = 0; smallX < smallCanvasData.getWidth(); smallX++) {
-                            final int bigX = relativeX * Helper.getResolution().getNumeric() + smallX;
-                            final int bigY = relativeY * Helper.getResolution().getNumeric() + smallY;
+                            final int bigX = relativeX * cellPixelWidth + smallX;
+                            final int bigY = relativeY * cellPixelHeight + smallY;
 
-                            final int colorIndex = (bigY * pixelWidth + bigX) * 4;
+                            final int colorIndex = bigY * pixelWidth + bigX;
 
-                            color.putInt(colorIndex, smallCanvasData.getColorAt(smallX, smallY));
+                            color[colorIndex] = smallCanvasData.getColorAt(smallCanvasData.getPixelIndexUnchecked(smallX, smallY));
                         }
                     }
                 } else {
-                    for (int smallY = 0; smallY < Helper.getResolution().getNumeric(); smallY++) {
-                        for (int smallX = 0; smallX < Helper.getResolution().getNumeric(); smallX++) {
-                            final int bigX = relativeX * Helper.getResolution().getNumeric() + smallX;
-                            final int bigY = relativeY * Helper.getResolution().getNumeric() + smallY;
+                    for (int smallY = 0; smallY < cellPixelHeight; smallY++) {
+                        for (int smallX = 0; smallX < cellPixelWidth; smallX++) {
+                            final int bigX = relativeX * cellPixelWidth + smallX;
+                            final int bigY = relativeY * cellPixelHeight + smallY;
 
-                            final int colorIndex = (bigY * pixelWidth + bigX) * 4;
+                            final int colorIndex = bigY * pixelWidth + bigX;
 
-                            color.putInt(colorIndex, Helper.CANVAS_COLOR);
+                            color[colorIndex] = Helper.CANVAS_COLOR;
                         }
                     }
                 }
@@ -254,7 +276,7 @@ public class CanvasCombinationAction extends AbstractCanvasAction {
             Helper.getResolution(),
             pixelWidth,
             pixelHeight,
-            color.array()
+            color
         );
 
         if (world.isClientSide()) {
@@ -280,7 +302,7 @@ public class CanvasCombinationAction extends AbstractCanvasAction {
         if (this.isReady()) {
             if (combinedStack.isEmpty()) {
                 combinedStack = new ItemStack(ZetterItems.CANVAS.get());
-                CanvasItem.setBlockSize(combinedStack, this.rectangle.width, this.rectangle.height);
+                CanvasItem.setBlockSize(combinedStack, this.getBlockWidth(), this.getBlockHeight());
             }
         } else {
             combinedStack = ItemStack.EMPTY;
@@ -315,7 +337,7 @@ public class CanvasCombinationAction extends AbstractCanvasAction {
                 canvasTracker.registerCanvasData(newCode, combinedCanvasData);
                 CanvasItem.storeCanvasData(stack, newCode, combinedCanvasData);
             } else {
-                CanvasItem.setBlockSize(stack, this.rectangle.width, this.rectangle.height);
+                CanvasItem.setBlockSize(stack, this.getBlockWidth(), this.getBlockHeight());
             }
         }
 
@@ -373,6 +395,20 @@ public class CanvasCombinationAction extends AbstractCanvasAction {
         return this.state == State.READY;
     }
 
+    private static int[][] createPaintingShapes() {
+        List<int[]> shapes = new ArrayList<>();
+
+        for (int width = 1; width <= MAX_BLOCK_SIZE; width++) {
+            for (int height = 1; height <= MAX_BLOCK_SIZE; height++) {
+                if (Math.max(width, height) <= Math.min(width, height) * 3) {
+                    shapes.add(new int[]{width, height});
+                }
+            }
+        }
+
+        return shapes.toArray(new int[0][]);
+    }
+
     public static Rectangle getRect(Tuple<Integer, Integer> min, Tuple<Integer, Integer> max) {
         int width = max.getA() + 1 - min.getA();
         int height = max.getB() + 1 - min.getB();
@@ -19,7 +19,7 @@ import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.level.Level;
 import net.minecraftforge.items.ItemStackHandler;
 
-import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
 
 public class CanvasSplitAction extends AbstractCanvasAction {
     /**
@@ -64,6 +64,13 @@ public class CanvasSplitAction extends AbstractCanvasAction {
                 return false;
             }
 
+            // Canvases larger than grid can't be split
+            int[] size = CanvasItem.getBlockSize(stack);
+
+            if (size == null || size[0] > ArtistTableMenu.CANVAS_COLUMN_COUNT || size[1] > ArtistTableMenu.CANVAS_ROW_COUNT) {
+                return false;
+            }
+
             return this.noRealCanvases() && this.menu.isSplitGridEmpty();
         }
 
@@ -171,23 +178,11 @@ public class CanvasSplitAction extends AbstractCanvasAction {
 
             assert size != null && size.length == 2;
 
-            final int resolutionPixels = Helper.getResolution().getNumeric();
-            byte[] color = new byte[
-                size[0] * resolutionPixels *
-                size[1] * resolutionPixels *
-                4
-            ];
-            ByteBuffer defaultColorBuffer = ByteBuffer.wrap(color);
-
-            for (int x = 0; x < size[0] * resolutionPixels * size[1] * resolutionPixels; x++) {
-                defaultColorBuffer.putInt(x * 4, Helper.CANVAS_COLOR);
-            }
-
-            this.canvasData = ZetterCanvasTypes.DUMMY.get().createWrap(
+            this.canvasData = ZetterCanvasTypes.DUMMY.get().createFill(
                 Helper.getResolution(),
                 size[0] * Helper.getResolution().getNumeric(),
                 size[1] * Helper.getResolution().getNumeric(),
-                color
+                Helper.CANVAS_COLOR
             );
 
             if (this.level.isClientSide()) {
@@ -308,7 +303,7 @@ public class CanvasSplitAction extends AbstractCanvasAction {
                                 numericResolution,
                                 numericResolution,
                                 getPartialColorData(
-                                    combinedCanvasData.getColorData(),
+                                    combinedCanvasData.getColorDataBuffer(),
                                     numericResolution,
                                     x,
                                     y,
@@ -331,7 +326,7 @@ public class CanvasSplitAction extends AbstractCanvasAction {
                     numericResolution,
                     numericResolution,
                     getPartialColorData(
-                        combinedCanvasData.getColorData(),
+                        combinedCanvasData.getColorDataBuffer(),
                         numericResolution,
                         missingX,
                         missingY,
@@ -423,14 +418,13 @@ public class CanvasSplitAction extends AbstractCanvasAction {
         }
     }
 
-    private static byte[] getPartialColorData(byte[] colorData, int resolution, int blockX, int blockY, int blockWidth, int blockHeight) {
-        byte[] destinationColor = new byte[resolution * resolution * 4];
-        ByteBuffer colorBuffer = ByteBuffer.wrap(colorData);
+    private static int[] getPartialColorData(IntBuffer colorBuffer, int resolution, int blockX, int blockY, int blockWidth, int blockHeight) {
+        int[] destinationColor = new int[resolution * resolution];
 
-        final int offset = ((blockWidth * resolution * blockY * resolution) + blockX * resolution) * 4;
+        final int offset = (blockWidth * resolution * blockY * resolution) + blockX * resolution;
 
         for (int y = 0; y < resolution; y++) {
-            colorBuffer.get(offset + (blockWidth * resolution * y) * 4, destinationColor, y * resolution * 4, resolution * 4);
+            colorBuffer.get(offset + blockWidth * resolution * y, destinationColor, y * resolution, resolution);
         }
 
         return destinationColor;
@@ -0,0 +1,520 @@
+package me.dantaeusb.zetter.network;
+
+import me.dantaeusb.zetter.Zetter;
+import me.dantaeusb.zetter.ZetterConfig;
+import me.dantaeusb.zetter.entity.item.EaselEntity;
+import me.dantaeusb.zetter.entity.item.PaintingEntity;
+import me.dantaeusb.zetter.item.CanvasItem;
+import me.dantaeusb.zetter.item.PaintingItem;
+import me.dantaeusb.zetter.menu.ArtistTableMenu;
+import me.dantaeusb.zetter.menu.EaselMenu;
+import me.dantaeusb.zetter.network.packet.SCanvasChunkPacket;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.entity.decoration.ItemFrame;
+import net.minecraft.world.item.ItemStack;
+
+import javax.annotation.Nullable;
+import java.util.*;
+
+/**
+ * Sends canvas packets to players within bandwidth budget,
+ * so a burst of requests or syncs doesn't take the whole
+ * connection, and movement and chunks are not delayed.
+ *
+ * Every player has a queue: canvas on the easel player
+ * paints on goes first, then canvases player is looking
+ * at in a screen or holding, then close ones, then far ones.
+ * Packets of the same canvas keep the order they were queued
+ * in, as bands and deltas rely on the sync sent before them.
+ *
+ * Packets larger than {@link #CHUNK_SIZE} are split into
+ * {@link SCanvasChunkPacket}s, which are assembled on client.
+ *
+ * Canvas state that is outdated by a new sync is dropped
+ * if it was not started yet, and queue of every player is
+ * limited by {@link #MAX_QUEUED_SECONDS} of its budget.
+ * Bands are dropped only with the sync they belong to,
+ * client can't tell that some band is missing.
+ */
+public class CanvasDispatcher {
+    public static final int CHUNK_SIZE = 16 * 1024;
+
+    /**
+     * Same as distance where client starts to show full pixels
+     */
+    private static final double NEAR_DISTANCE = 24.0D;
+
+    /**
+     * When there's more queued than could be sent in that
+     * time, canvas updates that are less urgent are dropped,
+     * client asks for them again when needed
+     */
+    private static final int MAX_QUEUED_SECONDS = 30;
+
+    private final Map<UUID, PlayerQueue> queues = new HashMap<>();
+
+    private long sequence = 0;
+    private long ticks = 0;
+
+    public enum Priority {
+        EDITING,
+        VIEWING,
+        NEAR,
+        FAR
+    }
+
+    public enum Kind {
+        /**
+         * Whole canvas, replaces queued state of the canvas
+         */
+        SYNC,
+        /**
+         * Downsampled canvas, full pixels are requested later
+         */
+        PREVIEW,
+        /**
+         * Pixels of the streamed canvas sync queued before,
+         * never dropped without that sync
+         */
+        BAND,
+        DELTA,
+        /**
+         * Never dropped: removals, screens, exports
+         */
+        OTHER;
+
+        private boolean isState() {
+            return this != OTHER;
+        }
+    }
+
+    public boolean send(ServerPlayer player, String canvasCode, Object message, Kind kind) {
+        return this.send(player, List.of(canvasCode), SharedPacket.encode(message), null, kind);
+    }
+
+    public boolean send(ServerPlayer player, String canvasCode, Object message, Priority priority, Kind kind) {
+        return this.send(player, List.of(canvasCode), SharedPacket.encode(message), priority, kind);
+    }
+
+    public boolean send(ServerPlayer player, String canvasCode, SharedPacket packet, Kind kind) {
+        return this.send(player, List.of(canvasCode), packet, null, kind);
+    }
+
+    /**
+     * @param player
+     * @param canvasCodes canvases in the packet, packet goes with the most urgent of them
+     * @param packet
+     * @param priority if null, it's decided by where player sees the canvases
+     * @param kind
+     * @return false if queue is full and packet is not sent, canvas should not be marked as synced then
+     */
+    public boolean send(ServerPlayer player, Collection<String> canvasCodes, SharedPacket packet, @Nullable Priority priority, Kind kind) {
+        PlayerQueue queue = this.queues.computeIfAbsent(player.getUUID(), k -> new PlayerQueue());
+
+        // State that wasn't sent yet is outdated by the new sync
+        if ((kind == Kind.SYNC || kind == Kind.PREVIEW) && canvasCodes.size() == 1) {
+            queue.dropPending(canvasCodes.iterator().next(), null);
+        }
+
+        Priority transferPriority = Priority.FAR;
+
+        for (String canvasCode : canvasCodes) {
+            Priority canvasPriority = priority != null ? priority : this.getPriority(player, canvasCode, queue);
+            Priority queuedPriority = queue.queuedPriorities.get(canvasCode);
+
+            // Already queued packets of this canvas should not be overtaken
+            if (queuedPriority != null && queuedPriority.compareTo(canvasPriority) < 0) {
+                canvasPriority = queuedPriority;
+            }
+
+            if (canvasPriority.compareTo(transferPriority) < 0) {
+                transferPriority = canvasPriority;
+            }
+        }
+
+        final Transfer transfer = new Transfer(List.copyOf(canvasCodes), transferPriority, kind, this.sequence++, packet.getChunks());
+        final long maxQueuedBytes = (long) getBudgetPerTick() * 20 * MAX_QUEUED_SECONDS;
+
+        // Sync of the band was already accepted, so band should follow it
+        if (kind.isState() && kind != Kind.BAND) {
+            while (queue.bytes + transfer.getRemainingBytes() > maxQueuedBytes) {
+                final Transfer dropped = queue.getLeastUrgentPending(transferPriority);
+
+                if (dropped == null) {
+                    break;
+                }
+
+                queue.dropPending(dropped.canvasCodes.get(0), transferPriority);
+            }
+
+            // Could be requested again, but one large sync still can go to empty queue
+            if (queue.bytes > 0 && queue.bytes + transfer.getRemainingBytes() > maxQueuedBytes) {
+                Zetter.LOG.debug("Canvas queue of " + player.getScoreboardName() + " is full, not sending " + canvasCodes);
+                return false;
+            }
+        }
+
+        for (String canvasCode : canvasCodes) {
+            queue.promote(canvasCode, transferPriority);
+        }
+
+        packet.addRecipient();
+        queue.add(transfer);
+
+        return true;
+    }
+
+    /**
+     * If player asks for the canvas again before the answer
+     * reached them, it's enough to send the queued answer
+     *
+     * @param player
+     * @param canvasCode
+     * @param preview if preview answer is enough
+     * @return
+     */
+    public boolean isAnswerQueued(ServerPlayer player, String canvasCode, boolean preview) {
+        final PlayerQueue queue = this.queues.get(player.getUUID());
+
+        if (queue == null || !queue.queuedCounts.containsKey(canvasCode)) {
+            return false;
+        }
+
+        for (Transfer transfer : queue.transfers) {
+            if (!transfer.canvasCodes.contains(canvasCode)) {
+                continue;
+            }
+
+            if (transfer.kind == Kind.SYNC || transfer.kind == Kind.BAND || (preview && transfer.kind == Kind.PREVIEW)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static int getBudgetPerTick() {
+        return ZetterConfig.SERVER.canvasBandwidth.get() * 1024 / 20;
+    }
+
+    /**
+     * Send queued packets within budget
+     *
+     * @param server
+     */
+    public void tick(MinecraftServer server) {
+        this.ticks++;
+
+        final int budgetPerTick = getBudgetPerTick();
+
+        for (Map.Entry<UUID, PlayerQueue> queueEntry : this.queues.entrySet()) {
+            final PlayerQueue queue = queueEntry.getValue();
+
+            // Budget could be overspent by the last packet, it's paid next tick
+            queue.budget = Math.min(queue.budget + budgetPerTick, budgetPerTick);
+
+            if (queue.transfers.isEmpty()) {
+                continue;
+            }
+
+            ServerPlayer player = server.getPlayerList().getPlayer(queueEntry.getKey());
+
+            if (player == null) {
+                queue.clear();
+                continue;
+            }
+
+            while (queue.budget > 0 && !queue.transfers.isEmpty()) {
+                final Transfer transfer = queue.transfers.peek();
+                final SharedPacket chunk = transfer.chunks.get(transfer.nextChunk++);
+
+                chunk.send(player);
+                queue.budget -= chunk.getSize();
+                queue.bytes -= chunk.getSize();
+
+                if (transfer.nextChunk >= transfer.chunks.size()) {
+                    queue.remove(queue.transfers.poll());
+                }
+            }
+        }
+    }
+
+    public void forget(UUID playerId) {
+        this.queues.remove(playerId);
+    }
+
+    /**
+     * @return bytes waiting to be sent to all players
+     */
+    public long getQueuedBytes() {
+        long queuedBytes = 0;
+
+        for (PlayerQueue queue : this.queues.values()) {
+            queuedBytes += queue.bytes;
+        }
+
+        return queuedBytes;
+    }
+
+    private Priority getPriority(ServerPlayer player, String canvasCode, PlayerQueue queue) {
+        if (player.containerMenu instanceof EaselMenu easelMenu && canvasCode.equals(easelMenu.getCanvasItemCode())) {
+            return Priority.EDITING;
+        }
+
+        if (
+            player.containerMenu instanceof ArtistTableMenu
+            || canvasCode.equals(getItemCanvasCode(player.getMainHandItem()))
+            || canvasCode.equals(getItemCanvasCode(player.getOffhandItem()))
+        ) {
+            return Priority.VIEWING;
+        }
+
+        if (queue.getNearbyCanvasCodes(player, this.ticks).contains(canvasCode)) {
+            return Priority.NEAR;
+        }
+
+        return Priority.FAR;
+    }
+
+    private static @Nullable String getItemCanvasCode(ItemStack stack) {
+        if (stack.getItem() instanceof PaintingItem) {
+            return PaintingItem.getPaintingCode(stack);
+        } else if (stack.getItem() instanceof CanvasItem) {
+            return CanvasItem.getCanvasCode(stack);
+        }
+
+        return null;
+    }
+
+    private static class PlayerQueue {
+        private final PriorityQueue<Transfer> transfers = new PriorityQueue<>();
+
+        /**
+         * Priority and count of queued transfers by canvas
+         */
+        private final Map<String, Priority> queuedPriorities = new HashMap<>();
+        private final Map<String, Integer> queuedCounts = new HashMap<>();
+
+        private int budget = 0;
+        private long bytes = 0;
+
+        /**
+         * Canvases around the player, looked up
+         * once per tick when it's needed
+         */
+        private Set<String> nearbyCanvasCodes = Set.of();
+        private long nearbyTick = -1;
+
+        private void add(Transfer transfer) {
+            this.transfers.add(transfer);
+            this.bytes += transfer.getRemainingBytes();
+
+            for (String canvasCode : transfer.canvasCodes) {
+                this.queuedPriorities.put(canvasCode, transfer.priority);
+                this.queuedCounts.merge(canvasCode, 1, Integer::sum);
+            }
+        }
+
+        private void remove(Transfer transfer) {
+            for (String canvasCode : transfer.canvasCodes) {
+                if (this.queuedCounts.merge(canvasCode, -1, Integer::sum) <= 0) {
+                    this.queuedCounts.remove(canvasCode);
+                    this.queuedPriorities.remove(canvasCode);
+                }
+            }
+        }
+
+        /**
+         * Move queued transfers of the canvas up, so
+         * they're still sent before the new one
+         *
+         * @param canvasCode
+         * @param priority
+         */
+        private void promote(String canvasCode, Priority priority) {
+            final Priority queuedPriority = this.queuedPriorities.get(canvasCode);
+
+            if (queuedPriority == null || queuedPriority.compareTo(priority) <= 0) {
+                return;
+            }
+
+            List<Transfer> promoted = new ArrayList<>();
+
+            for (Transfer transfer : this.transfers) {
+                if (transfer.canvasCodes.contains(canvasCode) && transfer.priority.compareTo(priority) > 0) {
+                    promoted.add(transfer);
+                }
+            }
+
+            this.transfers.removeAll(promoted);
+
+            for (Transfer transfer : promoted) {
+                transfer.priority = priority;
+                this.transfers.add(transfer);
+            }
+
+            this.queuedPriorities.put(canvasCode, priority);
+        }
+
+        /**
+         * Drop canvas state that is not started yet, transfers
+         * with other canvases are kept, as they're needed too.
+         * When new sync replaces the canvas, all its bands
+         * are outdated, otherwise bands are dropped only
+         * after the sync they belong to
+         *
+         * @param canvasCode
+         * @param lessUrgentThan if not null, drop only less urgent transfers
+         */
+        private void dropPending(String canvasCode, @Nullable Priority lessUrgentThan) {
+            if (!this.queuedCounts.containsKey(canvasCode)) {
+                return;
+            }
+
+            List<Transfer> canvasTransfers = new ArrayList<>();
+
+            for (Transfer transfer : this.transfers) {
+                if (transfer.canvasCodes.contains(canvasCode)) {
+                    canvasTransfers.add(transfer);
+                }
+            }
+
+            // Queue is not iterated in order, but bands go right after their sync
+            canvasTransfers.sort(Comparator.comparingLong(transfer -> transfer.sequence));
+
+            List<Transfer> dropped = new ArrayList<>();
+            boolean syncDropped = lessUrgentThan == null;
+
+            for (Transfer transfer : canvasTransfers) {
+                final boolean droppable = transfer.isDroppable()
+                    && (lessUrgentThan == null || transfer.priority.compareTo(lessUrgentThan) > 0);
+
+                if (transfer.kind == Kind.SYNC || transfer.kind == Kind.PREVIEW || transfer.kind == Kind.OTHER) {
+                    syncDropped = lessUrgentThan == null || droppable;
+                }
+
+                if (droppable && (transfer.kind != Kind.BAND || syncDropped)) {
+                    dropped.add(transfer);
+                }
+            }
+
+            this.transfers.removeAll(dropped);
+
+            for (Transfer transfer : dropped) {
+                this.bytes -= transfer.getRemainingBytes();
+                this.remove(transfer);
+            }
+        }
+
+        private @Nullable Transfer getLeastUrgentPending(Priority lessUrgentThan) {
+            Transfer leastUrgent = null;
+
+            for (Transfer transfer : this.transfers) {
+                if (
+                    transfer.isDroppable()
+                    && transfer.kind != Kind.BAND
+                    && transfer.priority.compareTo(lessUrgentThan) > 0
+                    && (leastUrgent == null || transfer.compareTo(leastUrgent) > 0)
+                ) {
+                    leastUrgent = transfer;
+                }
+            }
+
+            return leastUrgent;
+        }
+
+        private void clear() {
+            this.transfers.clear();
+            this.queuedPriorities.clear();
+            this.queuedCounts.clear();
+            this.bytes = 0;
+        }
+
+        private Set<String> getNearbyCanvasCodes(ServerPlayer player, long tick) {
+            if (this.nearbyTick == tick) {
+                return this.nearbyCanvasCodes;
+            }
+
+            Set<String> nearbyCanvasCodes = new HashSet<>();
+
+            for (Entity entity : player.getLevel().getEntities(
+                player,
+                player.getBoundingBox().inflate(NEAR_DISTANCE),
+                entity -> entity instanceof PaintingEntity || entity instanceof EaselEntity || entity instanceof ItemFrame
+            )) {
+                String canvasCode = null;
+
+                if (entity instanceof PaintingEntity paintingEntity) {
+                    canvasCode = paintingEntity.getPaintingCode();
+                } else if (entity instanceof EaselEntity easelEntity) {
+                    canvasCode = easelEntity.getEntityCanvasCode();
+                } else if (entity instanceof ItemFrame itemFrame) {
+                    canvasCode = getItemCanvasCode(itemFrame.getItem());
+                }
+
+                if (canvasCode != null) {
+                    nearbyCanvasCodes.add(canvasCode);
+                }
+            }
+
+            this.nearbyCanvasCodes = nearbyCanvasCodes;
+            this.nearbyTick = tick;
+
+            return nearbyCanvasCodes;
+        }
+    }
+
+    private static class Transfer implements Comparable<Transfer> {
+        private final List<String> canvasCodes;
+        private final Kind kind;
+        private final long sequence;
+        private final List<SharedPacket> chunks;
+
+        private Priority priority;
+        private int nextChunk = 0;
+
+        private Transfer(List<String> canvasCodes, Priority priority, Kind kind, long sequence, List<SharedPacket> chunks) {
+            this.canvasCodes = canvasCodes;
+            this.priority = priority;
+            this.kind = kind;
+            this.sequence = sequence;
+            this.chunks = chunks;
+        }
+
+        /**
+         * Started transfers are finished, client
+         * already has a part of them
+         *
+         * @return
+         */
+        private boolean isDroppable() {
+            return this.kind.isState() && this.nextChunk == 0 && this.canvasCodes.size() == 1;
+        }
+
+        private long getRemainingBytes() {
+            long remainingBytes = 0;
+
+            for (int chunk = this.nextChunk; chunk < this.chunks.size(); chunk++) {
+                remainingBytes += this.chunks.get(chunk).getSize();
+            }
+
+            return remainingBytes;
+        }
+
+        /**
+         * More urgent transfer could go in between chunks of
+         * started one, client assembles them separately
+         *
+         * @param other the object to be compared.
+         * @return
+         */
+        @Override
+        public int compareTo(Transfer other) {
+            final int priorityOrder = this.priority.compareTo(other.priority);
+
+            return priorityOrder != 0 ? priorityOrder : Long.compare(this.sequence, other.sequence);
+        }
+    }
+}
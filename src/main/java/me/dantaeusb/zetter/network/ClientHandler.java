@@ -1,9 +1,14 @@
 package me.dantaeusb.zetter.network;
 
+import io.netty.buffer.Unpooled;
 import me.dantaeusb.zetter.Zetter;
+import me.dantaeusb.zetter.capability.canvastracker.CanvasClientTracker;
 import me.dantaeusb.zetter.capability.canvastracker.CanvasTracker;
+import me.dantaeusb.zetter.client.cache.PaintingCache;
+import me.dantaeusb.zetter.client.renderer.CanvasRenderer;
 import me.dantaeusb.zetter.core.Helper;
 import me.dantaeusb.zetter.core.ZetterCapabilities;
+import me.dantaeusb.zetter.core.ZetterNetwork;
 import me.dantaeusb.zetter.entity.item.EaselEntity;
 import me.dantaeusb.zetter.event.CanvasViewEvent;
 import me.dantaeusb.zetter.menu.ArtistTableMenu;
@@ -12,18 +17,38 @@ import me.dantaeusb.zetter.storage.AbstractCanvasData;
 import me.dantaeusb.zetter.storage.PaintingData;
 import net.minecraft.ChatFormatting;
 import net.minecraft.client.Minecraft;
+import net.minecraft.client.multiplayer.ClientPacketListener;
 import net.minecraft.client.player.LocalPlayer;
+import net.minecraft.network.FriendlyByteBuf;
 import net.minecraft.network.chat.Component;
+import net.minecraft.network.protocol.game.ClientboundCustomPayloadPacket;
 import net.minecraft.world.level.Level;
 import net.minecraftforge.common.MinecraftForge;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * For some reason, network executor suppresses exceptions,
  * so we catch all of those manually
  */
 public class ClientHandler {
+    /**
+     * Exported paintings which pixels are still streamed,
+     * painting is saved when the last band arrives
+     */
+    private static final Map<String, SCanvasSyncExportPacket> pendingExports = new HashMap<>();
+
+    /**
+     * Chunks of large packets by transfer id,
+     * until every chunk of transfer arrives
+     */
+    private static final Map<Integer, byte[][]> pendingChunks = new LinkedHashMap<>();
+    private static final int MAX_PENDING_TRANSFERS = 16;
+
     /**
      * When canvas sent from sever, update client's canvas
      * and process update on container screens
@@ -40,7 +65,219 @@ public class ClientHandler {
             CanvasTracker canvasTracker = world.getCapability(ZetterCapabilities.CANVAS_TRACKER)
                 .orElseThrow(() -> new RuntimeException("Cannot find world canvas capability"));
 
+            // Keep showing what we have until streamed pixels arrive
+            if (canvasData.isStreamed()) {
+                AbstractCanvasData previousCanvasData = canvasTracker.getCanvasData(canvasCode);
+
+                if (
+                    previousCanvasData != null
+                    && previousCanvasData.getWidth() == canvasData.getWidth()
+                    && previousCanvasData.getHeight() == canvasData.getHeight()
+                ) {
+                    canvasData.updateColorRegion(0, 0, canvasData.getWidth(), canvasData.getHeight(), previousCanvasData.getColorData());
+                    canvasData.setPreview(previousCanvasData.isPreview());
+                }
+            }
+
             canvasTracker.registerCanvasData(canvasCode, canvasData, timestamp);
+
+            if (canvasData instanceof PaintingData paintingData && !paintingData.isPreview()) {
+                PaintingCache.getInstance().write(canvasCode, paintingData);
+            }
+        } catch (Exception e) {
+            Zetter.LOG.error(e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * @param packetIn
+     * @param world
+     */
+    public static void processCanvasSyncBatch(final SCanvasSyncBatchPacket packetIn, Level world) {
+        for (SCanvasSyncPacket<?> syncPacket : packetIn.canvases) {
+            processCanvasSync(syncPacket, world);
+        }
+    }
+
+    /**
+     * Collect chunks of a large packet, when all of them
+     * are here, handle packet as if it was received at once
+     *
+     * @param packetIn
+     */
+    public static void processCanvasChunk(final SCanvasChunkPacket packetIn) {
+        try {
+            byte[][] chunks = pendingChunks.get(packetIn.transferId());
+
+            // Chunks come in order, first chunk starts new transfer
+            if (chunks == null || packetIn.index() == 0 || chunks.length != packetIn.count()) {
+                chunks = new byte[packetIn.count()][];
+                pendingChunks.remove(packetIn.transferId());
+                pendingChunks.put(packetIn.transferId(), chunks);
+
+                if (pendingChunks.size() > MAX_PENDING_TRANSFERS) {
+                    Integer oldestTransferId = pendingChunks.keySet().iterator().next();
+                    pendingChunks.remove(oldestTransferId);
+                }
+            }
+
+            chunks[packetIn.index()] = packetIn.data();
+
+            for (byte[] chunk : chunks) {
+                if (chunk == null) {
+                    return;
+                }
+            }
+
+            pendingChunks.remove(packetIn.transferId());
+
+            ClientPacketListener connection = Minecraft.getInstance().getConnection();
+
+            if (connection != null) {
+                connection.handleCustomPayload(new ClientboundCustomPayloadPacket(
+                    ZetterNetwork.simpleChannelRL,
+                    new FriendlyByteBuf(Unpooled.wrappedBuffer(chunks))
+                ));
+            }
+        } catch (Exception e) {
+            Zetter.LOG.error(e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * Server has the same painting as we have in cache,
+     * if cached file is lost, request painting again.
+     * File is read on IO thread, painting is registered
+     * back on client thread if we're still in that world
+     *
+     * @param packetIn
+     * @param world
+     */
+    public static void processCanvasNotModified(final SCanvasNotModifiedPacket packetIn, Level world) {
+        try {
+            final String canvasCode = packetIn.canvasCode();
+
+            CanvasTracker canvasTracker = world.getCapability(ZetterCapabilities.CANVAS_TRACKER)
+                .orElseThrow(() -> new RuntimeException("Cannot find world canvas capability"));
+
+            PaintingCache.getInstance().read(canvasCode, packetIn.contentHash()).thenAcceptAsync(paintingData -> {
+                if (Minecraft.getInstance().level != world) {
+                    return;
+                }
+
+                if (paintingData == null) {
+                    CanvasRenderer.getInstance().queueCanvasTextureUpdate(canvasCode);
+                    return;
+                }
+
+                canvasTracker.registerCanvasData(canvasCode, paintingData, packetIn.timestamp());
+            }, Minecraft.getInstance());
+        } catch (Exception e) {
+            Zetter.LOG.error(e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * Apply changed regions to the canvas, if client has the
+     * canvas delta is based on, otherwise request full sync
+     *
+     * @param packetIn
+     * @param world
+     */
+    public static void processCanvasDeltaSync(final SCanvasDeltaSyncPacket packetIn, Level world) {
+        try {
+            final String canvasCode = packetIn.canvasCode();
+
+            CanvasClientTracker canvasTracker = (CanvasClientTracker) world.getCapability(ZetterCapabilities.CANVAS_TRACKER)
+                .orElseThrow(() -> new RuntimeException("Cannot find world canvas capability"));
+
+            AbstractCanvasData canvasData = canvasTracker.getCanvasData(canvasCode);
+
+            if (canvasData == null) {
+                return;
+            }
+
+            if (canvasTracker.getTimestamp(canvasCode) != packetIn.baseTimestamp()) {
+                CanvasRenderer.getInstance().queueCanvasTextureUpdate(canvasCode);
+                return;
+            }
+
+            final int[] regions = packetIn.regions();
+            final int[] color = packetIn.decodeColor();
+            int offset = 0;
+
+            for (int i = 0; i < regions.length; i += 4) {
+                final int regionPixels = regions[i + 2] * regions[i + 3];
+
+                canvasData.updateColorRegion(
+                    regions[i], regions[i + 1], regions[i + 2], regions[i + 3],
+                    Arrays.copyOfRange(color, offset, offset + regionPixels)
+                );
+
+                offset += regionPixels;
+            }
+
+            canvasTracker.setTimestamp(canvasCode, packetIn.timestamp());
+            CanvasRenderer.getInstance().updateCanvasTexture(canvasCode, canvasData);
+        } catch (Exception e) {
+            Zetter.LOG.error(e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * Apply band of streamed canvas pixels, if it's for
+     * the canvas that we have now, and update only
+     * changed part of the texture
+     *
+     * @param packetIn
+     * @param world
+     */
+    public static void processCanvasRegionSync(final SCanvasRegionSyncPacket packetIn, Level world) {
+        try {
+            final String canvasCode = packetIn.canvasCode();
+
+            SCanvasSyncExportPacket exportPacket = pendingExports.get(canvasCode);
+
+            if (exportPacket != null && exportPacket.timestamp == packetIn.timestamp()) {
+                final PaintingData paintingData = exportPacket.canvasData;
+                paintingData.updateColorRegion(packetIn.x(), packetIn.y(), packetIn.width(), packetIn.height(), packetIn.decodeColor());
+
+                if (packetIn.y() + packetIn.height() >= paintingData.getHeight()) {
+                    pendingExports.remove(canvasCode);
+                    exportPainting(canvasCode, paintingData);
+                }
+
+                return;
+            }
+
+            CanvasClientTracker canvasTracker = (CanvasClientTracker) world.getCapability(ZetterCapabilities.CANVAS_TRACKER)
+                .orElseThrow(() -> new RuntimeException("Cannot find world canvas capability"));
+
+            if (canvasTracker.getTimestamp(canvasCode) != packetIn.timestamp()) {
+                return;
+            }
+
+            AbstractCanvasData canvasData = canvasTracker.getCanvasData(canvasCode);
+
+            if (canvasData == null) {
+                return;
+            }
+
+            canvasData.updateColorRegion(packetIn.x(), packetIn.y(), packetIn.width(), packetIn.height(), packetIn.decodeColor());
+
+            if (packetIn.y() + packetIn.height() >= canvasData.getHeight()) {
+                canvasData.setPreview(false);
+
+                if (canvasData instanceof PaintingData paintingData) {
+                    PaintingCache.getInstance().write(canvasCode, paintingData);
+                }
+            }
+
+            CanvasRenderer.getInstance().updateCanvasTexture(canvasCode, canvasData);
         } catch (Exception e) {
             Zetter.LOG.error(e.getMessage());
             throw e;
@@ -81,6 +318,21 @@ public class ClientHandler {
             final String canvasCode = packetIn.canvasCode;
             final PaintingData paintingData = packetIn.canvasData;
 
+            // Wait for the pixels
+            if (paintingData.isStreamed()) {
+                pendingExports.put(canvasCode, packetIn);
+                return;
+            }
+
+            exportPainting(canvasCode, paintingData);
+        } catch (Exception e) {
+            Zetter.LOG.error(e.getMessage());
+            throw e;
+        }
+    }
+
+    private static void exportPainting(String canvasCode, PaintingData paintingData) {
+        try {
             Helper.exportPainting(Minecraft.getInstance().gameDirectory, canvasCode, paintingData);
 
             Minecraft.getInstance().getChatListener().handleSystemMessage(
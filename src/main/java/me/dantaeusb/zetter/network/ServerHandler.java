@@ -23,6 +23,10 @@ import net.minecraftforge.network.PacketDistributor;
 
 import javax.annotation.Nullable;
 import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * Handle network packets on logical server side
@@ -62,6 +66,55 @@ public class ServerHandler {
         return canvasData;
     }
 
+    /**
+     * Large canvases are sent without pixels, send them
+     * in bands right after the sync packet, with the same
+     * timestamp, so client knows which canvas they are for
+     *
+     * @param player
+     * @param canvasCode
+     * @param canvasData
+     * @param timestamp of the sync packet
+     */
+    public static void sendCanvasRegions(ServerPlayer player, String canvasCode, AbstractCanvasData canvasData, long timestamp) {
+        if (!canvasData.isStreamed()) {
+            return;
+        }
+
+        final CanvasDispatcher dispatcher = getDispatcher(player);
+
+        for (SCanvasRegionSyncPacket regionPacket : SCanvasRegionSyncPacket.createBands(canvasCode, canvasData, timestamp)) {
+            dispatcher.send(player, canvasCode, regionPacket, CanvasDispatcher.Kind.BAND);
+        }
+    }
+
+    /**
+     * Canvas packets are sent within player's bandwidth budget
+     *
+     * @param player
+     * @return
+     */
+    private static CanvasDispatcher getDispatcher(ServerPlayer player) {
+        return ((CanvasServerTracker) Helper.getLevelCanvasTracker(player.getLevel())).getDispatcher();
+    }
+
+    /**
+     * Player has full canvas now, next changes
+     * could be sent as delta
+     *
+     * @param player
+     * @param canvasCode
+     * @param canvasData
+     * @param timestamp of the sync packet
+     */
+    private static void markCanvasSynced(ServerPlayer player, String canvasCode, AbstractCanvasData canvasData, long timestamp) {
+        final CanvasServerTracker canvasTracker = (CanvasServerTracker) Helper.getLevelCanvasTracker(player.getLevel());
+
+        if (canvasTracker != null) {
+            canvasTracker.markCanvasSynced(player.getUUID(), canvasCode, canvasData, timestamp);
+        }
+    }
+
     /**
      * Client asked for abstract canvas data
      * Could be just canvas, could be painting
@@ -78,9 +131,118 @@ public class ServerHandler {
                 return;
             }
 
-            SCanvasSyncPacket canvasSyncMessage = new SCanvasSyncPacket(canvasName, canvasData, System.currentTimeMillis());
+            // Request was repeated after timeout, answer is still on its way
+            if (getDispatcher(sendingPlayer).isAnswerQueued(sendingPlayer, canvasName, packetIn.preview)) {
+                return;
+            }
+
+            final long timestamp = System.currentTimeMillis();
 
-            ZetterNetwork.simpleChannel.send(PacketDistributor.PLAYER.with(() -> sendingPlayer), canvasSyncMessage);
+            // Client has the same painting in cache
+            if (packetIn.cachedHash != null && packetIn.cachedHash.equals(canvasData.getContentHash())) {
+                SCanvasNotModifiedPacket notModifiedMessage = new SCanvasNotModifiedPacket(canvasName, packetIn.cachedHash, timestamp);
+
+                if (getDispatcher(sendingPlayer).send(sendingPlayer, canvasName, notModifiedMessage, CanvasDispatcher.Kind.SYNC)) {
+                    markCanvasSynced(sendingPlayer, canvasName, canvasData, timestamp);
+                }
+
+                return;
+            }
+
+            SCanvasSyncPacket canvasSyncMessage = new SCanvasSyncPacket(canvasName, canvasData, timestamp);
+            final boolean previewOnly = packetIn.preview && canvasData.isStreamed();
+
+            final boolean sent = getDispatcher(sendingPlayer).send(
+                sendingPlayer, canvasName, canvasSyncMessage, previewOnly ? CanvasDispatcher.Kind.PREVIEW : CanvasDispatcher.Kind.SYNC
+            );
+
+            // Preview is enough for now, full pixels will be requested when needed
+            if (sent && !previewOnly) {
+                sendCanvasRegions(sendingPlayer, canvasName, canvasData, timestamp);
+                markCanvasSynced(sendingPlayer, canvasName, canvasData, timestamp);
+            }
+        } catch (Exception e) {
+            Zetter.LOG.error(e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * Same as {@link #processCanvasRequest} for many canvases:
+     * sync packets are sent in batches first, then bands of
+     * streamed canvases, which should arrive after sync
+     *
+     * @param packetIn
+     * @param sendingPlayer
+     */
+    public static void processCanvasBatchRequest(final CCanvasBatchRequestPacket packetIn, ServerPlayer sendingPlayer) {
+        try {
+            final long timestamp = System.currentTimeMillis();
+
+            List<CCanvasBatchRequestPacket.Request> answeredRequests = new ArrayList<>();
+            List<SCanvasSyncPacket<?>> syncPackets = new ArrayList<>();
+
+            for (CCanvasBatchRequestPacket.Request request : packetIn.requests) {
+                final String canvasName = request.canvasName();
+                AbstractCanvasData canvasData = getAndTrackCanvasDataFromRequest(canvasName, sendingPlayer);
+
+                if (canvasData == null) {
+                    Zetter.LOG.warn("No canvas data found, not answering request for " + canvasName);
+                    continue;
+                }
+
+                // Request was repeated after timeout, answer is still on its way
+                if (getDispatcher(sendingPlayer).isAnswerQueued(sendingPlayer, canvasName, request.preview())) {
+                    continue;
+                }
+
+                // Client has the same painting in cache
+                if (request.cachedHash() != null && request.cachedHash().equals(canvasData.getContentHash())) {
+                    SCanvasNotModifiedPacket notModifiedMessage = new SCanvasNotModifiedPacket(canvasName, request.cachedHash(), timestamp);
+
+                    if (getDispatcher(sendingPlayer).send(sendingPlayer, canvasName, notModifiedMessage, CanvasDispatcher.Kind.SYNC)) {
+                        markCanvasSynced(sendingPlayer, canvasName, canvasData, timestamp);
+                    }
+
+                    continue;
+                }
+
+                answeredRequests.add(request);
+                syncPackets.add(new SCanvasSyncPacket<>(canvasName, canvasData, timestamp));
+            }
+
+            // If any canvas of the batch is only a preview, batch is not counted as full answer
+            boolean previewOnly = false;
+
+            for (int i = 0; i < syncPackets.size(); i++) {
+                previewOnly |= answeredRequests.get(i).preview() && syncPackets.get(i).canvasData.isStreamed();
+            }
+
+            final CanvasDispatcher.Kind batchKind = previewOnly ? CanvasDispatcher.Kind.PREVIEW : CanvasDispatcher.Kind.SYNC;
+
+            Set<String> sentCanvasCodes = new HashSet<>();
+
+            for (SCanvasSyncBatchPacket batchMessage : SCanvasSyncBatchPacket.createBatches(syncPackets, timestamp)) {
+                if (getDispatcher(sendingPlayer).send(sendingPlayer, batchMessage.getCanvasCodes(), SharedPacket.encode(batchMessage), null, batchKind)) {
+                    sentCanvasCodes.addAll(batchMessage.getCanvasCodes());
+                }
+            }
+
+            for (int i = 0; i < syncPackets.size(); i++) {
+                final String canvasName = syncPackets.get(i).canvasCode;
+                final AbstractCanvasData canvasData = syncPackets.get(i).canvasData;
+
+                // Player's queue is full, canvas will be requested again
+                if (!sentCanvasCodes.contains(canvasName)) {
+                    continue;
+                }
+
+                // Preview is enough for now, full pixels will be requested when needed
+                if (!answeredRequests.get(i).preview() || !canvasData.isStreamed()) {
+                    sendCanvasRegions(sendingPlayer, canvasName, canvasData, timestamp);
+                    markCanvasSynced(sendingPlayer, canvasName, canvasData, timestamp);
+                }
+            }
         } catch (Exception e) {
             Zetter.LOG.error(e.getMessage());
             throw e;
@@ -106,9 +268,12 @@ public class ServerHandler {
                 return;
             }
 
-            SCanvasSyncViewPacket canvasSyncViewMessage = new SCanvasSyncViewPacket(canvasName, canvasData, System.currentTimeMillis(), packetIn.getHand());
+            final long timestamp = System.currentTimeMillis();
+            SCanvasSyncViewPacket canvasSyncViewMessage = new SCanvasSyncViewPacket(canvasName, canvasData, timestamp, packetIn.getHand());
 
-            ZetterNetwork.simpleChannel.send(PacketDistributor.PLAYER.with(() -> sendingPlayer), canvasSyncViewMessage);
+            getDispatcher(sendingPlayer).send(sendingPlayer, canvasName, canvasSyncViewMessage, CanvasDispatcher.Priority.VIEWING, CanvasDispatcher.Kind.OTHER);
+            sendCanvasRegions(sendingPlayer, canvasName, canvasData, timestamp);
+            markCanvasSynced(sendingPlayer, canvasName, canvasData, timestamp);
         } catch (Exception e) {
             Zetter.LOG.error(e.getMessage());
             throw e;
@@ -162,8 +327,10 @@ public class ServerHandler {
                 return;
             }
 
-            SCanvasSyncExportPacket canvasSyncExportMessage = new SCanvasSyncExportPacket(canvasCode, paintingData, System.currentTimeMillis());
-            ZetterNetwork.simpleChannel.send(PacketDistributor.PLAYER.with(() -> sendingPlayer), canvasSyncExportMessage);
+            final long timestamp = System.currentTimeMillis();
+            SCanvasSyncExportPacket canvasSyncExportMessage = new SCanvasSyncExportPacket(canvasCode, paintingData, timestamp);
+            canvasTracker.getDispatcher().send(sendingPlayer, canvasCode, canvasSyncExportMessage, CanvasDispatcher.Priority.VIEWING, CanvasDispatcher.Kind.OTHER);
+            sendCanvasRegions(sendingPlayer, canvasCode, paintingData, timestamp);
         } catch (Exception e) {
             Zetter.LOG.error(e.getMessage());
 
@@ -0,0 +1,105 @@
+package me.dantaeusb.zetter.network;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import me.dantaeusb.zetter.core.ZetterNetwork;
+import me.dantaeusb.zetter.network.packet.SCanvasChunkPacket;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.network.protocol.game.ClientboundCustomPayloadPacket;
+import net.minecraft.server.level.ServerPlayer;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Message encoded once and sent to many players, used
+ * when every player tracking the canvas gets the same sync,
+ * so canvas pixels are not encoded again for every player.
+ *
+ * Every send gets its own view of the same bytes,
+ * so connections never move each other's read index.
+ */
+public class SharedPacket {
+    private static int nextTransferId = 0;
+
+    private final ByteBuf data;
+    private int recipients = 0;
+
+    private @Nullable List<SharedPacket> chunks;
+
+    private SharedPacket(ByteBuf data) {
+        this.data = data;
+    }
+
+    /**
+     * @param message registered message of {@link ZetterNetwork#simpleChannel}
+     * @return
+     */
+    public static SharedPacket encode(Object message) {
+        FriendlyByteBuf buffer = new FriendlyByteBuf(Unpooled.buffer());
+        ZetterNetwork.simpleChannel.encodeMessage(message, buffer);
+
+        return new SharedPacket(buffer);
+    }
+
+    void send(ServerPlayer player) {
+        player.connection.send(new ClientboundCustomPayloadPacket(
+            ZetterNetwork.simpleChannelRL,
+            new FriendlyByteBuf(this.data.duplicate())
+        ));
+    }
+
+    /**
+     * Packet itself if it's not larger than chunk size, otherwise
+     * chunks to be assembled on client, they're created once
+     * and shared as well
+     *
+     * @return
+     */
+    List<SharedPacket> getChunks() {
+        if (this.chunks != null) {
+            return this.chunks;
+        }
+
+        final int size = this.getSize();
+
+        if (size <= CanvasDispatcher.CHUNK_SIZE) {
+            this.chunks = List.of(this);
+            return this.chunks;
+        }
+
+        final int transferId = nextTransferId++;
+        final int count = (size + CanvasDispatcher.CHUNK_SIZE - 1) / CanvasDispatcher.CHUNK_SIZE;
+
+        this.chunks = new ArrayList<>(count);
+
+        for (int index = 0; index < count; index++) {
+            final int offset = index * CanvasDispatcher.CHUNK_SIZE;
+            byte[] chunkData = new byte[Math.min(CanvasDispatcher.CHUNK_SIZE, size - offset)];
+            this.data.getBytes(this.data.readerIndex() + offset, chunkData);
+
+            this.chunks.add(encode(new SCanvasChunkPacket(transferId, index, count, chunkData)));
+        }
+
+        return this.chunks;
+    }
+
+    void addRecipient() {
+        this.recipients++;
+    }
+
+    /**
+     * @return encoded size in bytes
+     */
+    public int getSize() {
+        return this.data.readableBytes();
+    }
+
+    /**
+     * @return how many players this packet is queued for
+     */
+    public int getRecipients() {
+        return this.recipients;
+    }
+}
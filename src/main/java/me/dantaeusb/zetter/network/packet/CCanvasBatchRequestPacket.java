@@ -0,0 +1,104 @@
+package me.dantaeusb.zetter.network.packet;
+
+import me.dantaeusb.zetter.Zetter;
+import me.dantaeusb.zetter.core.Helper;
+import me.dantaeusb.zetter.network.ServerHandler;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraftforge.network.NetworkEvent;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Many canvases requested at once, i.e. when player
+ * enters a room full of paintings. Server answers
+ * with {@link SCanvasSyncBatchPacket}s
+ */
+public class CCanvasBatchRequestPacket {
+    public static final int MAX_REQUESTS = 64;
+
+    public final List<Request> requests;
+
+    public CCanvasBatchRequestPacket(List<Request> requests) {
+        if (requests.size() > MAX_REQUESTS) {
+            throw new IllegalArgumentException("Too many canvases in one request");
+        }
+
+        this.requests = requests;
+    }
+
+    /**
+     * Reads the raw packet data from the data stream.
+     */
+    public static CCanvasBatchRequestPacket readPacketData(FriendlyByteBuf buf) {
+        try {
+            final int size = buf.readVarInt();
+
+            if (size < 0 || size > MAX_REQUESTS) {
+                throw new IllegalArgumentException("Too many canvases in one request");
+            }
+
+            List<Request> requests = new ArrayList<>(size);
+
+            for (int i = 0; i < size; i++) {
+                String canvasName = buf.readUtf(Helper.CANVAS_CODE_MAX_LENGTH);
+                boolean preview = buf.readBoolean();
+                String cachedHash = buf.readBoolean() ? buf.readUtf(64) : null;
+
+                requests.add(new Request(canvasName, preview, cachedHash));
+            }
+
+            return new CCanvasBatchRequestPacket(requests);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            Zetter.LOG.warn("Exception while reading CCanvasBatchRequestPacket: " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the raw packet data to the data stream.
+     */
+    public void writePacketData(FriendlyByteBuf buf) {
+        buf.writeVarInt(this.requests.size());
+
+        for (Request request : this.requests) {
+            buf.writeUtf(request.canvasName(), Helper.CANVAS_CODE_MAX_LENGTH);
+            buf.writeBoolean(request.preview());
+            buf.writeBoolean(request.cachedHash() != null);
+
+            if (request.cachedHash() != null) {
+                buf.writeUtf(request.cachedHash(), 64);
+            }
+        }
+    }
+
+    public static void handle(final CCanvasBatchRequestPacket packetIn, Supplier<NetworkEvent.Context> ctxSupplier) {
+        NetworkEvent.Context ctx = ctxSupplier.get();
+        ctx.setPacketHandled(true);
+
+        final ServerPlayer sendingPlayer = ctx.getSender();
+        if (sendingPlayer == null) {
+            Zetter.LOG.warn("EntityPlayerMP was null when CCanvasBatchRequestPacket was received");
+            return;
+        }
+
+        ctx.enqueueWork(() -> ServerHandler.processCanvasBatchRequest(packetIn, sendingPlayer));
+    }
+
+    /**
+     * Same as {@link CCanvasRequestPacket}
+     *
+     * @param canvasName
+     * @param preview
+     * @param cachedHash
+     */
+    public record Request(String canvasName, boolean preview, @Nullable String cachedHash) {}
+
+    @Override
+    public String toString() {
+        return "CCanvasBatchRequestPacket[canvases=" + this.requests.size() + "]";
+    }
+}
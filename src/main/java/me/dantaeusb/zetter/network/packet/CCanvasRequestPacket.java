@@ -7,13 +7,33 @@ import net.minecraft.network.FriendlyByteBuf;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraftforge.network.NetworkEvent;
 
+import javax.annotation.Nullable;
 import java.util.function.Supplier;
 
 public class CCanvasRequestPacket {
     public final String canvasName;
 
-    public CCanvasRequestPacket(String canvasName) {
+    /**
+     * Only downsampled preview of large canvas is needed,
+     * full pixels will be requested later
+     */
+    public final boolean preview;
+
+    /**
+     * Hash of the painting client has in cache, if server's
+     * painting has the same hash, it answers with
+     * {@link SCanvasNotModifiedPacket} instead of pixels
+     */
+    public final @Nullable String cachedHash;
+
+    public CCanvasRequestPacket(String canvasName, boolean preview) {
+        this(canvasName, preview, null);
+    }
+
+    public CCanvasRequestPacket(String canvasName, boolean preview, @Nullable String cachedHash) {
         this.canvasName = canvasName;
+        this.preview = preview;
+        this.cachedHash = cachedHash;
     }
 
     /**
@@ -22,8 +42,10 @@ public class CCanvasRequestPacket {
      */
     public static CCanvasRequestPacket readPacketData(FriendlyByteBuf buf) {
         String canvasName = buf.readUtf(Helper.CANVAS_CODE_MAX_LENGTH);
+        boolean preview = buf.readBoolean();
+        String cachedHash = buf.readBoolean() ? buf.readUtf(64) : null;
 
-        return new CCanvasRequestPacket(canvasName);
+        return new CCanvasRequestPacket(canvasName, preview, cachedHash);
     }
 
     /**
@@ -31,6 +53,12 @@ public class CCanvasRequestPacket {
      */
     public void writePacketData(FriendlyByteBuf buf) {
         buf.writeUtf(this.canvasName, Helper.CANVAS_CODE_MAX_LENGTH);
+        buf.writeBoolean(this.preview);
+        buf.writeBoolean(this.cachedHash != null);
+
+        if (this.cachedHash != null) {
+            buf.writeUtf(this.cachedHash, 64);
+        }
     }
 
     public static void handle(final CCanvasRequestPacket packetIn, Supplier<NetworkEvent.Context> ctxSupplier) {
@@ -0,0 +1,77 @@
+package me.dantaeusb.zetter.network.packet;
+
+import me.dantaeusb.zetter.Zetter;
+import me.dantaeusb.zetter.network.CanvasDispatcher;
+import me.dantaeusb.zetter.network.ClientHandler;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.world.level.Level;
+import net.minecraftforge.common.util.LogicalSidedProvider;
+import net.minecraftforge.fml.LogicalSide;
+import net.minecraftforge.network.NetworkEvent;
+
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Part of encoded canvas packet which is larger than
+ * {@link CanvasDispatcher#CHUNK_SIZE}, so it could be
+ * sent within player's bandwidth budget over a few ticks.
+ * Client assembles chunks of the same transfer and
+ * handles assembled packet as if it was received at once
+ */
+public record SCanvasChunkPacket(int transferId, int index, int count, byte[] data) {
+    /**
+     * 16 MB with default chunk size
+     */
+    public static final int MAX_CHUNKS = 1024;
+
+    /**
+     * Reads the raw packet data from the data stream.
+     */
+    public static SCanvasChunkPacket readPacketData(FriendlyByteBuf networkBuffer) {
+        try {
+            int transferId = networkBuffer.readVarInt();
+            int index = networkBuffer.readVarInt();
+            int count = networkBuffer.readVarInt();
+            byte[] data = networkBuffer.readByteArray(CanvasDispatcher.CHUNK_SIZE);
+
+            if (count <= 0 || count > MAX_CHUNKS || index < 0 || index >= count) {
+                throw new IllegalArgumentException("Invalid chunk " + index + " of " + count);
+            }
+
+            return new SCanvasChunkPacket(transferId, index, count, data);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            Zetter.LOG.warn("Exception while reading SCanvasChunkPacket: " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the raw packet data to the data stream.
+     */
+    public void writePacketData(FriendlyByteBuf networkBuffer) {
+        networkBuffer.writeVarInt(this.transferId);
+        networkBuffer.writeVarInt(this.index);
+        networkBuffer.writeVarInt(this.count);
+        networkBuffer.writeByteArray(this.data);
+    }
+
+    public static void handle(final SCanvasChunkPacket packetIn, Supplier<NetworkEvent.Context> ctxSupplier) {
+        NetworkEvent.Context ctx = ctxSupplier.get();
+        LogicalSide sideReceived = ctx.getDirection().getReceptionSide();
+        ctx.setPacketHandled(true);
+
+        Optional<Level> clientWorld = LogicalSidedProvider.CLIENTWORLD.get(sideReceived);
+        if (clientWorld.isEmpty()) {
+            Zetter.LOG.error("SCanvasChunkPacket context could not provide a ClientWorld.");
+            return;
+        }
+
+        ctx.enqueueWork(() -> ClientHandler.processCanvasChunk(packetIn));
+    }
+
+    @Override
+    public String toString() {
+        return "SCanvasChunkPacket[transfer=" + this.transferId + ",chunk=" + this.index + "/" + this.count + "]";
+    }
+}
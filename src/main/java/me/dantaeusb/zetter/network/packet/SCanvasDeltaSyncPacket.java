@@ -0,0 +1,142 @@
+package me.dantaeusb.zetter.network.packet;
+
+import me.dantaeusb.zetter.Zetter;
+import me.dantaeusb.zetter.network.ClientHandler;
+import me.dantaeusb.zetter.storage.AbstractCanvasData;
+import me.dantaeusb.zetter.storage.util.CanvasColorCodec;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.world.level.Level;
+import net.minecraftforge.common.util.LogicalSidedProvider;
+import net.minecraftforge.fml.LogicalSide;
+import net.minecraftforge.network.NetworkEvent;
+
+import javax.annotation.Nullable;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Pixels of the regions changed since the last sync that
+ * player has received, instead of the whole canvas.
+ *
+ * Delta applies only to the canvas synced at base timestamp,
+ * if client has different one, it requests full sync.
+ *
+ * Pixels of all regions are encoded together, so they
+ * share the palette.
+ */
+public record SCanvasDeltaSyncPacket(String canvasCode, long baseTimestamp, long timestamp, int[] regions, byte[] color) {
+    /**
+     * If changed regions cover more than that
+     * part of the canvas, full sync is sent
+     */
+    public static final float MAX_DELTA_FRACTION = 0.5F;
+
+    /**
+     * @param canvasCode
+     * @param canvasData
+     * @param sinceVersion tile version of the last sync
+     * @param timestamp of this sync
+     * @return null if full sync should be sent instead
+     */
+    public static @Nullable SCanvasDeltaSyncPacket createDelta(String canvasCode, AbstractCanvasData canvasData, int sinceVersion, long timestamp) {
+        final int[] regions = canvasData.getTiles().getRegionsChangedSince(sinceVersion);
+        int pixelCount = 0;
+
+        for (int i = 0; i < regions.length; i += 4) {
+            pixelCount += regions[i + 2] * regions[i + 3];
+        }
+
+        if (pixelCount == 0 || pixelCount > canvasData.getWidth() * canvasData.getHeight() * MAX_DELTA_FRACTION) {
+            return null;
+        }
+
+        int[] color = new int[pixelCount];
+        int offset = 0;
+
+        for (int i = 0; i < regions.length; i += 4) {
+            final int[] region = canvasData.getColorRegion(regions[i], regions[i + 1], regions[i + 2], regions[i + 3]);
+
+            System.arraycopy(region, 0, color, offset, region.length);
+            offset += region.length;
+        }
+
+        return new SCanvasDeltaSyncPacket(canvasCode, 0L, timestamp, regions, CanvasColorCodec.encode(color, true));
+    }
+
+    /**
+     * Same delta for a player who received
+     * the last sync at different time
+     *
+     * @param baseTimestamp
+     * @return
+     */
+    public SCanvasDeltaSyncPacket withBaseTimestamp(long baseTimestamp) {
+        return new SCanvasDeltaSyncPacket(this.canvasCode, baseTimestamp, this.timestamp, this.regions, this.color);
+    }
+
+    public int getPixelCount() {
+        int pixelCount = 0;
+
+        for (int i = 0; i < this.regions.length; i += 4) {
+            pixelCount += this.regions[i + 2] * this.regions[i + 3];
+        }
+
+        return pixelCount;
+    }
+
+    public int[] decodeColor() {
+        return CanvasColorCodec.decode(this.color, this.getPixelCount());
+    }
+
+    /**
+     * Reads the raw packet data from the data stream.
+     */
+    public static SCanvasDeltaSyncPacket readPacketData(FriendlyByteBuf networkBuffer) {
+        try {
+            String canvasCode = networkBuffer.readUtf(128);
+            long baseTimestamp = networkBuffer.readLong();
+            long timestamp = networkBuffer.readLong();
+            int[] regions = networkBuffer.readVarIntArray();
+            byte[] color = networkBuffer.readByteArray();
+
+            if (regions.length % 4 != 0) {
+                throw new IllegalArgumentException("Broken region list");
+            }
+
+            return new SCanvasDeltaSyncPacket(canvasCode, baseTimestamp, timestamp, regions, color);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            Zetter.LOG.warn("Exception while reading SCanvasDeltaSyncPacket: " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the raw packet data to the data stream.
+     */
+    public void writePacketData(FriendlyByteBuf networkBuffer) {
+        networkBuffer.writeUtf(this.canvasCode, 128);
+        networkBuffer.writeLong(this.baseTimestamp);
+        networkBuffer.writeLong(this.timestamp);
+        networkBuffer.writeVarIntArray(this.regions);
+        networkBuffer.writeByteArray(this.color);
+    }
+
+    public static void handle(final SCanvasDeltaSyncPacket packetIn, Supplier<NetworkEvent.Context> ctxSupplier) {
+        NetworkEvent.Context ctx = ctxSupplier.get();
+        LogicalSide sideReceived = ctx.getDirection().getReceptionSide();
+        ctx.setPacketHandled(true);
+
+        Optional<Level> clientWorld = LogicalSidedProvider.CLIENTWORLD.get(sideReceived);
+        if (clientWorld.isEmpty()) {
+            Zetter.LOG.error("SCanvasDeltaSyncPacket context could not provide a ClientWorld.");
+            return;
+        }
+
+        ctx.enqueueWork(() -> ClientHandler.processCanvasDeltaSync(packetIn, clientWorld.get()));
+    }
+
+    @Override
+    public String toString() {
+        return "SCanvasDeltaSyncPacket[canvas=" + this.canvasCode + ",timestamp=" + this.timestamp + ",regions=" + this.regions.length / 4 + "]";
+    }
+}
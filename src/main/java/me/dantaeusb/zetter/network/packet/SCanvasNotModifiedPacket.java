@@ -0,0 +1,63 @@
+package me.dantaeusb.zetter.network.packet;
+
+import me.dantaeusb.zetter.Zetter;
+import me.dantaeusb.zetter.network.ClientHandler;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.world.level.Level;
+import net.minecraftforge.common.util.LogicalSidedProvider;
+import net.minecraftforge.fml.LogicalSide;
+import net.minecraftforge.network.NetworkEvent;
+
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Answer to the request with a cached painting hash,
+ * when client's copy has the same pixels: client
+ * loads painting from its cache instead
+ */
+public record SCanvasNotModifiedPacket(String canvasCode, String contentHash, long timestamp) {
+    /**
+     * Reads the raw packet data from the data stream.
+     */
+    public static SCanvasNotModifiedPacket readPacketData(FriendlyByteBuf networkBuffer) {
+        try {
+            String canvasCode = networkBuffer.readUtf(128);
+            String contentHash = networkBuffer.readUtf(64);
+            long timestamp = networkBuffer.readLong();
+
+            return new SCanvasNotModifiedPacket(canvasCode, contentHash, timestamp);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            Zetter.LOG.warn("Exception while reading SCanvasNotModifiedPacket: " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the raw packet data to the data stream.
+     */
+    public void writePacketData(FriendlyByteBuf networkBuffer) {
+        networkBuffer.writeUtf(this.canvasCode, 128);
+        networkBuffer.writeUtf(this.contentHash, 64);
+        networkBuffer.writeLong(this.timestamp);
+    }
+
+    public static void handle(final SCanvasNotModifiedPacket packetIn, Supplier<NetworkEvent.Context> ctxSupplier) {
+        NetworkEvent.Context ctx = ctxSupplier.get();
+        LogicalSide sideReceived = ctx.getDirection().getReceptionSide();
+        ctx.setPacketHandled(true);
+
+        Optional<Level> clientWorld = LogicalSidedProvider.CLIENTWORLD.get(sideReceived);
+        if (clientWorld.isEmpty()) {
+            Zetter.LOG.error("SCanvasNotModifiedPacket context could not provide a ClientWorld.");
+            return;
+        }
+
+        ctx.enqueueWork(() -> ClientHandler.processCanvasNotModified(packetIn, clientWorld.get()));
+    }
+
+    @Override
+    public String toString() {
+        return "SCanvasNotModifiedPacket[canvas=" + this.canvasCode + ",timestamp=" + this.timestamp + "]";
+    }
+}
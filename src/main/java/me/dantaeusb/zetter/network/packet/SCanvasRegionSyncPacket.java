@@ -0,0 +1,113 @@
+package me.dantaeusb.zetter.network.packet;
+
+import me.dantaeusb.zetter.Zetter;
+import me.dantaeusb.zetter.network.ClientHandler;
+import me.dantaeusb.zetter.storage.AbstractCanvasData;
+import me.dantaeusb.zetter.storage.util.CanvasColorCodec;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.world.level.Level;
+import net.minecraftforge.common.util.LogicalSidedProvider;
+import net.minecraftforge.fml.LogicalSide;
+import net.minecraftforge.network.NetworkEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Part of the pixels of large canvas, which is sent after
+ * sync packet with a placeholder, see {@link AbstractCanvasData#isStreamed()}.
+ *
+ * Canvas is split into bands of full rows, every band
+ * is compressed separately, so client could show
+ * canvas as soon as first bands arrive, and the
+ * last band is the one which ends at canvas bottom.
+ *
+ * Timestamp is the same as in the sync packet, bands
+ * of outdated sync are ignored.
+ */
+public record SCanvasRegionSyncPacket(String canvasCode, long timestamp, int x, int y, int width, int height, byte[] color) {
+    public static final int MAX_REGION_PIXELS = 64 * 1024;
+
+    /**
+     * Split canvas into bands to be sent
+     * after the sync packet
+     *
+     * @param canvasCode
+     * @param canvasData
+     * @param timestamp same as in the sync packet
+     * @return
+     */
+    public static List<SCanvasRegionSyncPacket> createBands(String canvasCode, AbstractCanvasData canvasData, long timestamp) {
+        final int width = canvasData.getWidth();
+        final int bandHeight = Math.max(1, MAX_REGION_PIXELS / width);
+
+        List<SCanvasRegionSyncPacket> bands = new ArrayList<>();
+
+        for (int y = 0; y < canvasData.getHeight(); y += bandHeight) {
+            final int height = Math.min(bandHeight, canvasData.getHeight() - y);
+            final int[] region = canvasData.getColorRegion(0, y, width, height);
+
+            bands.add(new SCanvasRegionSyncPacket(canvasCode, timestamp, 0, y, width, height, CanvasColorCodec.encodeCompressed(region, width)));
+        }
+
+        return bands;
+    }
+
+    public int[] decodeColor() {
+        return CanvasColorCodec.decode(this.color, this.width * this.height);
+    }
+
+    /**
+     * Reads the raw packet data from the data stream.
+     */
+    public static SCanvasRegionSyncPacket readPacketData(FriendlyByteBuf networkBuffer) {
+        try {
+            String canvasCode = networkBuffer.readUtf(128);
+            long timestamp = networkBuffer.readLong();
+            int x = networkBuffer.readVarInt();
+            int y = networkBuffer.readVarInt();
+            int width = networkBuffer.readVarInt();
+            int height = networkBuffer.readVarInt();
+            byte[] color = networkBuffer.readByteArray();
+
+            return new SCanvasRegionSyncPacket(canvasCode, timestamp, x, y, width, height, color);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            Zetter.LOG.warn("Exception while reading SCanvasRegionSyncPacket: " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the raw packet data to the data stream.
+     */
+    public void writePacketData(FriendlyByteBuf networkBuffer) {
+        networkBuffer.writeUtf(this.canvasCode, 128);
+        networkBuffer.writeLong(this.timestamp);
+        networkBuffer.writeVarInt(this.x);
+        networkBuffer.writeVarInt(this.y);
+        networkBuffer.writeVarInt(this.width);
+        networkBuffer.writeVarInt(this.height);
+        networkBuffer.writeByteArray(this.color);
+    }
+
+    public static void handle(final SCanvasRegionSyncPacket packetIn, Supplier<NetworkEvent.Context> ctxSupplier) {
+        NetworkEvent.Context ctx = ctxSupplier.get();
+        LogicalSide sideReceived = ctx.getDirection().getReceptionSide();
+        ctx.setPacketHandled(true);
+
+        Optional<Level> clientWorld = LogicalSidedProvider.CLIENTWORLD.get(sideReceived);
+        if (clientWorld.isEmpty()) {
+            Zetter.LOG.error("SCanvasRegionSyncPacket context could not provide a ClientWorld.");
+            return;
+        }
+
+        ctx.enqueueWork(() -> ClientHandler.processCanvasRegionSync(packetIn, clientWorld.get()));
+    }
+
+    @Override
+    public String toString() {
+        return "SCanvasRegionSyncPacket[canvas=" + this.canvasCode + ",timestamp=" + this.timestamp + ",y=" + this.y + ",height=" + this.height + "]";
+    }
+}
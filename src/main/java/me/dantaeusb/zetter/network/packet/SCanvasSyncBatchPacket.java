@@ -0,0 +1,188 @@
+package me.dantaeusb.zetter.network.packet;
+
+import io.netty.buffer.Unpooled;
+import me.dantaeusb.zetter.Zetter;
+import me.dantaeusb.zetter.network.ClientHandler;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.world.level.Level;
+import net.minecraftforge.common.util.LogicalSidedProvider;
+import net.minecraftforge.fml.LogicalSide;
+import net.minecraftforge.network.NetworkEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Many canvases in one packet, answer to
+ * {@link CCanvasBatchRequestPacket}.
+ *
+ * Canvases share timestamp, and type names are written
+ * once per packet, canvases refer to them by index.
+ * Canvases are encoded when added, so packet is never
+ * larger than {@link #MAX_BATCH_SIZE}, except if it
+ * has only one canvas which is larger than that.
+ */
+public class SCanvasSyncBatchPacket {
+    public static final int MAX_BATCH_SIZE = 512 * 1024;
+
+    public final long timestamp;
+
+    /**
+     * Decoded canvases, only on receiving side
+     */
+    public final List<SCanvasSyncPacket<?>> canvases;
+
+    private final List<String> canvasCodes;
+    private final List<String> types;
+    private final List<byte[]> encodedCanvases;
+
+    private SCanvasSyncBatchPacket(long timestamp, List<SCanvasSyncPacket<?>> canvases, List<String> canvasCodes, List<String> types, List<byte[]> encodedCanvases) {
+        this.timestamp = timestamp;
+        this.canvases = canvases;
+        this.canvasCodes = canvasCodes;
+        this.types = types;
+        this.encodedCanvases = encodedCanvases;
+    }
+
+    /**
+     * Split sync packets into batches
+     *
+     * @param syncPackets should have the same timestamp
+     * @param timestamp
+     * @return
+     */
+    public static List<SCanvasSyncBatchPacket> createBatches(List<SCanvasSyncPacket<?>> syncPackets, long timestamp) {
+        List<SCanvasSyncBatchPacket> batches = new ArrayList<>();
+
+        List<String> canvasCodes = new ArrayList<>();
+        List<String> types = new ArrayList<>();
+        List<byte[]> encodedCanvases = new ArrayList<>();
+        int batchSize = 0;
+
+        for (SCanvasSyncPacket<?> syncPacket : syncPackets) {
+            final String type = syncPacket.canvasData.getType().resourceLocation.toString();
+
+            FriendlyByteBuf buffer = new FriendlyByteBuf(Unpooled.buffer());
+            buffer.writeUtf(syncPacket.canvasCode, 128);
+            syncPacket.writeCanvasData(buffer);
+
+            byte[] encodedCanvas = new byte[buffer.readableBytes()];
+            buffer.readBytes(encodedCanvas);
+
+            if (!encodedCanvases.isEmpty() && batchSize + encodedCanvas.length > MAX_BATCH_SIZE) {
+                batches.add(new SCanvasSyncBatchPacket(timestamp, List.of(), canvasCodes, types, encodedCanvases));
+
+                canvasCodes = new ArrayList<>();
+                types = new ArrayList<>();
+                encodedCanvases = new ArrayList<>();
+                batchSize = 0;
+            }
+
+            int typeIndex = types.indexOf(type);
+
+            if (typeIndex < 0) {
+                typeIndex = types.size();
+                types.add(type);
+            }
+
+            // Type index is the first byte
+            byte[] indexedCanvas = new byte[encodedCanvas.length + 1];
+            indexedCanvas[0] = (byte) typeIndex;
+            System.arraycopy(encodedCanvas, 0, indexedCanvas, 1, encodedCanvas.length);
+
+            canvasCodes.add(syncPacket.canvasCode);
+            encodedCanvases.add(indexedCanvas);
+            batchSize += indexedCanvas.length;
+        }
+
+        if (!encodedCanvases.isEmpty()) {
+            batches.add(new SCanvasSyncBatchPacket(timestamp, List.of(), canvasCodes, types, encodedCanvases));
+        }
+
+        return batches;
+    }
+
+    public List<String> getCanvasCodes() {
+        return this.canvasCodes;
+    }
+
+    public int size() {
+        return this.canvasCodes.size();
+    }
+
+    /**
+     * Reads the raw packet data from the data stream.
+     */
+    public static SCanvasSyncBatchPacket readPacketData(FriendlyByteBuf networkBuffer) {
+        try {
+            final long timestamp = networkBuffer.readLong();
+            final int typeCount = networkBuffer.readByte();
+            List<String> types = new ArrayList<>(typeCount);
+
+            for (int i = 0; i < typeCount; i++) {
+                types.add(networkBuffer.readUtf(128));
+            }
+
+            final int size = networkBuffer.readVarInt();
+
+            if (size < 0 || size > CCanvasBatchRequestPacket.MAX_REQUESTS) {
+                throw new IllegalArgumentException("Too many canvases in one packet");
+            }
+
+            List<SCanvasSyncPacket<?>> canvases = new ArrayList<>(size);
+            List<String> canvasCodes = new ArrayList<>(size);
+
+            for (int i = 0; i < size; i++) {
+                final String type = types.get(networkBuffer.readByte());
+                final String canvasCode = networkBuffer.readUtf(128);
+
+                canvases.add(new SCanvasSyncPacket<>(canvasCode, SCanvasSyncPacket.readCanvasData(type, networkBuffer), timestamp));
+                canvasCodes.add(canvasCode);
+            }
+
+            return new SCanvasSyncBatchPacket(timestamp, canvases, canvasCodes, types, List.of());
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            Zetter.LOG.warn("Exception while reading SCanvasSyncBatchPacket: " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the raw packet data to the data stream.
+     */
+    public void writePacketData(FriendlyByteBuf networkBuffer) {
+        networkBuffer.writeLong(this.timestamp);
+        networkBuffer.writeByte(this.types.size());
+
+        for (String type : this.types) {
+            networkBuffer.writeUtf(type, 128);
+        }
+
+        networkBuffer.writeVarInt(this.encodedCanvases.size());
+
+        for (byte[] encodedCanvas : this.encodedCanvases) {
+            networkBuffer.writeBytes(encodedCanvas);
+        }
+    }
+
+    public static void handle(final SCanvasSyncBatchPacket packetIn, Supplier<NetworkEvent.Context> ctxSupplier) {
+        NetworkEvent.Context ctx = ctxSupplier.get();
+        LogicalSide sideReceived = ctx.getDirection().getReceptionSide();
+        ctx.setPacketHandled(true);
+
+        Optional<Level> clientWorld = LogicalSidedProvider.CLIENTWORLD.get(sideReceived);
+        if (clientWorld.isEmpty()) {
+            Zetter.LOG.error("SCanvasSyncBatchPacket context could not provide a ClientWorld.");
+            return;
+        }
+
+        ctx.enqueueWork(() -> ClientHandler.processCanvasSyncBatch(packetIn, clientWorld.get()));
+    }
+
+    @Override
+    public String toString() {
+        return "SCanvasSyncBatchPacket[canvases=" + this.size() + ",timestamp=" + this.timestamp + "]";
+    }
+}
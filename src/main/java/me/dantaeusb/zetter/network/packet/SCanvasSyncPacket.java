@@ -35,13 +35,7 @@ public class SCanvasSyncPacket<T extends AbstractCanvasData> {
             final String canvasCode = networkBuffer.readUtf(128);
             final long timestamp = networkBuffer.readLong();
 
-            CanvasDataType<?> canvasDataType = ZetterRegistries.CANVAS_TYPE.get().getValue(new ResourceLocation(type));
-
-            if (canvasDataType == null) {
-                throw new IllegalArgumentException("Unable to find canvas type " + type);
-            }
-
-            AbstractCanvasData canvasData = canvasDataType.readPacketData(networkBuffer);
+            AbstractCanvasData canvasData = readCanvasData(type, networkBuffer);
 
             return new SCanvasSyncPacket<>(canvasCode, canvasData, timestamp);
         } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
@@ -58,12 +52,32 @@ public class SCanvasSyncPacket<T extends AbstractCanvasData> {
         networkBuffer.writeUtf(this.canvasCode, 128);
         networkBuffer.writeLong(this.timestamp);
 
+        this.writeCanvasData(networkBuffer);
+    }
+
+    /**
+     * Canvas data without type, code and timestamp,
+     * shared with {@link SCanvasSyncBatchPacket}
+     *
+     * @param networkBuffer
+     */
+    void writeCanvasData(FriendlyByteBuf networkBuffer) {
         CanvasDataType<T> canvasDataType = (CanvasDataType<T>) ZetterRegistries.CANVAS_TYPE.get().getValue(this.canvasData.getType().resourceLocation);
 
         assert canvasDataType != null;
         canvasDataType.writePacketData(this.canvasData, networkBuffer);
     }
 
+    static AbstractCanvasData readCanvasData(String type, FriendlyByteBuf networkBuffer) {
+        CanvasDataType<?> canvasDataType = ZetterRegistries.CANVAS_TYPE.get().getValue(new ResourceLocation(type));
+
+        if (canvasDataType == null) {
+            throw new IllegalArgumentException("Unable to find canvas type " + type);
+        }
+
+        return canvasDataType.readPacketData(networkBuffer);
+    }
+
     public static void handle(final SCanvasSyncPacket<?> packetIn, Supplier<NetworkEvent.Context> ctxSupplier) {
         NetworkEvent.Context ctx = ctxSupplier.get();
         LogicalSide sideReceived = ctx.getDirection().getReceptionSide();
@@ -4,6 +4,8 @@ import me.dantaeusb.zetter.Zetter;
 import me.dantaeusb.zetter.entity.item.state.representation.CanvasAction;
 import me.dantaeusb.zetter.entity.item.state.representation.CanvasSnapshot;
 import me.dantaeusb.zetter.network.ClientHandler;
+import me.dantaeusb.zetter.storage.AbstractCanvasData;
+import me.dantaeusb.zetter.storage.util.CanvasColorCodec;
 import net.minecraft.network.FriendlyByteBuf;
 import net.minecraft.world.level.Level;
 import net.minecraftforge.common.util.LogicalSidedProvider;
@@ -64,8 +66,8 @@ public class SEaselStateSyncPacket {
 
             if (hasSnapshot) {
                 final int snapshotId = networkBuffer.readInt();
-                final int snapshotColorLength = networkBuffer.readInt();
-                final byte[] snapshotColor = networkBuffer.readByteArray(snapshotColorLength);
+                final int snapshotPixelCount = networkBuffer.readInt();
+                final int[] snapshotColor = CanvasColorCodec.decode(networkBuffer.readByteArray(), snapshotPixelCount);
                 final long snapshotTimestamp = networkBuffer.readLong();
 
                 snapshot = CanvasSnapshot.createNetworkSnapshot(snapshotId, snapshotColor, snapshotTimestamp);
@@ -109,7 +111,12 @@ public class SEaselStateSyncPacket {
         if (this.snapshot != null) {
             networkBuffer.writeInt(this.snapshot.id);
             networkBuffer.writeInt(this.snapshot.colors.length);
-            networkBuffer.writeByteArray(this.snapshot.colors);
+            // Snapshot of large canvas could exceed packet size, compress it; width is unknown, so it's one row
+            if (this.snapshot.colors.length > AbstractCanvasData.MAX_INLINE_PIXELS) {
+                networkBuffer.writeByteArray(CanvasColorCodec.encodeCompressed(this.snapshot.colors, this.snapshot.colors.length));
+            } else {
+                networkBuffer.writeByteArray(CanvasColorCodec.encode(this.snapshot.colors, true));
+            }
             networkBuffer.writeLong(this.snapshot.timestamp);
         }
 
@@ -17,4 +17,24 @@ public enum Tools {
     public AbstractTool getTool() {
         return this.tool;
     }
+
+    /**
+     * Network id of the tool is its position in
+     * this list, new tools should be added to the end
+     *
+     * @return
+     */
+    public int getId() {
+        return this.ordinal();
+    }
+
+    public static Tools byId(int id) {
+        final Tools[] tools = values();
+
+        if (id < 0 || id >= tools.length) {
+            throw new IllegalArgumentException("Unknown tool id " + id);
+        }
+
+        return tools[id];
+    }
 }
@@ -1,16 +1,16 @@
 package me.dantaeusb.zetter.painting.parameters;
 
 import me.dantaeusb.zetter.painting.Tools;
-import net.minecraft.core.NonNullList;
+import me.dantaeusb.zetter.painting.pipes.BlendingPipe;
+import me.dantaeusb.zetter.painting.pipes.DitheringPipe;
 import net.minecraft.network.FriendlyByteBuf;
-import net.minecraft.util.Tuple;
 import org.apache.commons.lang3.SerializationException;
 
-import java.io.*;
+import javax.annotation.Nullable;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 public abstract class AbstractToolParameters implements Cloneable {
     protected HashMap<String, Object> values = new HashMap<>();
@@ -37,37 +37,38 @@ public abstract class AbstractToolParameters implements Cloneable {
         return copy;
     }
 
-    public static void writePacketData(AbstractToolParameters toolParameters, FriendlyByteBuf buffer) {
-        buffer.writeCollection(toolParameters.values.entrySet(), AbstractToolParameters::writeEntry);
-    }
-
     /**
-     * Uses Java's ObjectOutputStream which apparently is extremely inefficient
-     * for primitives. It takes 79 bytes to send float and int.
-     * Though works good for enums/strings
+     * Parameters are written by schema: id of the parameter
+     * as a byte and value in the type of the parameter,
+     * without names and class descriptions
      *
+     * @param toolParameters
      * @param buffer
-     * @param entry
-     * @todo: fix that wasteful serializer
      */
-    private static void writeEntry(FriendlyByteBuf buffer, Map.Entry<String, Object> entry) {
-        try {
-            buffer.writeUtf(entry.getKey(), 128);
-            ByteArrayOutputStream streamOutput = new ByteArrayOutputStream();
+    public static void writePacketData(AbstractToolParameters toolParameters, FriendlyByteBuf buffer) {
+        buffer.writeByte(toolParameters.values.size());
 
-            ObjectOutputStream stream = new ObjectOutputStream(streamOutput);
-            stream.writeObject(entry.getValue());
-            streamOutput.close();
+        for (Map.Entry<String, Object> entry : toolParameters.values.entrySet()) {
+            final Parameter parameter = Parameter.byCode(entry.getKey());
 
-            final byte[] output = streamOutput.toByteArray();
+            if (parameter == null) {
+                throw new SerializationException("Parameter " + entry.getKey() + " has no network id");
+            }
 
-            buffer.writeInt(output.length);
-            buffer.writeBytes(streamOutput.toByteArray());
-        } catch (IOException e) {
-            throw new SerializationException("Unable to write value for parameter " + entry.getKey());
+            buffer.writeByte(parameter.ordinal());
+            parameter.write(buffer, entry.getValue());
         }
     }
 
+    /**
+     * Values are read over defaults of the tool, only
+     * parameters that tool has are accepted, and they're
+     * set with setters of the tool, which check bounds
+     *
+     * @param buffer
+     * @param tool
+     * @return
+     */
     public static AbstractToolParameters readPacketData(FriendlyByteBuf buffer, Tools tool) {
         // @todo: varies!
         AbstractToolParameters toolParameters;
@@ -85,42 +86,123 @@ public abstract class AbstractToolParameters implements Cloneable {
                 break;
         }
 
-        final List<Tuple<String, Object>> rawParameters = buffer.readCollection(
-            NonNullList::createWithCapacity,
-            AbstractToolParameters::readEntry
-        );
+        final int count = buffer.readUnsignedByte();
 
-        toolParameters.values = (HashMap<String, Object>) rawParameters.stream().collect(Collectors.toMap(
-            Tuple::getA,
-            Tuple::getB
-        ));
+        for (int i = 0; i < count; i++) {
+            final Parameter parameter = Parameter.byId(buffer.readUnsignedByte());
+
+            if (!toolParameters.values.containsKey(parameter.code)) {
+                throw new IllegalArgumentException("Tool " + tool + " has no parameter " + parameter.code);
+            }
+
+            parameter.apply(toolParameters, parameter.read(buffer));
+        }
 
         return toolParameters;
     }
 
     /**
-     * This is very dangerous as we perform class lookup I suppose
-     *
-     * @param buffer
-     * @return
+     * Network ids of parameters are their positions in this
+     * list, so new parameters should be added to the end
      */
-    private static Tuple<String, Object> readEntry(FriendlyByteBuf buffer) {
-        final String key = buffer.readUtf(128);
-        final int length = buffer.readInt();
-
-        final byte[] input = new byte[length];
-        buffer.readBytes(length).nioBuffer().get(input);
-
-        try {
-            ByteArrayInputStream byteStream = new ByteArrayInputStream(input);
-            ObjectInputStream objectStream = new ObjectInputStream(byteStream);
-            final Object value = objectStream.readObject();
-
-            return new Tuple<>(key, value);
-        } catch (IOException e) {
-            throw new SerializationException("Unable to read value for parameter " + key);
-        } catch (ClassNotFoundException e) {
-            throw new SerializationException("Incorrect or forbidden type for parameter " + key);
+    private enum Parameter {
+        SIZE(SizeParameterHolder.PARAMETER_CODE, ValueType.FLOAT, null),
+        INTENSITY(IntensityParameterHolder.PARAMETER_CODE, ValueType.FLOAT, null),
+        BLENDING(BlendingParameterHolder.PARAMETER_CODE, ValueType.ENUM, BlendingPipe.BlendingOption.class),
+        DITHERING(DitheringParameterHolder.PARAMETER_CODE, ValueType.ENUM, DitheringPipe.DitheringOption.class);
+
+        private static final Parameter[] VALUES = values();
+
+        private final String code;
+        private final ValueType type;
+
+        /**
+         * Enum parameters are kept as names in values map,
+         * and sent as ordinals
+         */
+        private final List<String> options;
+
+        Parameter(String code, ValueType type, @Nullable Class<? extends Enum<?>> enumClass) {
+            this.code = code;
+            this.type = type;
+            this.options = enumClass != null ? Arrays.stream(enumClass.getEnumConstants()).map(Enum::name).toList() : List.of();
+        }
+
+        private static @Nullable Parameter byCode(String code) {
+            for (Parameter parameter : VALUES) {
+                if (parameter.code.equals(code)) {
+                    return parameter;
+                }
+            }
+
+            return null;
         }
+
+        private static Parameter byId(int id) {
+            if (id >= VALUES.length) {
+                throw new IllegalArgumentException("Unknown parameter id " + id);
+            }
+
+            return VALUES[id];
+        }
+
+        private void write(FriendlyByteBuf buffer, Object value) {
+            switch (this.type) {
+                case FLOAT -> buffer.writeFloat((Float) value);
+                case ENUM -> {
+                    final int ordinal = this.options.indexOf((String) value);
+
+                    if (ordinal == -1) {
+                        throw new SerializationException("Unknown option " + value + " for parameter " + this.code);
+                    }
+
+                    buffer.writeVarInt(ordinal);
+                }
+            }
+        }
+
+        private Object read(FriendlyByteBuf buffer) {
+            switch (this.type) {
+                case FLOAT -> {
+                    final float value = buffer.readFloat();
+
+                    if (!Float.isFinite(value)) {
+                        throw new IllegalArgumentException("Incorrect value for parameter " + this.code);
+                    }
+
+                    return value;
+                }
+                default -> {
+                    final int ordinal = buffer.readVarInt();
+
+                    if (ordinal < 0 || ordinal >= this.options.size()) {
+                        throw new IllegalArgumentException("Unknown option " + ordinal + " for parameter " + this.code);
+                    }
+
+                    return this.options.get(ordinal);
+                }
+            }
+        }
+
+        /**
+         * Setters throw {@link java.security.InvalidParameterException}
+         * when value is out of bounds
+         *
+         * @param toolParameters
+         * @param value
+         */
+        private void apply(AbstractToolParameters toolParameters, Object value) {
+            switch (this) {
+                case SIZE -> ((SizeParameterHolder) toolParameters).setSize((Float) value);
+                case INTENSITY -> ((IntensityParameterHolder) toolParameters).setIntensity((Float) value);
+                case BLENDING -> ((BlendingParameterHolder) toolParameters).setBlending(BlendingPipe.BlendingOption.valueOf((String) value));
+                case DITHERING -> ((DitheringParameterHolder) toolParameters).setDithering(DitheringPipe.DitheringOption.valueOf((String) value));
+            }
+        }
+    }
+
+    private enum ValueType {
+        FLOAT,
+        ENUM
     }
 }
@@ -32,6 +32,7 @@ public class ExportServerCommand {
                 Commands.literal("server")
                     .then(
                         Commands.argument("painting", PaintingLookupArgument.painting())
+                            .suggests(PaintingLookupArgument::suggestPaintingTitles)
                             .executes(ctx -> execute(
                                 ctx.getSource(),
                                 ctx.getSource().getPlayer(),
@@ -3,6 +3,7 @@ package me.dantaeusb.zetter.server.command;
 import me.dantaeusb.zetter.capability.canvastracker.CanvasServerTracker;
 import me.dantaeusb.zetter.core.Helper;
 import me.dantaeusb.zetter.core.ZetterCanvasTypes;
+import me.dantaeusb.zetter.storage.AbstractCanvasData;
 import me.dantaeusb.zetter.storage.PaintingData;
 import net.minecraft.world.level.Level;
 
@@ -41,22 +42,15 @@ public class PaintingInput {
 
         CanvasServerTracker canvasTracker = (CanvasServerTracker) Helper.getLevelCanvasTracker(level);
 
-        if (this.code != null) {
-            this.paintingData = canvasTracker.getCanvasData(this.code);
+        if (this.code == null) {
+            this.code = Helper.lookupPaintingCodeByName(this.title, level);
         }
 
-        for (int id = 0; id < canvasTracker.getLastPaintingId() + 1; id++) {
-            final String code = PaintingData.getCanvasCode(id);
-            PaintingData paintingData = canvasTracker.getCanvasData(code);
-
-            if (paintingData == null || !paintingData.getType().equals(ZetterCanvasTypes.PAINTING.get())) {
-                continue;
-            }
+        if (this.code != null) {
+            AbstractCanvasData canvasData = canvasTracker.getCanvasData(this.code);
 
-            if (paintingData.getPaintingName().equals(this.title)) {
-                this.code = code;
-                this.paintingData = paintingData;
-                break;
+            if (canvasData != null && canvasData.getType().equals(ZetterCanvasTypes.PAINTING.get())) {
+                this.paintingData = (PaintingData) canvasData;
             }
         }
     }
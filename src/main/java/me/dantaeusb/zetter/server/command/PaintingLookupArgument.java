@@ -2,20 +2,29 @@ package me.dantaeusb.zetter.server.command;
 
 import com.mojang.brigadier.StringReader;
 import com.mojang.brigadier.arguments.ArgumentType;
+import com.mojang.brigadier.arguments.StringArgumentType;
 import com.mojang.brigadier.context.CommandContext;
 import com.mojang.brigadier.exceptions.CommandSyntaxException;
 import com.mojang.brigadier.exceptions.DynamicCommandExceptionType;
+import com.mojang.brigadier.suggestion.Suggestions;
+import com.mojang.brigadier.suggestion.SuggestionsBuilder;
+import me.dantaeusb.zetter.capability.canvastracker.CanvasServerTracker;
+import me.dantaeusb.zetter.core.Helper;
 import me.dantaeusb.zetter.storage.PaintingData;
+import net.minecraft.commands.CommandSourceStack;
 import net.minecraft.network.chat.Component;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
 import java.util.regex.Pattern;
 
 public class PaintingLookupArgument implements ArgumentType<PaintingInput> {
     private static final Collection<String> EXAMPLES = Arrays.asList("12", PaintingData.CODE_PREFIX + "12", "Painting", "\"My Painting\"");
 
     private static final Pattern ID = Pattern.compile("\\p{javaDigit}+");
+    private static final int MAX_SUGGESTIONS = 50;
+
     private static final Pattern CODE = Pattern.compile(PaintingData.CODE_PREFIX + "\\p{javaDigit}+");
 
     private static final DynamicCommandExceptionType ERROR_INVALID_PAINTING_CODE = new DynamicCommandExceptionType((code) -> {
@@ -50,6 +59,30 @@ public class PaintingLookupArgument implements ArgumentType<PaintingInput> {
         return context.getArgument(argumentName, PaintingInput.class);
     }
 
+    /**
+     * Suggest titles from painting index, should be
+     * used as a server-side suggestions provider
+     *
+     * @param context
+     * @param builder
+     * @return
+     */
+    public static CompletableFuture<Suggestions> suggestPaintingTitles(CommandContext<CommandSourceStack> context, SuggestionsBuilder builder) {
+        String input = builder.getRemaining();
+
+        if (!input.isEmpty() && StringReader.isQuotedStringStart(input.charAt(0))) {
+            input = input.substring(1);
+        }
+
+        CanvasServerTracker canvasTracker = (CanvasServerTracker) Helper.getLevelCanvasTracker(context.getSource().getLevel());
+
+        for (String title : canvasTracker.getPaintingIndex().getTitlesStartingWith(input, MAX_SUGGESTIONS)) {
+            builder.suggest(StringArgumentType.escapeIfRequired(title));
+        }
+
+        return builder.buildFuture();
+    }
+
     public Collection<String> getExamples() {
         return EXAMPLES;
     }
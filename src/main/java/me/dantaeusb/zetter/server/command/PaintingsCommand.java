@@ -0,0 +1,85 @@
+package me.dantaeusb.zetter.server.command;
+
+import com.mojang.authlib.GameProfile;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.builder.ArgumentBuilder;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import me.dantaeusb.zetter.capability.canvastracker.CanvasServerTracker;
+import me.dantaeusb.zetter.capability.paintingregistry.PaintingRegistry;
+import me.dantaeusb.zetter.core.Helper;
+import me.dantaeusb.zetter.storage.PaintingIndex;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.commands.arguments.GameProfileArgument;
+import net.minecraft.network.chat.Component;
+
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * List paintings for moderation, page by page,
+ * next page starts after the last id of previous one
+ */
+public class PaintingsCommand {
+    private static final int PAGE_SIZE = 10;
+
+    static ArgumentBuilder<CommandSourceStack, ?> register() {
+        return Commands.literal("paintings")
+            .requires(cs -> cs.hasPermission(Commands.LEVEL_GAMEMASTERS))
+            .executes(ctx -> execute(ctx.getSource(), null, -1))
+            .then(
+                Commands.argument("after", IntegerArgumentType.integer(-1))
+                    .executes(ctx -> execute(ctx.getSource(), null, IntegerArgumentType.getInteger(ctx, "after")))
+            )
+            .then(
+                Commands.literal("by")
+                    .then(
+                        Commands.argument("author", GameProfileArgument.gameProfile())
+                            .executes(ctx -> executeByAuthor(ctx.getSource(), GameProfileArgument.getGameProfiles(ctx, "author"), -1))
+                            .then(
+                                Commands.argument("after", IntegerArgumentType.integer(-1))
+                                    .executes(ctx -> executeByAuthor(ctx.getSource(), GameProfileArgument.getGameProfiles(ctx, "author"), IntegerArgumentType.getInteger(ctx, "after")))
+                            )
+                    )
+            );
+    }
+
+    private static int executeByAuthor(CommandSourceStack source, Collection<GameProfile> authors, int afterId) throws CommandSyntaxException {
+        int count = 0;
+
+        for (GameProfile author : authors) {
+            count += execute(source, author.getId(), afterId);
+        }
+
+        return count;
+    }
+
+    private static int execute(CommandSourceStack source, @Nullable UUID authorUuid, int afterId) {
+        PaintingRegistry registry = Helper.getLevelPaintingRegistry(source.getLevel());
+        PaintingIndex paintingIndex = ((CanvasServerTracker) Helper.getLevelCanvasTracker(source.getLevel())).getPaintingIndex();
+
+        List<Integer> page = authorUuid != null ?
+            registry.getPaintingIdsByAuthor(authorUuid, afterId, PAGE_SIZE) :
+            registry.getPaintingIds(afterId, PAGE_SIZE);
+
+        if (page.isEmpty()) {
+            source.sendSuccess(Component.translatable("console.zetter.result.paintings_empty"), false);
+            return 0;
+        }
+
+        for (int paintingId : page) {
+            source.sendSuccess(Component.translatable(
+                "console.zetter.result.paintings_entry",
+                paintingId,
+                String.valueOf(paintingIndex.getTitle(paintingId)),
+                String.valueOf(paintingIndex.getAuthorName(paintingId))
+            ), false);
+        }
+
+        source.sendSuccess(Component.translatable("console.zetter.result.paintings_next", page.get(page.size() - 1)), false);
+
+        return page.size();
+    }
+}
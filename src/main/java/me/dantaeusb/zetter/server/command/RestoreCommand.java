@@ -27,6 +27,7 @@ public class RestoreCommand {
             .requires(cs -> cs.hasPermission(Commands.LEVEL_GAMEMASTERS))
             .then(
                 Commands.argument("painting", PaintingLookupArgument.painting())
+                    .suggests(PaintingLookupArgument::suggestPaintingTitles)
                     .executes(ctx -> execute(
                         ctx.getSource(),
                         ctx.getSource().getPlayer(),
@@ -0,0 +1,78 @@
+package me.dantaeusb.zetter.server.command;
+
+import com.mojang.brigadier.builder.ArgumentBuilder;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import com.mojang.brigadier.exceptions.SimpleCommandExceptionType;
+import me.dantaeusb.zetter.ZetterConfig;
+import me.dantaeusb.zetter.capability.canvastracker.CanvasServerTracker;
+import me.dantaeusb.zetter.capability.canvastracker.CanvasSyncStats;
+import me.dantaeusb.zetter.core.Helper;
+import me.dantaeusb.zetter.storage.archive.CanvasPixelStore;
+import me.dantaeusb.zetter.storage.archive.CanvasResidencyManager;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.network.chat.Component;
+
+/**
+ * Shows how many canvases are loaded, how often
+ * they are loaded from disk, and how much encoding
+ * is saved by sharing sync packets between players
+ */
+public class StorageCommand {
+    private static final SimpleCommandExceptionType ERROR_STORAGE_UNAVAILABLE = new SimpleCommandExceptionType(
+        Component.translatable("console.zetter.error.storage_unavailable")
+    );
+
+    static ArgumentBuilder<CommandSourceStack, ?> register() {
+        return Commands.literal("storage")
+            .requires(cs -> cs.hasPermission(Commands.LEVEL_GAMEMASTERS))
+            .executes(ctx -> execute(ctx.getSource()));
+    }
+
+    private static int execute(CommandSourceStack source) throws CommandSyntaxException {
+        CanvasServerTracker canvasTracker = (CanvasServerTracker) Helper.getLevelCanvasTracker(source.getLevel());
+        CanvasResidencyManager residency = canvasTracker.getResidency();
+        CanvasPixelStore pixelStore = canvasTracker.getPixelStore();
+
+        if (residency == null || pixelStore == null) {
+            throw ERROR_STORAGE_UNAVAILABLE.create();
+        }
+
+        source.sendSuccess(Component.translatable(
+            "console.zetter.result.storage_residency",
+            residency.getResidentCount(),
+            residency.getResidentMemory() / 1024,
+            ZetterConfig.SERVER.canvasMemoryBudget.get() * 1024
+        ), false);
+
+        source.sendSuccess(Component.translatable(
+            "console.zetter.result.storage_counters",
+            residency.getHits(),
+            residency.getMisses(),
+            residency.getEvictions()
+        ), false);
+
+        source.sendSuccess(Component.translatable(
+            "console.zetter.result.storage_pixels",
+            pixelStore.getBlobCount(),
+            pixelStore.getReferenceCount()
+        ), false);
+
+        CanvasSyncStats syncStats = canvasTracker.getSyncStats();
+
+        source.sendSuccess(Component.translatable(
+            "console.zetter.result.storage_sync",
+            syncStats.getEncodedPackets(),
+            syncStats.getEncodedBytes() / 1024,
+            syncStats.getSavedEncodes(),
+            syncStats.getSavedBytes() / 1024
+        ), false);
+
+        source.sendSuccess(Component.translatable(
+            "console.zetter.result.storage_dispatch",
+            canvasTracker.getDispatcher().getQueuedBytes() / 1024
+        ), false);
+
+        return residency.getResidentCount();
+    }
+}
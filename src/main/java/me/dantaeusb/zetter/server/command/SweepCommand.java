@@ -0,0 +1,57 @@
+package me.dantaeusb.zetter.server.command;
+
+import com.mojang.brigadier.builder.ArgumentBuilder;
+import me.dantaeusb.zetter.capability.canvastracker.CanvasServerTracker;
+import me.dantaeusb.zetter.capability.canvastracker.CanvasSweeper;
+import me.dantaeusb.zetter.core.Helper;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.network.chat.Component;
+
+/**
+ * Look for canvases which are lost, without freeing
+ * them (dry run), or freeing canvases that are
+ * lost for longer than grace period
+ */
+public class SweepCommand {
+    static ArgumentBuilder<CommandSourceStack, ?> register() {
+        return Commands.literal("sweep")
+            .requires(cs -> cs.hasPermission(Commands.LEVEL_ADMINS))
+            .executes(ctx -> execute(ctx.getSource(), false))
+            .then(
+                Commands.literal("free")
+                    .executes(ctx -> execute(ctx.getSource(), true))
+            )
+            .then(
+                Commands.literal("report")
+                    .executes(ctx -> report(ctx.getSource()))
+            );
+    }
+
+    private static int execute(CommandSourceStack source, boolean free) {
+        CanvasServerTracker canvasTracker = (CanvasServerTracker) Helper.getLevelCanvasTracker(source.getLevel());
+
+        if (!canvasTracker.getSweeper().start(source.getServer(), free, source)) {
+            source.sendFailure(Component.translatable("console.zetter.error.sweep_running"));
+            return 0;
+        }
+
+        source.sendSuccess(Component.translatable("console.zetter.result.sweep_started"), true);
+
+        return 1;
+    }
+
+    private static int report(CommandSourceStack source) {
+        CanvasServerTracker canvasTracker = (CanvasServerTracker) Helper.getLevelCanvasTracker(source.getLevel());
+        CanvasSweeper.Report report = canvasTracker.getSweeper().getLastReport();
+
+        if (report == null) {
+            source.sendFailure(Component.translatable("console.zetter.error.sweep_no_report"));
+            return 0;
+        }
+
+        source.sendSuccess(report.toComponent(), false);
+
+        return 1;
+    }
+}
@@ -12,6 +12,9 @@ public class ZetterServerCommand {
             LiteralArgumentBuilder.<CommandSourceStack>literal(Zetter.MOD_ID)
                 .then(RestoreCommand.register())
                 .then(ExportServerCommand.register())
+                .then(StorageCommand.register())
+                .then(SweepCommand.register())
+                .then(PaintingsCommand.register())
         );
     }
 }
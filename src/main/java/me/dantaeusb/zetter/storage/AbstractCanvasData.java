@@ -2,7 +2,11 @@ package me.dantaeusb.zetter.storage;
 
 import me.dantaeusb.zetter.Zetter;
 import me.dantaeusb.zetter.capability.canvastracker.CanvasServerTracker;
+import me.dantaeusb.zetter.core.Helper;
+import me.dantaeusb.zetter.storage.util.CanvasColorCodec;
+import me.dantaeusb.zetter.storage.util.CanvasTileTracker;
 import net.minecraft.nbt.CompoundTag;
+import net.minecraft.network.FriendlyByteBuf;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.util.Mth;
@@ -10,9 +14,12 @@ import net.minecraft.world.level.saveddata.SavedData;
 
 import javax.annotation.Nullable;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * It's not enough to just init data, we need to register it with
@@ -27,15 +34,99 @@ public abstract class AbstractCanvasData extends SavedData {
     protected static final String NBT_TAG_HEIGHT = "height";
     protected static final String NBT_TAG_RESOLUTION = "resolution";
     protected static final String NBT_TAG_COLOR = "color";
+    protected static final String NBT_TAG_COLOR_ENCODED = "ColorEncoded";
+    protected static final String NBT_TAG_COLOR_ENCODING = "ColorEncoding";
+    public static final String NBT_TAG_CONTENT_HASH = "ContentHash";
 
-    // Maybe final?
+    /**
+     * Canvases bigger than that are not sent in one packet,
+     * sync packet has only properties and downsampled preview,
+     * pixels are streamed in bands, see {@link #isStreamed()}
+     */
+    public static final int MAX_INLINE_PIXELS = 128 * 128;
+
+    /**
+     * ARGB colors, one int per pixel, row by row.
+     * Never give this array away, use read-only
+     * view or copy instead.
+     *
+     * Null when canvas is a solid fill, array is
+     * allocated on first change
+     * @see #fillColor
+     */
+    protected @Nullable int[] color;
+
+    /**
+     * Color of every pixel when there's no color array,
+     * most of the canvases are blank, no need to keep
+     * thousands of the same ints for them
+     */
+    protected int fillColor;
+
+    /**
+     * When color data is stored separately from canvas
+     * properties, it's not loaded with the canvas, but
+     * on first access to pixels, so lookups that need
+     * only properties won't keep pixels in memory
+     */
+    private @Nullable Supplier<CompoundTag> colorDataLoader;
+
+    /**
+     * Same as {@link #colorDataLoader}, but returns color
+     * array shared with other canvases with the same
+     * pixels, it's copied before the first change
+     * @see #colorShared
+     */
+    private @Nullable Supplier<int[]> sharedColorDataLoader;
+    private boolean colorShared = false;
+
+    /**
+     * Loader could not read color data, canvas shows
+     * blank pixels but is never saved, so saved
+     * pixels are not overwritten by them
+     * @see #isColorDataLost()
+     */
+    private boolean colorDataLost = false;
+
+    /**
+     * Hash of the pixels, only for canvases that can't
+     * be changed, computed on first access
+     * @see #getContentHash()
+     */
+    protected @Nullable String contentHash;
+
+    /**
+     * Downsampled colors sent before the pixels of streamed
+     * canvas, kept until canvas is changed
+     * @see #getPreviewColorData()
+     */
+    private @Nullable int[] previewColor;
+    private int previewVersion;
+
+    /**
+     * On client, canvas has only upsampled preview and
+     * full pixels were not received yet
+     */
+    private boolean preview = false;
 
-    protected byte[] color;
-    protected ByteBuffer canvasBuffer;
     protected Resolution resolution;
     protected int width;
     protected int height;
 
+    /**
+     * Keeps track of changed regions, so renderer
+     * and tracker could process only updated parts
+     */
+    protected CanvasTileTracker tiles;
+
+    /**
+     * How color data is written when saving and syncing,
+     * INDEXED chooses format by pixels on every save,
+     * selected for new canvases by server config
+     * @see me.dantaeusb.zetter.ZetterConfig.Server#canvasColorEncoding
+     */
+    protected ColorEncoding colorEncoding = ColorEncoding.INDEXED;
+
     /**
      * This flag means that client can automatically manage
      * the lifetime of the canvas data and remove it from memory
@@ -53,34 +144,111 @@ public abstract class AbstractCanvasData extends SavedData {
     public abstract CanvasDataType<? extends AbstractCanvasData> getType();
 
     /**
+     * Canvas takes ownership of the color array, it is not copied,
+     * so caller should not keep or modify it after wrapping
      *
      * @param resolution
      * @param width in pixels
      * @param height in pixels
-     * @param color
+     * @param color ARGB colors
      */
-    public final void wrapData(Resolution resolution, int width, int height, byte[] color) {
+    public final void wrapData(Resolution resolution, int width, int height, int[] color) {
         if (width % resolution.getNumeric() != 0 || height % resolution.getNumeric() != 0) {
             throw new IllegalArgumentException("Canvas size is not proportional to given canvas resolution");
         }
 
+        if (color.length != width * height) {
+            throw new IllegalArgumentException("Color data size does not match canvas size");
+        }
+
         this.resolution = resolution;
         this.width = width;
         this.height = height;
-        this.updateColorData(color);
+        this.color = color;
+        this.resetColorDataSource();
+        this.markAllTilesChanged();
         this.setDirty();
     }
 
-    public void updateColorData(byte[] color) {
-        if (this.color != null) {
-            if (color.length != this.color.length) {
-                throw new IllegalArgumentException("Color data size mismatch");
+    /**
+     * Canvas filled with single color, color array
+     * is not allocated until first change
+     *
+     * @param resolution
+     * @param width in pixels
+     * @param height in pixels
+     * @param fillColor ARGB color
+     */
+    public final void wrapFill(Resolution resolution, int width, int height, int fillColor) {
+        if (width % resolution.getNumeric() != 0 || height % resolution.getNumeric() != 0) {
+            throw new IllegalArgumentException("Canvas size is not proportional to given canvas resolution");
+        }
+
+        this.resolution = resolution;
+        this.width = width;
+        this.height = height;
+        this.color = null;
+        this.fillColor = fillColor;
+        this.resetColorDataSource();
+        this.markAllTilesChanged();
+        this.setDirty();
+    }
+
+    /**
+     * Wraps data encoded with {@link CanvasColorCodec},
+     * keeping solid fills without allocation
+     *
+     * @param resolution
+     * @param width
+     * @param height
+     * @param encodedColor
+     */
+    protected final void wrapEncodedData(Resolution resolution, int width, int height, byte[] encodedColor) {
+        if (CanvasColorCodec.isSolid(encodedColor)) {
+            this.wrapFill(resolution, width, height, CanvasColorCodec.getSolidColor(encodedColor));
+        } else {
+            this.wrapData(resolution, width, height, CanvasColorCodec.decode(encodedColor, width * height));
+        }
+    }
+
+    /**
+     * Replace color data with given colors, colors
+     * are copied to the existing array so no
+     * allocation is happening
+     *
+     * @param color ARGB colors
+     */
+    public void updateColorData(int[] color) {
+        if (color.length != this.width * this.height) {
+            throw new IllegalArgumentException("Color data size mismatch");
+        }
+
+        this.resetColorDataSource();
+
+        if (this.color == null || this.colorShared) {
+            this.color = new int[color.length];
+            this.colorShared = false;
+        }
+
+        System.arraycopy(color, 0, this.color, 0, color.length);
+
+        this.markAllTilesChanged();
+    }
+
+    /**
+     * Whole color data is replaced, so every tile is changed,
+     * creates tracker if size is known and tracker is not yet created
+     */
+    protected final void markAllTilesChanged() {
+        if (this.tiles == null) {
+            if (this.width == 0 || this.height == 0) {
+                return;
             }
+
+            this.tiles = new CanvasTileTracker(this.width, this.height);
         }
 
-        this.color = color.clone();
-        this.canvasBuffer = ByteBuffer.wrap(this.color);
-        this.canvasBuffer.order(ByteOrder.BIG_ENDIAN);
+        this.tiles.markAllChanged();
     }
 
     public final boolean updateCanvasPixel(int index, int color) {
@@ -89,7 +257,21 @@ public abstract class AbstractCanvasData extends SavedData {
             return false;
         }
 
-        this.canvasBuffer.putInt(index * 4, color);
+        this.ensureColorDataLoaded();
+
+        if (this.color == null) {
+            if (color == this.fillColor) {
+                return true;
+            }
+
+            this.color = this.getColorData();
+        } else if (this.colorShared) {
+            this.color = this.color.clone();
+            this.colorShared = false;
+        }
+
+        this.color[index] = color;
+        this.tiles.markPixelChanged(index);
         this.setDirty();
         return true;
     }
@@ -98,6 +280,173 @@ public abstract class AbstractCanvasData extends SavedData {
         return this.getColorAt(this.getPixelIndex(pixelX, pixelY));
     }
 
+    /*
+     * Regions, used to stream large canvases
+     */
+
+    /**
+     * Copy of the pixels of the region, row by row
+     *
+     * @param x in pixels
+     * @param y in pixels
+     * @param width in pixels
+     * @param height in pixels
+     * @return ARGB colors
+     */
+    public final int[] getColorRegion(int x, int y, int width, int height) {
+        this.checkRegion(x, y, width, height);
+        this.ensureColorDataLoaded();
+
+        int[] region = new int[width * height];
+
+        if (this.color == null) {
+            Arrays.fill(region, this.fillColor);
+            return region;
+        }
+
+        for (int row = 0; row < height; row++) {
+            System.arraycopy(this.color, (y + row) * this.width + x, region, row * width, width);
+        }
+
+        return region;
+    }
+
+    /**
+     * Replace pixels of the region with colors received from
+     * server. Unlike {@link #updateCanvasPixel}, it's allowed
+     * for canvases that can't be changed, as it is not a
+     * change but transfer of existing data, so canvas is
+     * not marked dirty; changed tiles are marked to update
+     * only that part of the texture.
+     *
+     * @param x in pixels
+     * @param y in pixels
+     * @param width in pixels
+     * @param height in pixels
+     * @param region ARGB colors, row by row
+     */
+    public final void updateColorRegion(int x, int y, int width, int height, int[] region) {
+        this.checkRegion(x, y, width, height);
+
+        if (region.length != width * height) {
+            throw new IllegalArgumentException("Color region size mismatch");
+        }
+
+        this.ensureColorDataLoaded();
+
+        if (this.color == null) {
+            this.color = this.getColorData();
+        } else if (this.colorShared) {
+            this.color = this.color.clone();
+            this.colorShared = false;
+        }
+
+        for (int row = 0; row < height; row++) {
+            System.arraycopy(region, row * width, this.color, (y + row) * this.width + x, width);
+        }
+
+        this.tiles.markRegionChanged(x, y, width, height);
+    }
+
+    private void checkRegion(int x, int y, int width, int height) {
+        if (x < 0 || y < 0 || width <= 0 || height <= 0 || x + width > this.width || y + height > this.height) {
+            throw new IllegalArgumentException("Region is out of canvas bounds");
+        }
+    }
+
+    /**
+     * Pixels of large canvases are not sent with sync packet,
+     * it would stall the connection and could exceed packet
+     * size limit; they're sent in bands after sync packet
+     *
+     * @return
+     */
+    public boolean isStreamed() {
+        return this.width * this.height > MAX_INLINE_PIXELS;
+    }
+
+    /*
+     * Preview, sent first for streamed canvases
+     */
+
+    /**
+     * How many times preview is smaller than canvas
+     * on each side: 1/16 of pixels for very large
+     * canvases, 1/4 for others
+     *
+     * @return
+     */
+    public int getPreviewScale() {
+        return this.width * this.height > 256 * 256 ? 4 : 2;
+    }
+
+    /**
+     * Average colors of every square of {@link #getPreviewScale()}
+     * pixels. Computed once and kept until canvas is changed,
+     * so paintings, which don't change, compute it only once.
+     * Returned array should not be modified.
+     *
+     * @return ARGB colors
+     */
+    public int[] getPreviewColorData() {
+        final int version = this.getVersion();
+
+        if (this.previewColor != null && this.previewVersion == version) {
+            return this.previewColor;
+        }
+
+        this.ensureColorDataLoaded();
+
+        final int scale = this.getPreviewScale();
+        final int previewWidth = this.width / scale;
+        final int previewHeight = this.height / scale;
+        final int samples = scale * scale;
+
+        int[] previewColor = new int[previewWidth * previewHeight];
+
+        if (this.color == null) {
+            Arrays.fill(previewColor, this.fillColor);
+        } else {
+            for (int previewY = 0; previewY < previewHeight; previewY++) {
+                for (int previewX = 0; previewX < previewWidth; previewX++) {
+                    int a = 0, r = 0, g = 0, b = 0;
+
+                    for (int y = previewY * scale; y < (previewY + 1) * scale; y++) {
+                        for (int x = previewX * scale; x < (previewX + 1) * scale; x++) {
+                            final int color = this.color[y * this.width + x];
+
+                            a += color >>> 24;
+                            r += (color >> 16) & 0xFF;
+                            g += (color >> 8) & 0xFF;
+                            b += color & 0xFF;
+                        }
+                    }
+
+                    previewColor[previewY * previewWidth + previewX] =
+                        (a / samples) << 24 | (r / samples) << 16 | (g / samples) << 8 | (b / samples);
+                }
+            }
+        }
+
+        this.previewColor = previewColor;
+        this.previewVersion = version;
+
+        return previewColor;
+    }
+
+    public boolean isPreview() {
+        return this.preview;
+    }
+
+    /**
+     * Called on client when every band of
+     * streamed canvas was received
+     * @param preview
+     */
+    public void setPreview(boolean preview) {
+        this.preview = preview;
+    }
+
     public void setManaged(boolean managed) {
         this.managed = managed;
     }
@@ -128,6 +477,53 @@ public abstract class AbstractCanvasData extends SavedData {
         return this.resolution;
     }
 
+    /**
+     * If canvas is a single color fill and
+     * color data was not allocated yet
+     * @return
+     */
+    public boolean isSolid() {
+        this.ensureColorDataLoaded();
+
+        return this.color == null;
+    }
+
+    public ColorEncoding getColorEncoding() {
+        return this.colorEncoding;
+    }
+
+    public void setColorEncoding(ColorEncoding colorEncoding) {
+        this.colorEncoding = colorEncoding;
+        this.setDirty();
+    }
+
+    /*
+     * Change tracking
+     */
+
+    public CanvasTileTracker getTiles() {
+        return this.tiles;
+    }
+
+    /**
+     * Version is incremented on every change, it is
+     * not saved and valid only for this data object
+     * @return 0 if canvas data was not wrapped yet
+     */
+    public int getVersion() {
+        return this.tiles != null ? this.tiles.getVersion() : 0;
+    }
+
+    /**
+     * What changed since version N: indices of tiles
+     * @see CanvasTileTracker#getTileX(int)
+     * @param version
+     * @return
+     */
+    public BitSet getTilesChangedSince(int version) {
+        return this.tiles.getTilesChangedSince(version);
+    }
+
     /**
      * Sometimes painting could be disabled for some specific client types
      * or for other reasons, i.e. banned. We're keeping the data but marking
@@ -149,26 +545,64 @@ public abstract class AbstractCanvasData extends SavedData {
         return null;
     }
 
-    public byte[] getColorData() {
+    /**
+     * Copy of the color data, use only when the
+     * copy is really needed (i.e. snapshots), for
+     * reading use {@link #getColorDataBuffer()}
+     * @return
+     */
+    public int[] getColorData() {
+        this.ensureColorDataLoaded();
+
+        if (this.color == null) {
+            int[] color = new int[this.width * this.height];
+            Arrays.fill(color, this.fillColor);
+
+            return color;
+        }
+
         return this.color.clone();
     }
 
-    public ByteBuffer getColorDataBuffer() {
-        this.canvasBuffer.rewind();
-        return this.canvasBuffer.asReadOnlyBuffer();
+    /**
+     * Read-only view of the color data, no copy is made,
+     * so view will reflect further changes of the canvas.
+     * For solid fill canvas view of temporary copy is
+     * returned, it won't reflect changes
+     * @return
+     */
+    public IntBuffer getColorDataBuffer() {
+        this.ensureColorDataLoaded();
+
+        if (this.color == null) {
+            return IntBuffer.wrap(this.getColorData()).asReadOnlyBuffer();
+        }
+
+        return IntBuffer.wrap(this.color).asReadOnlyBuffer();
     }
 
     /**
+     * Index is not checked, make sure it's within canvas
      *
      * @param index Integer index, not byte index
      * @return
      */
     public final int getColorAt(int index) {
-        return this.canvasBuffer.getInt(index * 4);
+        if (!this.isColorDataLoaded()) {
+            this.ensureColorDataLoaded();
+        }
+
+        final int[] color = this.color;
+
+        return color != null ? color[index] : this.fillColor;
     }
 
     /**
      * This is integer index, not byte index!
+     * Coordinates are clamped to the canvas size, for the
+     * cases when coordinates are known to be in bounds,
+     * use {@link #getPixelIndexUnchecked(int, int)}
+     *
      * @param pixelX
      * @param pixelY
      * @return
@@ -180,6 +614,299 @@ public abstract class AbstractCanvasData extends SavedData {
         return pixelY * this.width + pixelX;
     }
 
+    public final int getPixelIndexUnchecked(int pixelX, int pixelY) {
+        return pixelY * this.width + pixelX;
+    }
+
+    /*
+     * Color data conversion: saved and sent as big-endian
+     * bytes to keep compatibility with older data
+     */
+
+    public static int[] unpackColorBytes(byte[] colorBytes) {
+        int[] color = new int[colorBytes.length / 4];
+        ByteBuffer.wrap(colorBytes).asIntBuffer().get(color);
+
+        return color;
+    }
+
+    public static byte[] packColorBytes(int[] color) {
+        byte[] colorBytes = new byte[color.length * 4];
+        ByteBuffer.wrap(colorBytes).asIntBuffer().put(color);
+
+        return colorBytes;
+    }
+
+    /**
+     * Reads color data written by {@link #writeColorPacketData},
+     * preview is scaled up to canvas size, so canvas could be
+     * rendered before full pixels arrive
+     *
+     * @param resolution
+     * @param width
+     * @param height
+     * @param networkBuffer
+     */
+    protected final void readColorPacketData(Resolution resolution, int width, int height, FriendlyByteBuf networkBuffer) {
+        final int scale = networkBuffer.readVarInt();
+        final byte[] encodedColor = networkBuffer.readByteArray();
+
+        if (scale <= 1 || CanvasColorCodec.isSolid(encodedColor)) {
+            this.wrapEncodedData(resolution, width, height, encodedColor);
+        } else {
+            final int previewWidth = width / scale;
+            final int[] previewColor = CanvasColorCodec.decode(encodedColor, previewWidth * (height / scale));
+            int[] color = new int[width * height];
+
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    color[y * width + x] = previewColor[(y / scale) * previewWidth + x / scale];
+                }
+            }
+
+            this.wrapData(resolution, width, height, color);
+        }
+
+        this.preview = scale > 1;
+    }
+
+    /**
+     * Streamed canvases are sent with downsampled preview,
+     * pixels are sent after with region packets
+     * @param networkBuffer
+     */
+    protected void writeColorPacketData(FriendlyByteBuf networkBuffer) {
+        if (this.isStreamed()) {
+            networkBuffer.writeVarInt(this.getPreviewScale());
+            networkBuffer.writeByteArray(CanvasColorCodec.encode(this.getPreviewColorData(), true));
+            return;
+        }
+
+        networkBuffer.writeVarInt(1);
+        networkBuffer.writeByteArray(this.encodeColorData(this.colorEncoding == ColorEncoding.INDEXED));
+    }
+
+    /**
+     * Solid fill is written without allocating
+     * color array when palette is allowed
+     * @param allowPalette
+     * @return
+     */
+    protected byte[] encodeColorData(boolean allowPalette) {
+        this.ensureColorDataLoaded();
+
+        if (this.color == null && allowPalette) {
+            return CanvasColorCodec.encodeSolid(this.fillColor);
+        }
+
+        return CanvasColorCodec.encode(this.color != null ? this.color : this.getColorData(), allowPalette);
+    }
+
+    /**
+     * Reads color data from either encoded or legacy tag,
+     * width and height should be loaded before. If there's
+     * no color data, it's stored separately and should be
+     * provided with {@link #setColorDataLoader(Supplier)} or
+     * {@link #setSharedColorDataLoader(Supplier)}
+     * @param compoundTag
+     */
+    protected void loadColorData(CompoundTag compoundTag) {
+        this.readColorTags(compoundTag);
+        this.contentHash = readContentHash(compoundTag);
+
+        if (compoundTag.contains(NBT_TAG_COLOR_ENCODING)) {
+            this.colorEncoding = ColorEncoding.values()[compoundTag.getByte(NBT_TAG_COLOR_ENCODING)];
+        }
+
+        this.markAllTilesChanged();
+    }
+
+    private void readColorTags(CompoundTag compoundTag) {
+        if (compoundTag.contains(NBT_TAG_COLOR_ENCODED)) {
+            final byte[] encodedColor = compoundTag.getByteArray(NBT_TAG_COLOR_ENCODED);
+
+            if (CanvasColorCodec.isSolid(encodedColor)) {
+                this.color = null;
+                this.fillColor = CanvasColorCodec.getSolidColor(encodedColor);
+            } else {
+                this.color = CanvasColorCodec.decode(encodedColor, this.width * this.height);
+            }
+        } else if (compoundTag.contains(NBT_TAG_COLOR)) {
+            this.color = unpackColorBytes(compoundTag.getByteArray(NBT_TAG_COLOR));
+        }
+    }
+
+    /*
+     * Separately stored color data
+     */
+
+    /**
+     * Set loader for color data which is stored separately,
+     * it will be called on first access to the pixels.
+     * Loading does not count as a change
+     *
+     * @param colorDataLoader returns tag with color data, or null if it's lost
+     */
+    public void setColorDataLoader(Supplier<CompoundTag> colorDataLoader) {
+        this.colorDataLoader = colorDataLoader;
+    }
+
+    /**
+     * Set loader for color data of canvas that can't be changed,
+     * which is shared with other canvases with the same pixels.
+     * Returned array is not modified, it's copied on change.
+     *
+     * @param sharedColorDataLoader returns ARGB colors, or null if they're lost
+     */
+    public void setSharedColorDataLoader(Supplier<int[]> sharedColorDataLoader) {
+        this.sharedColorDataLoader = sharedColorDataLoader;
+    }
+
+    public boolean isColorDataLoaded() {
+        return this.colorDataLoader == null && this.sharedColorDataLoader == null;
+    }
+
+    /**
+     * @return true if saved color data could not be loaded and canvas should not be saved
+     */
+    public boolean isColorDataLost() {
+        return this.colorDataLost;
+    }
+
+    /**
+     * Pixels are replaced, loaders are not needed
+     * anymore and hash should be computed again
+     */
+    private void resetColorDataSource() {
+        this.colorDataLoader = null;
+        this.sharedColorDataLoader = null;
+        this.colorShared = false;
+        this.contentHash = null;
+    }
+
+    /*
+     * Content hash
+     */
+
+    /**
+     * Hash of the pixels of canvas that can't be changed,
+     * storage keeps pixels of canvases with the same hash
+     * only once, and clients can use it as a cache key.
+     * Loads color data when called first time.
+     *
+     * @return null if canvas can be changed
+     */
+    public @Nullable String getContentHash() {
+        if (this.isEditable()) {
+            return null;
+        }
+
+        if (this.contentHash == null) {
+            this.ensureColorDataLoaded();
+            this.contentHash = CanvasColorCodec.hash(this.color, this.fillColor, this.width, this.height);
+        }
+
+        return this.contentHash;
+    }
+
+    /**
+     * @param compoundTag saved canvas properties
+     * @return null if canvas color data is not shared
+     */
+    public static @Nullable String readContentHash(CompoundTag compoundTag) {
+        return compoundTag.contains(NBT_TAG_CONTENT_HASH) ? compoundTag.getString(NBT_TAG_CONTENT_HASH) : null;
+    }
+
+    /**
+     * Approximate heap size of the canvas, used to
+     * decide when loaded canvases should be evicted.
+     * Color data which is not loaded is not counted,
+     * shared color data is counted for every canvas.
+     *
+     * @return size in bytes
+     */
+    public long estimateMemoryUsage() {
+        long memoryUsage = 256L;
+
+        if (this.color != null) {
+            memoryUsage += 16L + this.color.length * 4L;
+        }
+
+        if (this.tiles != null) {
+            memoryUsage += 16L + this.tiles.getTileCount() * 4L;
+        }
+
+        if (this.previewColor != null) {
+            memoryUsage += 16L + this.previewColor.length * 4L;
+        }
+
+        return memoryUsage;
+    }
+
+    private void ensureColorDataLoaded() {
+        final Supplier<CompoundTag> colorDataLoader = this.colorDataLoader;
+        final Supplier<int[]> sharedColorDataLoader = this.sharedColorDataLoader;
+
+        if (colorDataLoader == null && sharedColorDataLoader == null) {
+            return;
+        }
+
+        this.colorDataLoader = null;
+        this.sharedColorDataLoader = null;
+
+        if (sharedColorDataLoader != null) {
+            final int[] color = sharedColorDataLoader.get();
+
+            if (color != null && color.length == this.width * this.height) {
+                this.color = color;
+                this.colorShared = true;
+                return;
+            }
+        } else {
+            final CompoundTag colorTag = colorDataLoader.get();
+
+            if (colorTag != null) {
+                this.readColorTags(colorTag);
+                return;
+            }
+        }
+
+        Zetter.LOG.error("Color data for canvas is lost, showing blank canvas, it won't be saved");
+
+        this.color = null;
+        this.fillColor = Helper.CANVAS_COLOR;
+        this.colorDataLost = true;
+    }
+
+    public static boolean hasColorData(CompoundTag compoundTag) {
+        return compoundTag.contains(NBT_TAG_COLOR_ENCODED) || compoundTag.contains(NBT_TAG_COLOR);
+    }
+
+    /**
+     * Move color data tags from saved canvas to the
+     * separate tag, so properties and pixels could be
+     * stored separately
+     *
+     * @param compoundTag saved canvas
+     * @return tag with color data, or null if color data was not saved
+     */
+    public static @Nullable CompoundTag extractColorData(CompoundTag compoundTag) {
+        if (!hasColorData(compoundTag)) {
+            return null;
+        }
+
+        CompoundTag colorTag = new CompoundTag();
+
+        for (String key : new String[]{NBT_TAG_COLOR_ENCODED, NBT_TAG_COLOR}) {
+            if (compoundTag.contains(key)) {
+                colorTag.put(key, compoundTag.get(key));
+                compoundTag.remove(key);
+            }
+        }
+
+        return colorTag;
+    }
+
     /*
      * Loading and syncing
      */
@@ -188,20 +915,215 @@ public abstract class AbstractCanvasData extends SavedData {
         // Do nothing
     }
 
-    public CompoundTag save(CompoundTag compoundTag) {
+    public final CompoundTag save(CompoundTag compoundTag) {
+        this.saveProperties(compoundTag);
+
+        // Not loaded color data is not changed, no need to save it
+        if (this.isColorDataLoaded()) {
+            writeColorTags(compoundTag, this.color, this.fillColor, this.width, this.height, this.colorEncoding);
+        }
+
+        return compoundTag;
+    }
+
+    /**
+     * Everything except color data, should be
+     * cheap, as it's called on the server thread
+     * when saving asynchronously. Content hash is
+     * saved only if it's known already, otherwise
+     * it's computed by the save queue
+     * @see #createSaveSnapshot()
+     * @param compoundTag
+     */
+    protected void saveProperties(CompoundTag compoundTag) {
         compoundTag.putString(NBT_TAG_TYPE, this.getType().resourceLocation.toString());
         compoundTag.putInt(NBT_TAG_WIDTH, this.width);
         compoundTag.putInt(NBT_TAG_HEIGHT, this.height);
         compoundTag.putInt(NBT_TAG_RESOLUTION, this.resolution.ordinal());
-        compoundTag.putByteArray(NBT_TAG_COLOR, this.color);
+        compoundTag.putByte(NBT_TAG_COLOR_ENCODING, (byte) this.colorEncoding.ordinal());
 
-        return compoundTag;
+        if (this.contentHash != null && !this.isEditable()) {
+            compoundTag.putString(NBT_TAG_CONTENT_HASH, this.contentHash);
+        }
+    }
+
+    /**
+     * Encoded color data is filtered and compressed,
+     * RAW encoding keeps legacy tag
+     */
+    private static void writeColorTags(CompoundTag compoundTag, @Nullable int[] color, int fillColor, int width, int height, ColorEncoding colorEncoding) {
+        if (color == null && colorEncoding == ColorEncoding.RAW) {
+            color = new int[width * height];
+            Arrays.fill(color, fillColor);
+        }
+
+        if (colorEncoding == ColorEncoding.RAW) {
+            compoundTag.putByteArray(NBT_TAG_COLOR, packColorBytes(color));
+        } else if (color == null) {
+            compoundTag.putByteArray(NBT_TAG_COLOR_ENCODED, CanvasColorCodec.encodeSolid(fillColor));
+        } else {
+            compoundTag.putByteArray(NBT_TAG_COLOR_ENCODED, CanvasColorCodec.encodeCompressed(color, width));
+        }
+    }
+
+    /**
+     * Properties only, to check if they were changed
+     * since last save without copying color data
+     * @return
+     */
+    public CompoundTag createPropertiesSnapshot() {
+        CompoundTag propertiesTag = new CompoundTag();
+        this.saveProperties(propertiesTag);
+
+        return propertiesTag;
+    }
+
+    /**
+     * Decode color data saved separately from properties
+     * @see #extractColorData(CompoundTag)
+     * @param colorTag
+     * @param pixelCount
+     * @return
+     */
+    public static int[] decodeColorTag(CompoundTag colorTag, int pixelCount) {
+        if (colorTag.contains(NBT_TAG_COLOR_ENCODED)) {
+            return CanvasColorCodec.decode(colorTag.getByteArray(NBT_TAG_COLOR_ENCODED), pixelCount);
+        }
+
+        return unpackColorBytes(colorTag.getByteArray(NBT_TAG_COLOR));
+    }
+
+    /**
+     * Content hash of color data saved separately from properties
+     * @see #getContentHash()
+     * @param propertiesTag
+     * @param colorTag
+     * @return
+     */
+    public static String computeContentHash(CompoundTag propertiesTag, CompoundTag colorTag) {
+        final int width = propertiesTag.getInt(NBT_TAG_WIDTH);
+        final int height = propertiesTag.getInt(NBT_TAG_HEIGHT);
+
+        return CanvasColorCodec.hash(decodeColorTag(colorTag, width * height), 0, width, height);
+    }
+
+    public static CompoundTag encodeColorTag(int[] color, int width, ColorEncoding colorEncoding) {
+        CompoundTag colorTag = new CompoundTag();
+        writeColorTags(colorTag, color, 0, width, color.length / width, colorEncoding);
+
+        return colorTag;
+    }
+
+    /**
+     * Copy the state for saving: properties are saved
+     * right away, and color data is only copied, to
+     * be encoded later, possibly on another thread
+     *
+     * @return
+     */
+    public SaveSnapshot createSaveSnapshot() {
+        CompoundTag propertiesTag = new CompoundTag();
+        this.saveProperties(propertiesTag);
+
+        final boolean contentHashPending = !this.isEditable() && this.contentHash == null;
+
+        if (!this.isColorDataLoaded()) {
+            return new SaveSnapshot(propertiesTag, contentHashPending, false, null, 0, 0, 0, this.colorEncoding);
+        }
+
+        return new SaveSnapshot(
+            propertiesTag,
+            contentHashPending,
+            true,
+            this.color != null ? this.color.clone() : null,
+            this.fillColor,
+            this.width,
+            this.height,
+            this.colorEncoding
+        );
+    }
+
+    public static class SaveSnapshot {
+        private final CompoundTag propertiesTag;
+        private final boolean contentHashPending;
+        private final boolean hasColorData;
+        private final @Nullable int[] color;
+        private final int fillColor;
+        private final int width;
+        private final int height;
+        private final ColorEncoding colorEncoding;
+
+        private SaveSnapshot(CompoundTag propertiesTag, boolean contentHashPending, boolean hasColorData, @Nullable int[] color, int fillColor, int width, int height, ColorEncoding colorEncoding) {
+            this.propertiesTag = propertiesTag;
+            this.contentHashPending = contentHashPending;
+            this.hasColorData = hasColorData;
+            this.color = color;
+            this.fillColor = fillColor;
+            this.width = width;
+            this.height = height;
+            this.colorEncoding = colorEncoding;
+        }
+
+        public CompoundTag getPropertiesTag() {
+            return this.propertiesTag;
+        }
+
+        /**
+         * Canvas can't be changed, but its content hash was
+         * not computed yet, so it's not in properties
+         * @return
+         */
+        public boolean isContentHashPending() {
+            return this.contentHashPending;
+        }
+
+        public boolean hasColorData() {
+            return this.hasColorData;
+        }
+
+        /**
+         * @return content hash of copied color data, null if it was not loaded
+         */
+        public @Nullable String computeContentHash() {
+            if (!this.hasColorData) {
+                return null;
+            }
+
+            return CanvasColorCodec.hash(this.color, this.fillColor, this.width, this.height);
+        }
+
+        /**
+         * @return encoded color data, or null if it was not loaded and not changed
+         */
+        public @Nullable CompoundTag encodeColorData() {
+            if (!this.hasColorData) {
+                return null;
+            }
+
+            CompoundTag colorTag = new CompoundTag();
+            writeColorTags(colorTag, this.color, this.fillColor, this.width, this.height, this.colorEncoding);
+
+            return colorTag;
+        }
+    }
+
+    /**
+     * RAW keeps legacy 4-bytes per pixel format,
+     * INDEXED uses palette when there are not
+     * too many colors, or RGB; when saved, filtered
+     * and compressed planes if they're smaller
+     */
+    public enum ColorEncoding {
+        RAW,
+        INDEXED
     }
 
     public enum Resolution {
         x16(16),
         x32(32),
-        x64(64);
+        x64(64),
+        x128(128),
+        x256(256);
         private static final Map<Integer, Resolution> lookup = new HashMap<>();
 
         static {
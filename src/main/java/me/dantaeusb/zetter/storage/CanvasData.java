@@ -8,7 +8,6 @@ import me.dantaeusb.zetter.menu.artisttable.CanvasCombinationAction;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.network.FriendlyByteBuf;
 
-import java.nio.ByteBuffer;
 import java.util.HashMap;
 
 /**
@@ -48,10 +47,6 @@ public class CanvasData extends AbstractCanvasData {
         return ZetterCanvasTypes.CANVAS.get();
     }
 
-    public CompoundTag save(CompoundTag compoundTag) {
-        return super.save(compoundTag);
-    }
-
     private static class CanvasCanvasDataBuilder implements CanvasDataBuilder<CanvasData> {
         /**
          * Create empty canvas data filled with canvas color
@@ -61,13 +56,18 @@ public class CanvasData extends AbstractCanvasData {
          * @return
          */
         public CanvasData createFresh(Resolution resolution, int width, int height) {
-            byte[] color = new byte[width * height * 4];
-            ByteBuffer defaultColorBuffer = ByteBuffer.wrap(color);
-
-            for (int x = 0; x < width * height; x++) {
-                defaultColorBuffer.putInt(x * 4, Helper.CANVAS_COLOR);
-            }
+            return this.createFill(resolution, width, height, Helper.CANVAS_COLOR);
+        }
 
+        /**
+         * Create canvas from existing data
+         * @param resolution
+         * @param width
+         * @param height
+         * @param color
+         * @return
+         */
+        public CanvasData createWrap(Resolution resolution, int width, int height, int[] color) {
             final CanvasData newCanvas = new CanvasData();
             newCanvas.wrapData(resolution, width, height, color);
 
@@ -75,16 +75,17 @@ public class CanvasData extends AbstractCanvasData {
         }
 
         /**
-         * Create canvas from existing data
+         * Create canvas filled with single color,
+         * color array is allocated on first change
          * @param resolution
          * @param width
          * @param height
-         * @param color
+         * @param fillColor
          * @return
          */
-        public CanvasData createWrap(Resolution resolution, int width, int height, byte[] color) {
+        public CanvasData createFill(Resolution resolution, int width, int height, int fillColor) {
             final CanvasData newCanvas = new CanvasData();
-            newCanvas.wrapData(resolution, width, height, color);
+            newCanvas.wrapFill(resolution, width, height, fillColor);
 
             return newCanvas;
         }
@@ -102,7 +103,7 @@ public class CanvasData extends AbstractCanvasData {
                 newCanvas.resolution = Helper.getResolution();
             }
 
-            newCanvas.updateColorData(compoundTag.getByteArray(NBT_TAG_COLOR));
+            newCanvas.loadColorData(compoundTag);
 
             return newCanvas;
         }
@@ -120,17 +121,7 @@ public class CanvasData extends AbstractCanvasData {
             final int width = networkBuffer.readInt();
             final int height = networkBuffer.readInt();
 
-            final int colorDataSize = networkBuffer.readInt();
-            ByteBuffer colorData = networkBuffer.readBytes(colorDataSize).nioBuffer();
-            byte[] unwrappedColorData = new byte[width * height * 4];
-            colorData.get(unwrappedColorData);
-
-            newCanvas.wrapData(
-                resolution,
-                width,
-                height,
-                unwrappedColorData
-            );
+            newCanvas.readColorPacketData(resolution, width, height, networkBuffer);
 
             return newCanvas;
         }
@@ -139,8 +130,7 @@ public class CanvasData extends AbstractCanvasData {
             networkBuffer.writeByte(canvasData.resolution.ordinal());
             networkBuffer.writeInt(canvasData.width);
             networkBuffer.writeInt(canvasData.height);
-            networkBuffer.writeInt(canvasData.getColorDataBuffer().remaining());
-            networkBuffer.writeBytes(canvasData.getColorDataBuffer());
+            canvasData.writeColorPacketData(networkBuffer);
         }
     }
 }
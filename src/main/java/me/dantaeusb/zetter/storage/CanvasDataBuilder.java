@@ -6,7 +6,8 @@ import net.minecraft.network.FriendlyByteBuf;
 
 public interface CanvasDataBuilder<T extends AbstractCanvasData> {
     T createFresh(AbstractCanvasData.Resolution resolution, int width, int height);
-    T createWrap(AbstractCanvasData.Resolution resolution, int width, int height, byte[] color);
+    T createWrap(AbstractCanvasData.Resolution resolution, int width, int height, int[] color);
+    T createFill(AbstractCanvasData.Resolution resolution, int width, int height, int fillColor);
     T load(CompoundTag compoundTag);
     T readPacketData(FriendlyByteBuf byteBuf);
     void writePacketData(T canvasData, FriendlyByteBuf byteBuf);
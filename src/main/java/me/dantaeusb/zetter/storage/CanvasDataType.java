@@ -22,10 +22,14 @@ public class CanvasDataType<T extends AbstractCanvasData> {
         return this.builder.createFresh(resolution, width, height);
     }
 
-    public T createWrap(AbstractCanvasData.Resolution resolution, int width, int height, byte[] color) {
+    public T createWrap(AbstractCanvasData.Resolution resolution, int width, int height, int[] color) {
         return this.builder.createWrap(resolution, width, height, color);
     }
 
+    public T createFill(AbstractCanvasData.Resolution resolution, int width, int height, int fillColor) {
+        return this.builder.createFill(resolution, width, height, fillColor);
+    }
+
     public T loadFromNbt(CompoundTag compoundTag) {
         return this.builder.load(compoundTag);
     }
@@ -0,0 +1,75 @@
+package me.dantaeusb.zetter.storage;
+
+import me.dantaeusb.zetter.Zetter;
+import me.dantaeusb.zetter.core.Helper;
+import me.dantaeusb.zetter.core.ZetterCanvasTypes;
+import net.minecraft.nbt.CompoundTag;
+
+/**
+ * Brings canvas data saved by older versions to the current
+ * format, so loading doesn't need to check for old tags.
+ *
+ * Archived canvases are upgraded once when archives are opened,
+ * canvases saved as separate files are upgraded on load.
+ *
+ * @todo: [MED] Remove deprecated sections on next release
+ */
+public class CanvasDataUpgrader {
+    /**
+     * Rewrite deprecated tags in place
+     *
+     * @param compoundTag saved canvas properties
+     * @return true if anything was changed and should be saved
+     */
+    public static boolean upgrade(CompoundTag compoundTag) {
+        boolean upgraded = false;
+        String canvasResourceLocation = compoundTag.getString(AbstractCanvasData.NBT_TAG_TYPE);
+
+        if (canvasResourceLocation.isEmpty()) {
+            if (!compoundTag.contains(AbstractCanvasData.NBT_TAG_TYPE_DEPRECATED)) {
+                throw new IllegalStateException("Cannot find canvas type");
+            }
+
+            final int canvasTypeInt = compoundTag.getInt(AbstractCanvasData.NBT_TAG_TYPE_DEPRECATED);
+
+            switch (canvasTypeInt) {
+                case 1:
+                    canvasResourceLocation = ZetterCanvasTypes.CANVAS.get().resourceLocation.toString();
+                    break;
+                case 0:
+                case 2:
+                default:
+                    canvasResourceLocation = ZetterCanvasTypes.PAINTING.get().resourceLocation.toString();
+                    break;
+            }
+
+            compoundTag.remove(AbstractCanvasData.NBT_TAG_TYPE_DEPRECATED);
+            upgraded = true;
+        }
+
+        // Minor beta versions were saving data without modid separator
+        if (!canvasResourceLocation.contains(":")) {
+            canvasResourceLocation = Zetter.MOD_ID + ":" + canvasResourceLocation;
+            upgraded = true;
+        }
+
+        if (upgraded) {
+            compoundTag.putString(AbstractCanvasData.NBT_TAG_TYPE, canvasResourceLocation);
+        }
+
+        if (canvasResourceLocation.equals(ZetterCanvasTypes.CANVAS.get().resourceLocation.toString())) {
+            if (!compoundTag.contains(AbstractCanvasData.NBT_TAG_RESOLUTION)) {
+                compoundTag.putInt(AbstractCanvasData.NBT_TAG_RESOLUTION, Helper.getResolution().ordinal());
+                upgraded = true;
+            }
+        } else if (canvasResourceLocation.equals(ZetterCanvasTypes.PAINTING.get().resourceLocation.toString())) {
+            // Author will be restored when player is online, see PaintingData#correctData
+            if (!compoundTag.contains(PaintingData.NBT_TAG_AUTHOR_UUID)) {
+                compoundTag.putUUID(PaintingData.NBT_TAG_AUTHOR_UUID, PaintingData.FALLBACK_UUID);
+                upgraded = true;
+            }
+        }
+
+        return upgraded;
+    }
+}
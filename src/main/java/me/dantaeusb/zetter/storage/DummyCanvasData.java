@@ -7,8 +7,6 @@ import me.dantaeusb.zetter.core.ZetterCanvasTypes;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.network.FriendlyByteBuf;
 
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 
 /**
  * It's not enough to just init data, we need to register it with
@@ -36,14 +34,12 @@ public class DummyCanvasData extends AbstractCanvasData {
 
     public static DummyCanvasData createDummy(Resolution resolution, int width, int height) {
 
-        byte[] color = new byte[width * height * 4];
-        ByteBuffer defaultColorBuffer = ByteBuffer.wrap(color);
+        int[] color = new int[width * height];
 
         final int halfResolution = resolution.getNumeric() / 2;
 
         for (int x = 0; x < width * height; x++) {
-            defaultColorBuffer.putInt(
-                x * 4,
+            color[x] = (
                 ((x / width) % resolution.getNumeric() >= halfResolution ?
                     ((x % resolution.getNumeric()) < halfResolution ?
                         Helper.DUMMY_PINK_COLOR :
@@ -63,12 +59,12 @@ public class DummyCanvasData extends AbstractCanvasData {
         return newDummyCanvas;
     }
 
-    public void updateColorData(byte[] color) {
+    public void updateColorData(int[] color) {
         // Don't check size mismatch cause we might use it as combined canvas
 
         this.color = color;
-        this.canvasBuffer = ByteBuffer.wrap(this.color);
-        this.canvasBuffer.order(ByteOrder.BIG_ENDIAN);
+
+        this.markAllTilesChanged();
     }
 
     // All dummy canvases are not managed, they are not synced over the net and manually destroyed
@@ -93,13 +89,20 @@ public class DummyCanvasData extends AbstractCanvasData {
             return DummyCanvasData.createDummy(resolution, width, height);
         }
 
-        public DummyCanvasData createWrap(Resolution resolution, int width, int height, byte[] color) {
+        public DummyCanvasData createWrap(Resolution resolution, int width, int height, int[] color) {
             final DummyCanvasData newCanvas = new DummyCanvasData();
             newCanvas.wrapData(resolution, width, height, color);
 
             return newCanvas;
         }
 
+        public DummyCanvasData createFill(Resolution resolution, int width, int height, int fillColor) {
+            final DummyCanvasData newCanvas = new DummyCanvasData();
+            newCanvas.wrapFill(resolution, width, height, fillColor);
+
+            return newCanvas;
+        }
+
         /**
          * @param compoundTag
          * @return
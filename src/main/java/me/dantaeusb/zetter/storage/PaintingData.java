@@ -10,7 +10,6 @@ import net.minecraft.network.FriendlyByteBuf;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.server.level.ServerLevel;
 
-import java.nio.ByteBuffer;
 import java.util.Objects;
 import java.util.UUID;
 
@@ -109,15 +108,14 @@ public class PaintingData extends AbstractCanvasData {
         }
     }
 
-    public CompoundTag save(CompoundTag compoundTag) {
-        super.save(compoundTag);
+    @Override
+    protected void saveProperties(CompoundTag compoundTag) {
+        super.saveProperties(compoundTag);
 
         compoundTag.putUUID(NBT_TAG_AUTHOR_UUID, this.authorUuid);
         compoundTag.putString(NBT_TAG_AUTHOR_NAME, this.authorName);
         compoundTag.putString(NBT_TAG_NAME, this.name);
         compoundTag.putBoolean(NBT_TAG_BANNED, this.banned);
-
-        return compoundTag;
     }
 
     private static class PaintingDataBuilder implements CanvasDataBuilder<PaintingData> {
@@ -130,23 +128,19 @@ public class PaintingData extends AbstractCanvasData {
          * @return
          */
         public PaintingData createFresh(Resolution resolution, int width, int height) {
-            final PaintingData newPainting = new PaintingData();
-
-            byte[] color = new byte[width * height * 4];
-            ByteBuffer defaultColorBuffer = ByteBuffer.wrap(color);
-
-            for (int x = 0; x < width * height; x++) {
-                defaultColorBuffer.putInt(x * 4, Helper.CANVAS_COLOR);
-            }
+            return this.createFill(resolution, width, height, Helper.CANVAS_COLOR);
+        }
 
+        public PaintingData createWrap(Resolution resolution, int width, int height, int[] color) {
+            final PaintingData newPainting = new PaintingData();
             newPainting.wrapData(resolution, width, height, color);
 
             return newPainting;
         }
 
-        public PaintingData createWrap(Resolution resolution, int width, int height, byte[] color) {
+        public PaintingData createFill(Resolution resolution, int width, int height, int fillColor) {
             final PaintingData newPainting = new PaintingData();
-            newPainting.wrapData(resolution, width, height, color);
+            newPainting.wrapFill(resolution, width, height, fillColor);
 
             return newPainting;
         }
@@ -164,7 +158,7 @@ public class PaintingData extends AbstractCanvasData {
             int resolutionOrdinal = compoundTag.getInt(NBT_TAG_RESOLUTION);
             newPainting.resolution = Resolution.values()[resolutionOrdinal];
 
-            newPainting.updateColorData(compoundTag.getByteArray(NBT_TAG_COLOR));
+            newPainting.loadColorData(compoundTag);
 
             if (compoundTag.contains(NBT_TAG_AUTHOR_UUID)) {
                 newPainting.authorUuid = compoundTag.getUUID(NBT_TAG_AUTHOR_UUID);
@@ -192,17 +186,7 @@ public class PaintingData extends AbstractCanvasData {
             final int width = networkBuffer.readInt();
             final int height = networkBuffer.readInt();
 
-            final int colorDataSize = networkBuffer.readInt();
-            ByteBuffer colorData = networkBuffer.readBytes(colorDataSize).nioBuffer();
-            byte[] unwrappedColorData = new byte[width * height * 4];
-            colorData.get(unwrappedColorData);
-
-            newPainting.wrapData(
-                resolution,
-                width,
-                height,
-                unwrappedColorData
-            );
+            newPainting.readColorPacketData(resolution, width, height, networkBuffer);
 
             final UUID authorUuid = networkBuffer.readUUID();
             final String authorName = networkBuffer.readUtf(64);
@@ -214,6 +198,9 @@ public class PaintingData extends AbstractCanvasData {
                 name
             );
 
+            // Same as server's, client can use it as a cache key
+            newPainting.contentHash = networkBuffer.readUtf(64);
+
             return newPainting;
         }
 
@@ -221,14 +208,14 @@ public class PaintingData extends AbstractCanvasData {
             networkBuffer.writeByte(canvasData.resolution.ordinal());
             networkBuffer.writeInt(canvasData.width);
             networkBuffer.writeInt(canvasData.height);
-            networkBuffer.writeInt(canvasData.getColorDataBuffer().remaining());
-            networkBuffer.writeBytes(canvasData.getColorDataBuffer());
+            canvasData.writeColorPacketData(networkBuffer);
 
             // @todo: [LOW] Compatibility code, remove on release
             networkBuffer.writeUUID(Objects.requireNonNullElse(canvasData.authorUuid, FALLBACK_UUID));
 
             networkBuffer.writeUtf(canvasData.authorName, 64);
             networkBuffer.writeUtf(canvasData.name, 32);
+            networkBuffer.writeUtf(canvasData.getContentHash(), 64);
         }
     }
 }
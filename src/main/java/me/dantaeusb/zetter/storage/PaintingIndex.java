@@ -0,0 +1,217 @@
+package me.dantaeusb.zetter.storage;
+
+import me.dantaeusb.zetter.Zetter;
+import me.dantaeusb.zetter.capability.canvastracker.CanvasServerTracker;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.nbt.Tag;
+import net.minecraft.world.level.saveddata.SavedData;
+
+import javax.annotation.Nullable;
+import java.util.*;
+
+/**
+ * Keeps painting titles and authors, so paintings
+ * could be found by them without loading every painting.
+ *
+ * Only entries are saved, lookup maps are
+ * built when index is loaded.
+ *
+ * Updated when painting is registered
+ * @see CanvasServerTracker#registerCanvasData
+ */
+public class PaintingIndex extends SavedData {
+    public static final String CODE = Zetter.MOD_ID + "_painting_index";
+
+    private static final String NBT_TAG_ENTRIES = "Entries";
+    private static final String NBT_TAG_ID = "Id";
+    private static final String NBT_TAG_TITLE = "Title";
+    private static final String NBT_TAG_AUTHOR_UUID = "AuthorUuid";
+    private static final String NBT_TAG_AUTHOR_NAME = "AuthorName";
+
+    private final Map<Integer, Entry> entries = new HashMap<>();
+
+    private final TreeMap<String, TreeSet<Integer>> byTitle = new TreeMap<>();
+    private final TreeMap<UUID, TreeSet<Integer>> byAuthorUuid = new TreeMap<>();
+    private final TreeMap<String, TreeSet<Integer>> byAuthorName = new TreeMap<>();
+
+    public PaintingIndex() {
+    }
+
+    public void put(int paintingId, PaintingData paintingData) {
+        this.remove(paintingId);
+
+        Entry entry = new Entry(paintingData.getPaintingName(), paintingData.getAuthorUuid(), paintingData.getAuthorName());
+        this.entries.put(paintingId, entry);
+        this.addToLookup(paintingId, entry);
+
+        this.setDirty();
+    }
+
+    public void remove(int paintingId) {
+        Entry entry = this.entries.remove(paintingId);
+
+        if (entry == null) {
+            return;
+        }
+
+        removeFromLookup(this.byTitle, entry.title, paintingId);
+        removeFromLookup(this.byAuthorUuid, entry.authorUuid, paintingId);
+        removeFromLookup(this.byAuthorName, normalizeName(entry.authorName), paintingId);
+
+        this.setDirty();
+    }
+
+    public boolean contains(int paintingId) {
+        return this.entries.containsKey(paintingId);
+    }
+
+    public int size() {
+        return this.entries.size();
+    }
+
+    public @Nullable String getTitle(int paintingId) {
+        Entry entry = this.entries.get(paintingId);
+
+        return entry != null ? entry.title : null;
+    }
+
+    public @Nullable UUID getAuthorUuid(int paintingId) {
+        Entry entry = this.entries.get(paintingId);
+
+        return entry != null ? entry.authorUuid : null;
+    }
+
+    public @Nullable String getAuthorName(int paintingId) {
+        Entry entry = this.entries.get(paintingId);
+
+        return entry != null ? entry.authorName : null;
+    }
+
+    /**
+     * If there are few paintings with the same
+     * title, the oldest one is returned
+     *
+     * @param title
+     * @return
+     */
+    public @Nullable Integer findByTitle(String title) {
+        TreeSet<Integer> paintingIds = this.byTitle.get(title);
+
+        return paintingIds != null ? paintingIds.first() : null;
+    }
+
+    public Collection<Integer> findByAuthor(UUID authorUuid) {
+        TreeSet<Integer> paintingIds = this.byAuthorUuid.get(authorUuid);
+
+        return paintingIds != null ? Collections.unmodifiableSet(paintingIds) : Collections.emptySet();
+    }
+
+    /**
+     * Author names are not case-sensitive
+     * @param authorName
+     * @return
+     */
+    public Collection<Integer> findByAuthorName(String authorName) {
+        TreeSet<Integer> paintingIds = this.byAuthorName.get(normalizeName(authorName));
+
+        return paintingIds != null ? Collections.unmodifiableSet(paintingIds) : Collections.emptySet();
+    }
+
+    /**
+     * Titles starting with given prefix, in alphabetical order
+     *
+     * @param prefix
+     * @param limit
+     * @return
+     */
+    public List<String> getTitlesStartingWith(String prefix, int limit) {
+        List<String> titles = new ArrayList<>();
+
+        for (String title : this.byTitle.tailMap(prefix, true).keySet()) {
+            if (!title.startsWith(prefix) || titles.size() >= limit) {
+                break;
+            }
+
+            titles.add(title);
+        }
+
+        return titles;
+    }
+
+    private void addToLookup(int paintingId, Entry entry) {
+        this.byTitle.computeIfAbsent(entry.title, k -> new TreeSet<>()).add(paintingId);
+        this.byAuthorUuid.computeIfAbsent(entry.authorUuid, k -> new TreeSet<>()).add(paintingId);
+        this.byAuthorName.computeIfAbsent(normalizeName(entry.authorName), k -> new TreeSet<>()).add(paintingId);
+    }
+
+    private static <K> void removeFromLookup(TreeMap<K, TreeSet<Integer>> lookup, K key, int paintingId) {
+        TreeSet<Integer> paintingIds = lookup.get(key);
+
+        if (paintingIds == null) {
+            return;
+        }
+
+        paintingIds.remove(paintingId);
+
+        if (paintingIds.isEmpty()) {
+            lookup.remove(key);
+        }
+    }
+
+    private static String normalizeName(String authorName) {
+        return authorName.toLowerCase(Locale.ROOT);
+    }
+
+    /*
+     * Serialization
+     */
+
+    public static PaintingIndex load(CompoundTag compoundTag) {
+        PaintingIndex index = new PaintingIndex();
+        ListTag entriesTag = compoundTag.getList(NBT_TAG_ENTRIES, Tag.TAG_COMPOUND);
+
+        for (int i = 0; i < entriesTag.size(); i++) {
+            CompoundTag entryTag = entriesTag.getCompound(i);
+
+            final int paintingId = entryTag.getInt(NBT_TAG_ID);
+            Entry entry = new Entry(
+                entryTag.getString(NBT_TAG_TITLE),
+                entryTag.getUUID(NBT_TAG_AUTHOR_UUID),
+                entryTag.getString(NBT_TAG_AUTHOR_NAME)
+            );
+
+            index.entries.put(paintingId, entry);
+            index.addToLookup(paintingId, entry);
+        }
+
+        return index;
+    }
+
+    @Override
+    public CompoundTag save(CompoundTag compoundTag) {
+        ListTag entriesTag = new ListTag();
+
+        for (Map.Entry<Integer, Entry> entry : this.entries.entrySet()) {
+            CompoundTag entryTag = new CompoundTag();
+            entryTag.putInt(NBT_TAG_ID, entry.getKey());
+            entryTag.putString(NBT_TAG_TITLE, entry.getValue().title);
+            entryTag.putUUID(NBT_TAG_AUTHOR_UUID, entry.getValue().authorUuid);
+            entryTag.putString(NBT_TAG_AUTHOR_NAME, entry.getValue().authorName);
+
+            entriesTag.add(entryTag);
+        }
+
+        compoundTag.put(NBT_TAG_ENTRIES, entriesTag);
+
+        return compoundTag;
+    }
+
+    private record Entry(String title, UUID authorUuid, String authorName) {
+        private Entry {
+            title = title != null ? title : "";
+            authorUuid = authorUuid != null ? authorUuid : PaintingData.FALLBACK_UUID;
+            authorName = authorName != null ? authorName : "";
+        }
+    }
+}
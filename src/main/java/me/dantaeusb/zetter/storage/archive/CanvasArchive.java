@@ -0,0 +1,334 @@
+package me.dantaeusb.zetter.storage.archive;
+
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.NbtAccounter;
+import net.minecraft.nbt.NbtIo;
+
+import javax.annotation.Nullable;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.zip.DataFormatException;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+/**
+ * Single archive file which keeps up to {@link #SLOTS}
+ * canvases, works similar to region files.
+ *
+ * File is split into sectors of {@link #SECTOR_SIZE} bytes,
+ * first sectors are the header: for every slot there's
+ * an offset and length of the entry, in sectors.
+ *
+ * Every entry is: compressed length (int), compression (byte),
+ * uncompressed length (int), deflated NBT. If deflate does not
+ * make entry smaller (color data is compressed already), NBT
+ * is stored as is.
+ *
+ * Entries are read from memory-mapped file, and every
+ * write goes to newly allocated sectors, which are forced
+ * to disk before header points to them. Old sectors
+ * are freed only after header is updated, so interrupted
+ * write won't break existing data.
+ */
+public class CanvasArchive implements Closeable {
+    public static final int SLOTS = 1024;
+    public static final int SECTOR_SIZE = 4096;
+
+    private static final int HEADER_ENTRY_SIZE = 8;
+    private static final int HEADER_SECTORS = SLOTS * HEADER_ENTRY_SIZE / SECTOR_SIZE;
+    private static final int ENTRY_HEADER_SIZE = 9;
+
+    /**
+     * Largest canvas is 2048x2048 pixels, 16 MiB of color data,
+     * anything larger is a broken entry
+     */
+    private static final int MAX_UNCOMPRESSED_LENGTH = 64 * 1024 * 1024;
+
+    private static final byte COMPRESSION_NONE = 0;
+    private static final byte COMPRESSION_DEFLATE = 1;
+
+    private final Path path;
+    private final FileChannel channel;
+
+    private final int[] sectorOffsets = new int[SLOTS];
+    private final int[] sectorCounts = new int[SLOTS];
+    private final BitSet usedSectors = new BitSet();
+
+    private @Nullable MappedByteBuffer mapped;
+
+    public CanvasArchive(Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        this.usedSectors.set(0, HEADER_SECTORS);
+
+        if (this.channel.size() < (long) HEADER_SECTORS * SECTOR_SIZE) {
+            this.channel.write(ByteBuffer.allocate(HEADER_SECTORS * SECTOR_SIZE), 0);
+            return;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SECTORS * SECTOR_SIZE);
+        this.channel.read(header, 0);
+        header.flip();
+
+        final long fileSectors = this.channel.size() / SECTOR_SIZE;
+
+        for (int slot = 0; slot < SLOTS; slot++) {
+            final int sectorOffset = header.getInt();
+            final int sectorCount = header.getInt();
+
+            if (sectorCount == 0) {
+                continue;
+            }
+
+            if (sectorOffset < HEADER_SECTORS || sectorOffset + (long) sectorCount > fileSectors) {
+                // Truncated or broken entry, treat as empty
+                continue;
+            }
+
+            this.sectorOffsets[slot] = sectorOffset;
+            this.sectorCounts[slot] = sectorCount;
+            this.usedSectors.set(sectorOffset, sectorOffset + sectorCount);
+        }
+    }
+
+    public Path getPath() {
+        return this.path;
+    }
+
+    public synchronized boolean has(int slot) {
+        return this.sectorCounts[slot] != 0;
+    }
+
+    public synchronized boolean isEmpty() {
+        for (int sectorCount : this.sectorCounts) {
+            if (sectorCount != 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Read entry from the mapped file
+     * @param slot
+     * @return null if slot is empty
+     * @throws IOException
+     */
+    public synchronized @Nullable CompoundTag read(int slot) throws IOException {
+        if (this.sectorCounts[slot] == 0) {
+            return null;
+        }
+
+        final long position = (long) this.sectorOffsets[slot] * SECTOR_SIZE;
+        final long length = (long) this.sectorCounts[slot] * SECTOR_SIZE;
+
+        if (length > ENTRY_HEADER_SIZE + MAX_UNCOMPRESSED_LENGTH + SECTOR_SIZE) {
+            throw new IOException("Broken entry in slot " + slot + " of " + this.path);
+        }
+
+        ByteBuffer entry = this.getEntry(position, (int) length);
+
+        final int compressedLength = entry.getInt();
+        final byte compression = entry.get();
+        final int uncompressedLength = entry.getInt();
+
+        if (compression != COMPRESSION_DEFLATE && compression != COMPRESSION_NONE) {
+            throw new IOException("Unknown compression " + compression + " in slot " + slot + " of " + this.path);
+        }
+
+        if (compressedLength < 0 || compressedLength > entry.remaining()) {
+            throw new IOException("Broken entry in slot " + slot + " of " + this.path);
+        }
+
+        if (uncompressedLength < 0 || uncompressedLength > MAX_UNCOMPRESSED_LENGTH) {
+            throw new IOException("Broken entry in slot " + slot + " of " + this.path);
+        }
+
+        byte[] uncompressed = new byte[uncompressedLength];
+
+        if (compression == COMPRESSION_NONE) {
+            if (compressedLength != uncompressedLength) {
+                throw new IOException("Broken entry in slot " + slot + " of " + this.path);
+            }
+
+            entry.get(uncompressed);
+
+            return NbtIo.read(new DataInputStream(new ByteArrayInputStream(uncompressed)), NbtAccounter.UNLIMITED);
+        }
+        Inflater inflater = new Inflater();
+
+        try {
+            inflater.setInput(entry.limit(ENTRY_HEADER_SIZE + compressedLength));
+            int inflated = 0;
+
+            while (inflated < uncompressedLength && !inflater.finished()) {
+                inflated += inflater.inflate(uncompressed, inflated, uncompressedLength - inflated);
+
+                if (inflater.needsInput()) {
+                    break;
+                }
+            }
+
+            if (inflated != uncompressedLength) {
+                throw new IOException("Broken entry in slot " + slot + " of " + this.path);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Broken entry in slot " + slot + " of " + this.path, e);
+        } finally {
+            inflater.end();
+        }
+
+        return NbtIo.read(new DataInputStream(new ByteArrayInputStream(uncompressed)), NbtAccounter.UNLIMITED);
+    }
+
+    /**
+     * Write entry to the new sectors, padded
+     * to the sector size, and update header
+     *
+     * @param slot
+     * @param compoundTag
+     * @throws IOException
+     */
+    public synchronized void write(int slot, CompoundTag compoundTag) throws IOException {
+        ByteArrayOutputStream uncompressedStream = new ByteArrayOutputStream();
+        NbtIo.write(compoundTag, new DataOutputStream(uncompressedStream));
+        final int uncompressedLength = uncompressedStream.size();
+
+        ByteArrayOutputStream compressedStream = new ByteArrayOutputStream(uncompressedLength / 2);
+        try (DeflaterOutputStream deflaterStream = new DeflaterOutputStream(compressedStream)) {
+            uncompressedStream.writeTo(deflaterStream);
+        }
+
+        final boolean deflated = compressedStream.size() < uncompressedLength;
+        final int compressedLength = deflated ? compressedStream.size() : uncompressedLength;
+        final int sectorCount = (ENTRY_HEADER_SIZE + compressedLength + SECTOR_SIZE - 1) / SECTOR_SIZE;
+
+        ByteBuffer entry = ByteBuffer.allocate(sectorCount * SECTOR_SIZE);
+        entry.putInt(compressedLength);
+        entry.put(deflated ? COMPRESSION_DEFLATE : COMPRESSION_NONE);
+        entry.putInt(uncompressedLength);
+        entry.put(deflated ? compressedStream.toByteArray() : uncompressedStream.toByteArray());
+        entry.rewind();
+
+        final int sectorOffset = this.allocateSectors(sectorCount);
+        this.writeFully(entry, (long) sectorOffset * SECTOR_SIZE);
+
+        // Entry should be on disk before header points to it
+        this.channel.force(false);
+
+        this.updateSlot(slot, sectorOffset, sectorCount);
+    }
+
+    public synchronized void remove(int slot) throws IOException {
+        if (this.sectorCounts[slot] == 0) {
+            return;
+        }
+
+        this.updateSlot(slot, 0, 0);
+    }
+
+    /**
+     * Write data to disk, called when
+     * the level is saved
+     * @throws IOException
+     */
+    public synchronized void flush() throws IOException {
+        this.channel.force(true);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        this.mapped = null;
+        this.channel.force(true);
+        this.channel.close();
+    }
+
+    private void updateSlot(int slot, int sectorOffset, int sectorCount) throws IOException {
+        ByteBuffer headerEntry = ByteBuffer.allocate(HEADER_ENTRY_SIZE);
+        headerEntry.putInt(sectorOffset);
+        headerEntry.putInt(sectorCount);
+        headerEntry.rewind();
+
+        this.writeFully(headerEntry, (long) slot * HEADER_ENTRY_SIZE);
+
+        final int oldSectorOffset = this.sectorOffsets[slot];
+        final int oldSectorCount = this.sectorCounts[slot];
+
+        this.sectorOffsets[slot] = sectorOffset;
+        this.sectorCounts[slot] = sectorCount;
+
+        if (oldSectorCount != 0) {
+            this.usedSectors.clear(oldSectorOffset, oldSectorOffset + oldSectorCount);
+        }
+    }
+
+    /**
+     * First fit, if there's no gap large enough,
+     * sectors are appended to the end of file
+     *
+     * @param sectorCount
+     * @return
+     */
+    private int allocateSectors(int sectorCount) {
+        int start = this.usedSectors.nextClearBit(HEADER_SECTORS);
+
+        while (true) {
+            final int end = this.usedSectors.nextSetBit(start);
+
+            if (end == -1 || end - start >= sectorCount) {
+                break;
+            }
+
+            start = this.usedSectors.nextClearBit(end);
+        }
+
+        this.usedSectors.set(start, start + sectorCount);
+
+        return start;
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += this.channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * File grows when entries are appended. Whole file
+     * is mapped again only when it's at least twice as
+     * large as mapping, so old mappings which are waiting
+     * for GC take no more than the file itself; entries
+     * after the mapping are mapped one by one until then.
+     * Mapping can't be larger than 2 GiB, entries after
+     * that are always mapped one by one
+     *
+     * @param position
+     * @param length
+     * @return
+     * @throws IOException
+     */
+    private ByteBuffer getEntry(long position, int length) throws IOException {
+        if (position + length > Integer.MAX_VALUE) {
+            return this.channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        }
+
+        if (this.mapped == null || this.mapped.capacity() < position + length) {
+            final long fileSize = Math.min(this.channel.size(), Integer.MAX_VALUE);
+
+            if (this.mapped != null && fileSize < 2L * this.mapped.capacity()) {
+                return this.channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            }
+
+            this.mapped = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+        }
+
+        return this.mapped.slice((int) position, length);
+    }
+}
@@ -0,0 +1,943 @@
+package me.dantaeusb.zetter.storage.archive;
+
+import me.dantaeusb.zetter.Zetter;
+import me.dantaeusb.zetter.storage.AbstractCanvasData;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.NbtIo;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Keeps canvases packed in a few archive files instead
+ * of a separate .dat file for every canvas.
+ *
+ * Canvas code is split into prefix and numeric id,
+ * i.e. zetter_painting_1234, prefix defines the archive
+ * name and id defines archive index and slot in it:
+ * zetter_painting.1.zca, slot 210.
+ *
+ * Color data is kept in a separate archive, zetter_painting.1.colors.zca,
+ * and loaded only when pixels are accessed, so looking up
+ * titles or authors won't load pixels of every painting.
+ *
+ * Used like DimensionDataStorage: keeps loaded canvases
+ * in memory and writes changed ones when level is saved,
+ * but writing is done by {@link CanvasSaveQueue}.
+ * If only a small part of the canvas is changed since
+ * last save, changed regions are appended to the
+ * {@link CanvasJournal} instead of writing whole canvas.
+ *
+ * Unlike DimensionDataStorage, canvases that are saved and not
+ * used are removed from memory when loaded canvases take more
+ * than memory budget, see {@link CanvasResidencyManager}.
+ *
+ * Color data of canvases that can't be changed is kept
+ * by content hash in {@link CanvasPixelStore}, so copies
+ * of the same painting are stored only once.
+ */
+public class CanvasArchiveStorage {
+    public static final String ARCHIVE_DIRECTORY = "zetter_canvases";
+    public static final String ARCHIVE_EXTENSION = ".zca";
+    public static final String COLOR_ARCHIVE_SUFFIX = ".colors";
+
+    /**
+     * Version of saved canvas properties, when it's lower
+     * than current, every archived canvas is upgraded
+     */
+    public static final int FORMAT_VERSION = 1;
+    private static final String FORMAT_FILE = "format";
+
+    private static final int COLOR_DATA_STRIPES = 256;
+
+    private static final String LEGACY_EXTENSION = ".dat";
+    private static final String LEGACY_NBT_TAG_DATA = "data";
+
+    private final Path directory;
+
+    private final Map<String, CanvasArchive> archives = new HashMap<>();
+    private final CanvasResidencyManager residency = new CanvasResidencyManager();
+
+    /**
+     * Version and properties of canvas which were saved last
+     * time, if canvas properties are the same, only changed
+     * regions since that version could be saved
+     */
+    private final Map<String, Integer> savedVersions = new HashMap<>();
+    private final Map<String, CompoundTag> savedProperties = new HashMap<>();
+
+    /**
+     * Content hash in properties written by the save queue,
+     * so archive is not read again on every write. Empty
+     * if canvas has no content hash, not known if missing.
+     */
+    private final Map<String, String> savedContentHashes = new ConcurrentHashMap<>();
+
+    /**
+     * Color data and journal are changed only by the save queue
+     * thread, and read without lock by lazy loaders on server
+     * thread. Counter of canvas stripe is odd while color data
+     * is replaced, and changed after every change, so reader
+     * could check that it read color data and journal that
+     * belong together, and read again if not.
+     */
+    private final AtomicLongArray colorDataChanges = new AtomicLongArray(COLOR_DATA_STRIPES);
+
+    private final CanvasSaveQueue saveQueue;
+    private final CanvasJournal journal;
+    private final CanvasPixelStore pixelStore;
+
+    public CanvasArchiveStorage(Path dataDirectory) throws IOException {
+        this.directory = dataDirectory.resolve(ARCHIVE_DIRECTORY);
+        Files.createDirectories(this.directory);
+
+        this.journal = new CanvasJournal(this.directory);
+        this.pixelStore = new CanvasPixelStore(this.directory);
+        this.saveQueue = new CanvasSaveQueue(this);
+    }
+
+    /**
+     * If canvas code can be kept in archive, codes should be
+     * prefix and numeric id, like zetter_canvas_12
+     * @param canvasCode
+     * @return
+     */
+    public static boolean isArchivable(String canvasCode) {
+        return getSeparatorIndex(canvasCode) != -1;
+    }
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public <T extends AbstractCanvasData> T get(Function<CompoundTag, T> reader, String canvasCode) {
+        AbstractCanvasData canvasData = this.residency.get(canvasCode);
+
+        if (canvasData != null) {
+            return (T) canvasData;
+        }
+
+        // Could be left from evicted canvas
+        this.savedVersions.remove(canvasCode);
+        this.savedProperties.remove(canvasCode);
+        this.savedContentHashes.remove(canvasCode);
+
+        try {
+            CanvasArchive archive = this.getArchive(canvasCode, false, false);
+
+            if (archive == null) {
+                return null;
+            }
+
+            CompoundTag compoundTag = archive.read(getSlot(canvasCode));
+
+            if (compoundTag == null) {
+                return null;
+            }
+
+            T loadedData = reader.apply(compoundTag);
+
+            // Color data is stored separately, load on first access
+            if (!AbstractCanvasData.hasColorData(compoundTag)) {
+                final String contentHash = AbstractCanvasData.readContentHash(compoundTag);
+
+                if (contentHash != null) {
+                    final int pixelCount = loadedData.getWidth() * loadedData.getHeight();
+                    loadedData.setSharedColorDataLoader(() -> this.pixelStore.read(contentHash, pixelCount));
+                } else {
+                    loadedData.setColorDataLoader(() -> this.readColorData(canvasCode));
+                }
+
+                this.savedVersions.put(canvasCode, loadedData.getVersion());
+                this.savedProperties.put(canvasCode, compoundTag);
+            }
+
+            this.residency.put(canvasCode, loadedData);
+
+            return loadedData;
+        } catch (Exception e) {
+            Zetter.LOG.error("Error loading canvas " + canvasCode, e);
+            return null;
+        }
+    }
+
+    public void set(String canvasCode, AbstractCanvasData canvasData) {
+        this.residency.put(canvasCode, canvasData);
+
+        // Versions are valid only for the same data object
+        this.savedVersions.remove(canvasCode);
+        this.savedProperties.remove(canvasCode);
+    }
+
+    /**
+     * Remove canvas from memory and archives,
+     * removal is queued after pending writes
+     * @param canvasCode
+     */
+    public void remove(String canvasCode) {
+        this.residency.remove(canvasCode);
+        this.savedVersions.remove(canvasCode);
+        this.savedProperties.remove(canvasCode);
+
+        this.saveQueue.submit(canvasCode, CanvasSaveTask.removal());
+    }
+
+    /**
+     * Snapshot every changed canvas, they are
+     * written by the save queue on another thread
+     */
+    public void save() {
+        for (String canvasCode : this.saveQueue.retryFailed()) {
+            // Not known what was written, so whole canvas is saved
+            this.savedVersions.remove(canvasCode);
+            this.savedProperties.remove(canvasCode);
+
+            AbstractCanvasData canvasData = this.residency.get(canvasCode);
+
+            if (canvasData != null) {
+                canvasData.setDirty(true);
+            }
+        }
+
+        for (Map.Entry<String, AbstractCanvasData> entry : this.residency.getResidentEntries()) {
+            final String canvasCode = entry.getKey();
+            final AbstractCanvasData canvasData = entry.getValue();
+
+            if (!canvasData.isDirty()) {
+                continue;
+            }
+
+            // Blank pixels would replace saved ones, canvas could be loaded again after eviction
+            if (canvasData.isColorDataLost()) {
+                Zetter.LOG.error("Color data of canvas " + canvasCode + " could not be loaded, changes are not saved");
+                canvasData.setDirty(false);
+                continue;
+            }
+
+            CanvasSaveTask task = this.createSaveTask(canvasCode, canvasData);
+
+            if (task != null) {
+                this.saveQueue.submit(canvasCode, task);
+            }
+
+            this.savedVersions.put(canvasCode, canvasData.getVersion());
+            canvasData.setDirty(false);
+        }
+    }
+
+    /**
+     * Remove least recently used canvases from memory if
+     * they take more than budget. Only saved canvases which
+     * are not waiting to be written can be removed.
+     *
+     * @param memoryBudget in bytes
+     * @param canEvict if canvas is not used by anyone
+     * @return amount of evicted canvases
+     */
+    public int evict(long memoryBudget, Predicate<String> canEvict) {
+        return this.residency.evict(
+            memoryBudget,
+            canvasCode -> !this.saveQueue.isPending(canvasCode) && canEvict.test(canvasCode)
+        );
+    }
+
+    public CanvasResidencyManager getResidency() {
+        return this.residency;
+    }
+
+    public CanvasPixelStore getPixelStore() {
+        return this.pixelStore;
+    }
+
+    /**
+     * If properties were not changed, and color data written
+     * before, and less than half of tiles changed, only
+     * changed tiles are saved, otherwise whole canvas
+     *
+     * @param canvasCode
+     * @param canvasData
+     * @return null if nothing changed
+     */
+    private @Nullable CanvasSaveTask createSaveTask(String canvasCode, AbstractCanvasData canvasData) {
+        CompoundTag propertiesTag = canvasData.createPropertiesSnapshot();
+        CompoundTag savedPropertiesTag = this.savedProperties.put(canvasCode, propertiesTag);
+        Integer savedVersion = this.savedVersions.get(canvasCode);
+
+        // Shared color data is never changed in place
+        if (
+            savedVersion == null
+            || !canvasData.isColorDataLoaded()
+            || !propertiesTag.equals(savedPropertiesTag)
+            || AbstractCanvasData.readContentHash(propertiesTag) != null
+        ) {
+            return CanvasSaveTask.full(canvasData.createSaveSnapshot());
+        }
+
+        BitSet changedTiles = canvasData.getTilesChangedSince(savedVersion);
+
+        if (changedTiles.isEmpty()) {
+            return null;
+        }
+
+        if (changedTiles.cardinality() > canvasData.getTiles().getTileCount() / 2) {
+            return CanvasSaveTask.full(canvasData.createSaveSnapshot());
+        }
+
+        return CanvasSaveTask.delta(CanvasJournal.Delta.capture(canvasData, changedTiles));
+    }
+
+    /**
+     * Wait for all canvases to be written and close archives
+     */
+    public void close() {
+        this.saveQueue.close();
+
+        try {
+            for (String canvasCode : this.journal.list()) {
+                this.compactJournal(canvasCode);
+            }
+        } catch (IOException e) {
+            Zetter.LOG.error("Could not compact canvas journals", e);
+        }
+
+        synchronized (this) {
+            for (CanvasArchive archive : this.archives.values()) {
+                try {
+                    archive.close();
+                } catch (IOException e) {
+                    Zetter.LOG.error("Could not close canvas archive " + archive.getPath(), e);
+                }
+            }
+
+            this.archives.clear();
+        }
+
+        this.pixelStore.close();
+        this.residency.clear();
+        this.savedVersions.clear();
+        this.savedProperties.clear();
+        this.savedContentHashes.clear();
+    }
+
+    /**
+     * Journals are compacted when storage is closed,
+     * if there are journals on start, server was
+     * stopped unexpectedly, apply them to color data
+     *
+     * @return amount of recovered canvases
+     */
+    public int recoverJournals() throws IOException {
+        List<String> canvasCodes = this.journal.list();
+
+        for (String canvasCode : canvasCodes) {
+            this.compactJournal(canvasCode);
+        }
+
+        return canvasCodes.size();
+    }
+
+    /**
+     * Move canvases saved as separate SavedData files to
+     * archives. Legacy files are removed only after all
+     * archives are flushed. If canvas is already archived,
+     * legacy file is ignored.
+     *
+     * @param legacyDirectory data directory of the overworld
+     * @param prefixes codes prefixes that should be migrated
+     * @param upgrader brings legacy tag to current format, returns true if tag was changed
+     * @return amount of migrated canvases
+     */
+    public int migrate(Path legacyDirectory, Collection<String> prefixes, Predicate<CompoundTag> upgrader) throws IOException {
+        List<Path> migratedFiles = new ArrayList<>();
+
+        try (DirectoryStream<Path> legacyFiles = Files.newDirectoryStream(legacyDirectory, "*" + LEGACY_EXTENSION)) {
+            for (Path legacyFile : legacyFiles) {
+                final String fileName = legacyFile.getFileName().toString();
+                final String canvasCode = fileName.substring(0, fileName.length() - LEGACY_EXTENSION.length());
+
+                if (!isArchivable(canvasCode) || !prefixes.contains(getPrefix(canvasCode))) {
+                    continue;
+                }
+
+                CanvasArchive archive = this.getArchive(canvasCode, true, false);
+                final int slot = getSlot(canvasCode);
+
+                if (archive.has(slot)) {
+                    Zetter.LOG.warn("Canvas " + canvasCode + " is already archived, legacy file ignored");
+                } else {
+                    CompoundTag legacyTag = NbtIo.readCompressed(legacyFile.toFile()).getCompound(LEGACY_NBT_TAG_DATA);
+                    upgrader.test(legacyTag);
+
+                    this.write(canvasCode, legacyTag);
+                }
+
+                migratedFiles.add(legacyFile);
+            }
+        }
+
+        if (migratedFiles.isEmpty()) {
+            return 0;
+        }
+
+        synchronized (this) {
+            for (CanvasArchive archive : this.archives.values()) {
+                archive.flush();
+            }
+        }
+
+        for (Path migratedFile : migratedFiles) {
+            Files.delete(migratedFile);
+        }
+
+        return migratedFiles.size();
+    }
+
+    /**
+     * Upgrade properties of every archived canvas once, when
+     * archives were written by older version. Archives are
+     * processed in parallel, as every archive has its own lock.
+     * Canvas that can't be read or upgraded is skipped, it's
+     * upgraded again when loaded. If archives can't be listed
+     * or opened, upgrade is repeated on next start.
+     *
+     * @param upgrader brings tag to current format, returns true if tag was changed
+     * @return amount of upgraded canvases
+     */
+    public int upgrade(Predicate<CompoundTag> upgrader) throws IOException {
+        Path formatFile = this.directory.resolve(FORMAT_FILE);
+
+        if (Files.exists(formatFile) && Integer.parseInt(Files.readString(formatFile).trim()) >= FORMAT_VERSION) {
+            return 0;
+        }
+
+        List<String> archiveNames = this.getPropertiesArchiveNames();
+
+        final int threads = Math.max(1, Math.min(archiveNames.size(), Runtime.getRuntime().availableProcessors()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "Zetter Canvas Upgrade");
+            thread.setDaemon(true);
+
+            return thread;
+        });
+
+        int upgraded = 0;
+
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+
+            for (String archiveName : archiveNames) {
+                results.add(executor.submit(() -> this.upgradeArchive(archiveName, upgrader)));
+            }
+
+            for (Future<Integer> result : results) {
+                upgraded += result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Canvas upgrade was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Could not upgrade canvases", e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+
+        Files.writeString(formatFile, Integer.toString(FORMAT_VERSION));
+
+        return upgraded;
+    }
+
+    /**
+     * Counters of shared color data are written once per
+     * save pass, if server was stopped before that, count
+     * saved canvases using every blob again
+     *
+     * @return true if counters were recounted
+     * @throws IOException
+     */
+    public boolean recoverPixels() throws IOException {
+        if (!this.pixelStore.isRecoveryNeeded()) {
+            return false;
+        }
+
+        Map<String, Integer> references = new HashMap<>();
+
+        for (String archiveName : this.getPropertiesArchiveNames()) {
+            CanvasArchive archive = this.getArchive(archiveName, false);
+
+            for (int slot = 0; slot < CanvasArchive.SLOTS; slot++) {
+                CompoundTag compoundTag = archive.read(slot);
+                final String contentHash = compoundTag != null ? AbstractCanvasData.readContentHash(compoundTag) : null;
+
+                if (contentHash != null) {
+                    references.merge(contentHash, 1, Integer::sum);
+                }
+            }
+        }
+
+        this.pixelStore.recover(references);
+
+        return true;
+    }
+
+    private List<String> getPropertiesArchiveNames() throws IOException {
+        List<String> archiveNames = new ArrayList<>();
+
+        try (DirectoryStream<Path> archiveFiles = Files.newDirectoryStream(this.directory, "*" + ARCHIVE_EXTENSION)) {
+            for (Path archiveFile : archiveFiles) {
+                final String archiveName = archiveFile.getFileName().toString();
+
+                if (!archiveName.endsWith(COLOR_ARCHIVE_SUFFIX + ARCHIVE_EXTENSION)) {
+                    archiveNames.add(archiveName);
+                }
+            }
+        }
+
+        return archiveNames;
+    }
+
+    private int upgradeArchive(String archiveName, Predicate<CompoundTag> upgrader) throws IOException {
+        CanvasArchive archive = this.getArchive(archiveName, false);
+        int upgraded = 0;
+
+        for (int slot = 0; slot < CanvasArchive.SLOTS; slot++) {
+            try {
+                CompoundTag compoundTag = archive.read(slot);
+
+                if (compoundTag != null && upgrader.test(compoundTag)) {
+                    archive.write(slot, compoundTag);
+                    upgraded++;
+                }
+            } catch (IOException | RuntimeException e) {
+                Zetter.LOG.error("Could not upgrade canvas in slot " + slot + " of " + archiveName + ", skipping it", e);
+            }
+        }
+
+        if (upgraded > 0) {
+            archive.flush();
+        }
+
+        return upgraded;
+    }
+
+    /**
+     * Color data is written first, so properties
+     * won't point to missing color data
+     *
+     * @param canvasCode
+     * @param compoundTag saved canvas, color data tags are removed from it
+     * @throws IOException
+     */
+    private void write(String canvasCode, CompoundTag compoundTag) throws IOException {
+        final int slot = getSlot(canvasCode);
+        CompoundTag colorTag = AbstractCanvasData.extractColorData(compoundTag);
+
+        if (colorTag != null) {
+            this.getArchive(canvasCode, true, true).write(slot, colorTag);
+        }
+
+        this.getArchive(canvasCode, true, false).write(slot, compoundTag);
+    }
+
+    /**
+     * Called from save queue thread.
+     *
+     * When canvas has content hash, color data goes to the pixel
+     * store: reference is added before properties are written
+     * and previous one is released after that
+     *
+     * @param canvasCode
+     * @param task
+     * @throws IOException
+     */
+    void write(String canvasCode, CanvasSaveTask task) throws IOException {
+        try {
+            this.writeTask(canvasCode, task);
+        } catch (IOException | RuntimeException e) {
+            // Not known what was written
+            this.savedContentHashes.remove(canvasCode);
+            throw e;
+        }
+    }
+
+    private void writeTask(String canvasCode, CanvasSaveTask task) throws IOException {
+        final int slot = getSlot(canvasCode);
+
+        if (task.remove) {
+            final String removedContentHash = this.getSavedContentHash(canvasCode);
+
+            this.beginColorDataChange(canvasCode);
+
+            try {
+                CanvasArchive colorArchive = this.getArchive(canvasCode, false, true);
+                CanvasArchive archive = this.getArchive(canvasCode, false, false);
+
+                if (archive != null) {
+                    archive.remove(slot);
+                }
+
+                if (colorArchive != null) {
+                    colorArchive.remove(slot);
+                }
+
+                this.journal.delete(canvasCode);
+            } finally {
+                this.endColorDataChange(canvasCode);
+            }
+
+            this.savedContentHashes.put(canvasCode, "");
+
+            if (removedContentHash != null) {
+                this.pixelStore.release(removedContentHash);
+            }
+        }
+
+        if (task.propertiesTag != null && task.contentHashPending && AbstractCanvasData.readContentHash(task.propertiesTag) == null) {
+            final String computedContentHash = this.computeContentHash(canvasCode, task);
+
+            if (computedContentHash != null) {
+                task.propertiesTag.putString(AbstractCanvasData.NBT_TAG_CONTENT_HASH, computedContentHash);
+            }
+        }
+
+        final String contentHash = task.propertiesTag != null ? AbstractCanvasData.readContentHash(task.propertiesTag) : null;
+        final String savedContentHash = task.propertiesTag != null ? this.getSavedContentHash(canvasCode) : null;
+
+        if (contentHash != null && !contentHash.equals(savedContentHash)) {
+            this.acquirePixels(canvasCode, contentHash, task.snapshot);
+        }
+
+        if (task.snapshot != null && contentHash == null) {
+            CompoundTag colorTag = task.snapshot.encodeColorData();
+
+            // Journal is relative to previous color data
+            this.beginColorDataChange(canvasCode);
+
+            try {
+                this.getArchive(canvasCode, true, true).write(slot, colorTag);
+                this.journal.delete(canvasCode);
+            } finally {
+                this.endColorDataChange(canvasCode);
+            }
+        }
+
+        if (task.delta != null) {
+            this.journal.append(canvasCode, task.delta);
+            this.markColorDataChanged(canvasCode);
+
+            if (this.journal.size(canvasCode) > (long) task.delta.getPixelCount() * 4) {
+                this.compactJournal(canvasCode);
+            }
+        }
+
+        if (task.propertiesTag != null) {
+            this.getArchive(canvasCode, true, false).write(slot, task.propertiesTag);
+            this.savedContentHashes.put(canvasCode, contentHash != null ? contentHash : "");
+        }
+
+        if (savedContentHash != null && !savedContentHash.equals(contentHash)) {
+            this.pixelStore.release(savedContentHash);
+        }
+
+        // Canvas saved before content hash was known has its own color data
+        if (contentHash != null && savedContentHash == null) {
+            this.beginColorDataChange(canvasCode);
+
+            try {
+                CanvasArchive colorArchive = this.getArchive(canvasCode, false, true);
+
+                if (colorArchive != null) {
+                    colorArchive.remove(slot);
+                }
+
+                this.journal.delete(canvasCode);
+            } finally {
+                this.endColorDataChange(canvasCode);
+            }
+        }
+    }
+
+    /**
+     * Content hash of canvas that can't be changed, from
+     * the snapshot, or from canvas own color data if it
+     * was not loaded and saved before
+     *
+     * @param canvasCode
+     * @param task
+     * @return null if there's no color data
+     * @throws IOException
+     */
+    private @Nullable String computeContentHash(String canvasCode, CanvasSaveTask task) throws IOException {
+        if (task.snapshot != null) {
+            return task.snapshot.computeContentHash();
+        }
+
+        CompoundTag colorTag = this.readColorData(canvasCode);
+
+        if (colorTag == null || task.propertiesTag == null) {
+            return null;
+        }
+
+        return AbstractCanvasData.computeContentHash(task.propertiesTag, colorTag);
+    }
+
+    /**
+     * Add reference to the shared color data, if there's
+     * no such data yet, it's taken from the snapshot, or
+     * from canvas own color data if it was saved before
+     *
+     * @param canvasCode
+     * @param contentHash
+     * @param snapshot
+     * @throws IOException
+     */
+    private void acquirePixels(String canvasCode, String contentHash, @Nullable AbstractCanvasData.SaveSnapshot snapshot) throws IOException {
+        if (this.pixelStore.acquire(contentHash)) {
+            return;
+        }
+
+        CompoundTag colorTag = snapshot != null ? snapshot.encodeColorData() : this.readColorData(canvasCode);
+
+        if (colorTag == null) {
+            throw new IOException("No color data for canvas " + canvasCode + " with content hash " + contentHash);
+        }
+
+        this.pixelStore.add(contentHash, colorTag);
+    }
+
+    private @Nullable String getSavedContentHash(String canvasCode) throws IOException {
+        String savedContentHash = this.savedContentHashes.get(canvasCode);
+
+        if (savedContentHash == null) {
+            CanvasArchive archive = this.getArchive(canvasCode, false, false);
+            CompoundTag savedTag = archive != null ? archive.read(getSlot(canvasCode)) : null;
+            String contentHash = savedTag != null ? AbstractCanvasData.readContentHash(savedTag) : null;
+
+            savedContentHash = contentHash != null ? contentHash : "";
+            this.savedContentHashes.put(canvasCode, savedContentHash);
+        }
+
+        return savedContentHash.isEmpty() ? null : savedContentHash;
+    }
+
+    /**
+     * Apply journal to color data in archive and remove journal.
+     * If process is interrupted, journal is applied again
+     * on start, which is safe as it has whole regions.
+     *
+     * For the same reason readers don't wait for compaction:
+     * journal applied to compacted color data gives the same
+     * pixels, only journal removal should be noticed by them
+     *
+     * @param canvasCode
+     * @throws IOException
+     */
+    void compactJournal(String canvasCode) throws IOException {
+        CanvasJournal.Replay replay = this.journal.read(canvasCode);
+
+        if (replay == null) {
+            return;
+        }
+
+        final int slot = getSlot(canvasCode);
+        CanvasArchive colorArchive = this.getArchive(canvasCode, false, true);
+        CompoundTag colorTag = colorArchive != null ? colorArchive.read(slot) : null;
+
+        if (colorTag == null) {
+            Zetter.LOG.error("Canvas " + canvasCode + " has journal but no color data, journal removed");
+            this.journal.delete(canvasCode);
+            this.markColorDataChanged(canvasCode);
+            return;
+        }
+
+        int[] color = AbstractCanvasData.decodeColorTag(colorTag, replay.width * replay.height);
+        replay.applyTo(color);
+
+        colorArchive.write(slot, AbstractCanvasData.encodeColorTag(color, replay.width, replay.colorEncoding));
+        colorArchive.flush();
+
+        this.journal.delete(canvasCode);
+        this.markColorDataChanged(canvasCode);
+    }
+
+    private void beginColorDataChange(String canvasCode) {
+        this.colorDataChanges.incrementAndGet(getColorDataStripe(canvasCode));
+    }
+
+    private void endColorDataChange(String canvasCode) {
+        this.colorDataChanges.incrementAndGet(getColorDataStripe(canvasCode));
+    }
+
+    private void markColorDataChanged(String canvasCode) {
+        this.colorDataChanges.addAndGet(getColorDataStripe(canvasCode), 2);
+    }
+
+    private static int getColorDataStripe(String canvasCode) {
+        return Math.floorMod(canvasCode.hashCode(), COLOR_DATA_STRIPES);
+    }
+
+    /**
+     * Called from save queue thread when
+     * every queued canvas is written. Archives
+     * are flushed outside of the lock, so lazy
+     * loaders don't wait for the disk
+     */
+    void flushArchives() {
+        List<CanvasArchive> archives;
+
+        synchronized (this) {
+            archives = new ArrayList<>(this.archives.values());
+        }
+
+        for (CanvasArchive archive : archives) {
+            try {
+                archive.flush();
+            } catch (IOException e) {
+                Zetter.LOG.error("Could not flush canvas archive " + archive.getPath(), e);
+            }
+        }
+
+        this.pixelStore.flush();
+    }
+
+    /**
+     * Called from lazy loader on server thread, color data
+     * and journal are read without lock, and read again
+     * if save queue changed them meanwhile
+     *
+     * @param canvasCode
+     * @return
+     */
+    private @Nullable CompoundTag readColorData(String canvasCode) {
+        final int stripe = getColorDataStripe(canvasCode);
+
+        try {
+            CompoundTag colorTag;
+            CanvasJournal.Replay replay;
+
+            while (true) {
+                final long changes = this.colorDataChanges.get(stripe);
+
+                // Color data is being replaced right now
+                if ((changes & 1) != 0) {
+                    Thread.yield();
+                    continue;
+                }
+
+                CanvasArchive archive = this.getArchive(canvasCode, false, true);
+
+                if (archive == null) {
+                    return null;
+                }
+
+                try {
+                    colorTag = archive.read(getSlot(canvasCode));
+                    replay = this.journal.read(canvasCode);
+                } catch (IOException e) {
+                    if (this.colorDataChanges.get(stripe) != changes) {
+                        continue;
+                    }
+
+                    throw e;
+                }
+
+                if (this.colorDataChanges.get(stripe) == changes) {
+                    break;
+                }
+            }
+
+            if (colorTag == null || replay == null) {
+                return colorTag;
+            }
+
+            int[] color = AbstractCanvasData.decodeColorTag(colorTag, replay.width * replay.height);
+            replay.applyTo(color);
+
+            return AbstractCanvasData.encodeColorTag(color, replay.width, replay.colorEncoding);
+        } catch (IOException e) {
+            Zetter.LOG.error("Error loading color data of canvas " + canvasCode, e);
+            return null;
+        }
+    }
+
+    /**
+     * @param canvasCode
+     * @param create if archive file should be created when not exists
+     * @param colorData archive with color data or with canvas properties
+     * @return
+     * @throws IOException
+     */
+    private @Nullable CanvasArchive getArchive(String canvasCode, boolean create, boolean colorData) throws IOException {
+        final String archiveName = getPrefix(canvasCode) + "." + (getId(canvasCode) / CanvasArchive.SLOTS)
+            + (colorData ? COLOR_ARCHIVE_SUFFIX : "") + ARCHIVE_EXTENSION;
+
+        return this.getArchive(archiveName, create);
+    }
+
+    private synchronized @Nullable CanvasArchive getArchive(String archiveName, boolean create) throws IOException {
+        CanvasArchive archive = this.archives.get(archiveName);
+
+        if (archive != null) {
+            return archive;
+        }
+
+        Path archivePath = this.directory.resolve(archiveName);
+
+        if (!create && !Files.exists(archivePath)) {
+            return null;
+        }
+
+        archive = new CanvasArchive(archivePath);
+        this.archives.put(archiveName, archive);
+
+        return archive;
+    }
+
+    /*
+     * Code parsing
+     */
+
+    private static int getSeparatorIndex(String canvasCode) {
+        final int separatorIndex = canvasCode.lastIndexOf('_');
+
+        if (separatorIndex <= 0 || separatorIndex == canvasCode.length() - 1 || canvasCode.length() - separatorIndex > 10) {
+            return -1;
+        }
+
+        for (int i = separatorIndex + 1; i < canvasCode.length(); i++) {
+            final char c = canvasCode.charAt(i);
+
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+        }
+
+        return separatorIndex;
+    }
+
+    /**
+     * Prefix without trailing separator
+     * @param canvasCode
+     * @return
+     */
+    private static String getPrefix(String canvasCode) {
+        return canvasCode.substring(0, getSeparatorIndex(canvasCode));
+    }
+
+    private static int getId(String canvasCode) {
+        return Integer.parseInt(canvasCode.substring(getSeparatorIndex(canvasCode) + 1));
+    }
+
+    private static int getSlot(String canvasCode) {
+        return getId(canvasCode) % CanvasArchive.SLOTS;
+    }
+}
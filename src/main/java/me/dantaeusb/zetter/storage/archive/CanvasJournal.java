@@ -0,0 +1,309 @@
+package me.dantaeusb.zetter.storage.archive;
+
+import me.dantaeusb.zetter.Zetter;
+import me.dantaeusb.zetter.storage.AbstractCanvasData;
+import me.dantaeusb.zetter.storage.util.CanvasTileTracker;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of changed canvas regions, so when only
+ * a small part of canvas is changed, we append that part
+ * instead of writing whole color data again.
+ *
+ * Journal is relative to color data in archive, it's folded
+ * into archive when it grows larger than color data itself,
+ * when storage is closed, and when server starts after a
+ * crash, so changes appended before crash are not lost.
+ *
+ * File is a header: magic, width, height, color encoding;
+ * and records: payload length, payload CRC32, payload.
+ * Payload is amount of regions, and for every region
+ * x, y, width, height and ARGB colors.
+ * Record that was not written completely is ignored.
+ */
+public class CanvasJournal {
+    public static final String JOURNAL_DIRECTORY = "journal";
+    public static final String JOURNAL_EXTENSION = ".zcj";
+
+    private static final int MAGIC = 0x5A434A31;
+    private static final int HEADER_SIZE = 13;
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private final Path directory;
+
+    public CanvasJournal(Path archiveDirectory) throws IOException {
+        this.directory = archiveDirectory.resolve(JOURNAL_DIRECTORY);
+        Files.createDirectories(this.directory);
+    }
+
+    /**
+     * @param canvasCode
+     * @return journal size in bytes, 0 if there's no journal
+     * @throws IOException
+     */
+    public synchronized long size(String canvasCode) throws IOException {
+        Path path = this.getPath(canvasCode);
+
+        return Files.exists(path) ? Files.size(path) : 0L;
+    }
+
+    public synchronized void append(String canvasCode, Delta delta) throws IOException {
+        Path path = this.getPath(canvasCode);
+        final boolean create = !Files.exists(path);
+
+        ByteBuffer payload = ByteBuffer.allocate(delta.getPayloadSize());
+        payload.putInt(delta.regions.size());
+
+        for (Region region : delta.regions.values()) {
+            payload.putInt(region.x);
+            payload.putInt(region.y);
+            payload.putInt(region.width);
+            payload.putInt(region.height);
+            payload.asIntBuffer().put(region.color);
+            payload.position(payload.position() + region.color.length * 4);
+        }
+
+        payload.flip();
+
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+
+        ByteBuffer record = ByteBuffer.allocate((create ? HEADER_SIZE : 0) + RECORD_HEADER_SIZE + payload.remaining());
+
+        if (create) {
+            record.putInt(MAGIC);
+            record.putInt(delta.width);
+            record.putInt(delta.height);
+            record.put((byte) delta.colorEncoding.ordinal());
+        }
+
+        record.putInt(payload.remaining());
+        record.putInt((int) crc.getValue());
+        record.put(payload);
+        record.flip();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Read every complete record, stops at
+     * the first broken or incomplete one.
+     * Not locked, so it doesn't wait for appends,
+     * record that is being appended is incomplete
+     *
+     * @param canvasCode
+     * @return null if there's no journal
+     * @throws IOException
+     */
+    public @Nullable Replay read(String canvasCode) throws IOException {
+        Path path = this.getPath(canvasCode);
+        ByteBuffer buffer;
+
+        try {
+            buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+            throw new IOException("Broken canvas journal " + path);
+        }
+
+        final int width = buffer.getInt();
+        final int height = buffer.getInt();
+        final AbstractCanvasData.ColorEncoding colorEncoding = AbstractCanvasData.ColorEncoding.values()[buffer.get()];
+
+        Replay replay = new Replay(width, height, colorEncoding);
+        CRC32 crc = new CRC32();
+
+        while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+            final int length = buffer.getInt();
+            final int checksum = buffer.getInt();
+
+            if (length < 4 || length > buffer.remaining()) {
+                Zetter.LOG.warn("Canvas journal " + path + " has incomplete record, ignoring the rest");
+                break;
+            }
+
+            ByteBuffer payload = buffer.slice(buffer.position(), length);
+            buffer.position(buffer.position() + length);
+
+            crc.reset();
+            crc.update(payload.duplicate());
+
+            if ((int) crc.getValue() != checksum) {
+                Zetter.LOG.warn("Canvas journal " + path + " has broken record, ignoring the rest");
+                break;
+            }
+
+            final int regionCount = payload.getInt();
+
+            for (int i = 0; i < regionCount; i++) {
+                final int x = payload.getInt();
+                final int y = payload.getInt();
+                final int regionWidth = payload.getInt();
+                final int regionHeight = payload.getInt();
+
+                int[] color = new int[regionWidth * regionHeight];
+                payload.asIntBuffer().get(color);
+                payload.position(payload.position() + color.length * 4);
+
+                replay.regions.add(new Region(x, y, regionWidth, regionHeight, color));
+            }
+        }
+
+        return replay;
+    }
+
+    public synchronized void delete(String canvasCode) throws IOException {
+        Files.deleteIfExists(this.getPath(canvasCode));
+    }
+
+    /**
+     * Codes of canvases which have journals,
+     * used to recover after crash
+     * @return
+     * @throws IOException
+     */
+    public synchronized List<String> list() throws IOException {
+        List<String> canvasCodes = new ArrayList<>();
+
+        try (DirectoryStream<Path> journals = Files.newDirectoryStream(this.directory, "*" + JOURNAL_EXTENSION)) {
+            for (Path journal : journals) {
+                final String fileName = journal.getFileName().toString();
+                canvasCodes.add(fileName.substring(0, fileName.length() - JOURNAL_EXTENSION.length()));
+            }
+        }
+
+        return canvasCodes;
+    }
+
+    private Path getPath(String canvasCode) {
+        return this.directory.resolve(canvasCode + JOURNAL_EXTENSION);
+    }
+
+    /**
+     * Changed regions of the canvas, copied on the
+     * server thread when canvas is saved
+     */
+    public static class Delta {
+        private final int width;
+        private final int height;
+        private final AbstractCanvasData.ColorEncoding colorEncoding;
+
+        /**
+         * Regions are tiles, keyed by tile index, so
+         * newer delta replaces same tiles of older one
+         */
+        private final TreeMap<Integer, Region> regions = new TreeMap<>();
+
+        private Delta(int width, int height, AbstractCanvasData.ColorEncoding colorEncoding) {
+            this.width = width;
+            this.height = height;
+            this.colorEncoding = colorEncoding;
+        }
+
+        /**
+         * Copy tiles changed since given version
+         *
+         * @param canvasData
+         * @param changedTiles
+         * @return
+         */
+        public static Delta capture(AbstractCanvasData canvasData, BitSet changedTiles) {
+            Delta delta = new Delta(canvasData.getWidth(), canvasData.getHeight(), canvasData.getColorEncoding());
+            CanvasTileTracker tiles = canvasData.getTiles();
+
+            for (int tileIndex = changedTiles.nextSetBit(0); tileIndex >= 0; tileIndex = changedTiles.nextSetBit(tileIndex + 1)) {
+                final int tileX = tiles.getTileX(tileIndex);
+                final int tileY = tiles.getTileY(tileIndex);
+                final int tileWidth = tiles.getTileWidth(tileIndex);
+                final int tileHeight = tiles.getTileHeight(tileIndex);
+
+                int[] color = new int[tileWidth * tileHeight];
+
+                for (int y = 0; y < tileHeight; y++) {
+                    for (int x = 0; x < tileWidth; x++) {
+                        color[y * tileWidth + x] = canvasData.getColorAt(canvasData.getPixelIndexUnchecked(tileX + x, tileY + y));
+                    }
+                }
+
+                delta.regions.put(tileIndex, new Region(tileX, tileY, tileWidth, tileHeight, color));
+            }
+
+            return delta;
+        }
+
+        /**
+         * Combine with newer delta
+         * @param newer
+         * @return
+         */
+        public Delta merge(Delta newer) {
+            Delta merged = new Delta(newer.width, newer.height, newer.colorEncoding);
+            merged.regions.putAll(this.regions);
+            merged.regions.putAll(newer.regions);
+
+            return merged;
+        }
+
+        public int getPixelCount() {
+            return this.width * this.height;
+        }
+
+        private int getPayloadSize() {
+            int size = 4;
+
+            for (Region region : this.regions.values()) {
+                size += 16 + region.color.length * 4;
+            }
+
+            return size;
+        }
+    }
+
+    /**
+     * Regions read from journal, in order of appending
+     */
+    public static class Replay {
+        public final int width;
+        public final int height;
+        public final AbstractCanvasData.ColorEncoding colorEncoding;
+
+        private final List<Region> regions = new ArrayList<>();
+
+        private Replay(int width, int height, AbstractCanvasData.ColorEncoding colorEncoding) {
+            this.width = width;
+            this.height = height;
+            this.colorEncoding = colorEncoding;
+        }
+
+        public void applyTo(int[] color) {
+            for (Region region : this.regions) {
+                for (int y = 0; y < region.height; y++) {
+                    System.arraycopy(region.color, y * region.width, color, (region.y + y) * this.width + region.x, region.width);
+                }
+            }
+        }
+    }
+
+    private record Region(int x, int y, int width, int height, int[] color) {
+    }
+}
@@ -0,0 +1,529 @@
+package me.dantaeusb.zetter.storage.archive;
+
+import me.dantaeusb.zetter.Zetter;
+import me.dantaeusb.zetter.storage.AbstractCanvasData;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.StringTag;
+import net.minecraft.nbt.Tag;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Color data of canvases that can't be changed, like paintings,
+ * kept by content hash: paintings with the same pixels, i.e.
+ * copies or paintings signed from the same canvas, share
+ * color data on disk and in memory.
+ *
+ * Every blob has a reference counter, blob is removed
+ * when last painting that uses it is removed.
+ *
+ * Blobs are kept in archives, pixels.N.zca, and for every
+ * archive there's an index, pixels.N.refs, with hash and
+ * counter for every slot. Counters are changed in memory,
+ * and changed indexes are written once per save pass, on
+ * {@link #flush()}. Blobs left without references are removed
+ * only after that, so their slots are not reused before.
+ *
+ * While there are changes that are not written, there's a
+ * marker file, if it's there on start, server was stopped
+ * unexpectedly and counters should be recounted from saved
+ * canvases, see {@link #recover(Map)}.
+ */
+public class CanvasPixelStore {
+    public static final String PIXELS_DIRECTORY = "pixels";
+
+    private static final String ARCHIVE_PREFIX = "pixels.";
+    private static final String INDEX_EXTENSION = ".refs";
+    private static final String CHANGED_MARKER = "pixels.changed";
+
+    private static final String NBT_TAG_HASHES = "Hashes";
+    private static final String NBT_TAG_REFS = "Refs";
+
+    private final Path directory;
+
+    private final Map<Integer, CanvasArchive> archives = new HashMap<>();
+    private final Map<Integer, Index> indexes = new HashMap<>();
+
+    private final Map<String, Integer> blobIds = new HashMap<>();
+    private final BitSet usedBlobIds = new BitSet();
+
+    /**
+     * Decoded colors which are used by loaded paintings,
+     * so paintings with the same pixels share the array
+     */
+    private final Map<String, WeakReference<int[]>> sharedColors = new HashMap<>();
+
+    /**
+     * Indexes changed since last flush, and blobs which
+     * had no references left, removed on flush if
+     * they were not acquired again
+     */
+    private final Set<Integer> changedIndexes = new HashSet<>();
+    private final BitSet releasedBlobIds = new BitSet();
+
+    private int references = 0;
+
+    public CanvasPixelStore(Path archiveDirectory) throws IOException {
+        this.directory = archiveDirectory.resolve(PIXELS_DIRECTORY);
+        Files.createDirectories(this.directory);
+
+        try (DirectoryStream<Path> indexFiles = Files.newDirectoryStream(this.directory, ARCHIVE_PREFIX + "*" + INDEX_EXTENSION)) {
+            for (Path indexFile : indexFiles) {
+                final String fileName = indexFile.getFileName().toString();
+                final int archiveIndex = Integer.parseInt(fileName.substring(ARCHIVE_PREFIX.length(), fileName.length() - INDEX_EXTENSION.length()));
+
+                this.loadIndex(archiveIndex, indexFile);
+            }
+        }
+    }
+
+    /**
+     * Add reference to the blob if it's already stored
+     *
+     * @param contentHash
+     * @return false if there's no such blob, it should be added with {@link #add}
+     * @throws IOException
+     */
+    public synchronized boolean acquire(String contentHash) throws IOException {
+        Integer blobId = this.blobIds.get(contentHash);
+
+        if (blobId == null) {
+            return false;
+        }
+
+        Index index = this.indexes.get(blobId / CanvasArchive.SLOTS);
+        index.refs[blobId % CanvasArchive.SLOTS]++;
+        this.references++;
+
+        this.markChanged(blobId / CanvasArchive.SLOTS);
+
+        return true;
+    }
+
+    /**
+     * Store new blob with one reference
+     *
+     * @param contentHash
+     * @param colorTag encoded color data
+     * @throws IOException
+     */
+    public synchronized void add(String contentHash, CompoundTag colorTag) throws IOException {
+        if (this.acquire(contentHash)) {
+            return;
+        }
+
+        final int blobId = this.usedBlobIds.nextClearBit(0);
+        final int archiveIndex = blobId / CanvasArchive.SLOTS;
+        final int slot = blobId % CanvasArchive.SLOTS;
+
+        CompoundTag blobTag = colorTag.copy();
+        blobTag.putString(AbstractCanvasData.NBT_TAG_CONTENT_HASH, contentHash);
+
+        this.getArchive(archiveIndex).write(slot, blobTag);
+
+        Index index = this.indexes.computeIfAbsent(archiveIndex, k -> new Index());
+        index.hashes[slot] = contentHash;
+        index.refs[slot] = 1;
+
+        this.blobIds.put(contentHash, blobId);
+        this.usedBlobIds.set(blobId);
+        this.references++;
+
+        this.markChanged(archiveIndex);
+    }
+
+    /**
+     * Remove reference, if it was the last one,
+     * blob is removed on {@link #flush()}
+     *
+     * @param contentHash
+     * @throws IOException
+     */
+    public synchronized void release(String contentHash) throws IOException {
+        Integer blobId = this.blobIds.get(contentHash);
+
+        if (blobId == null) {
+            Zetter.LOG.warn("Released unknown canvas pixels " + contentHash);
+            return;
+        }
+
+        final int archiveIndex = blobId / CanvasArchive.SLOTS;
+        final int slot = blobId % CanvasArchive.SLOTS;
+
+        Index index = this.indexes.get(archiveIndex);
+        index.refs[slot]--;
+        this.references--;
+
+        if (index.refs[slot] <= 0) {
+            index.refs[slot] = 0;
+            this.releasedBlobIds.set(blobId);
+        }
+
+        this.markChanged(archiveIndex);
+    }
+
+    /**
+     * Decoded colors, the same array is returned for every
+     * painting with this hash while any of them is loaded.
+     * Returned array should never be modified.
+     *
+     * Blob is read and decoded outside of the lock,
+     * so server thread doesn't wait for the save thread.
+     * Meanwhile slot could be freed and used for another
+     * blob, then it's read again under the lock.
+     *
+     * @param contentHash
+     * @param pixelCount
+     * @return null if there's no such blob
+     */
+    public @Nullable int[] read(String contentHash, int pixelCount) {
+        final int slot;
+        final CanvasArchive archive;
+
+        synchronized (this) {
+            int[] color = this.getSharedColor(contentHash, pixelCount);
+
+            if (color != null) {
+                return color;
+            }
+
+            Integer blobId = this.blobIds.get(contentHash);
+
+            if (blobId == null) {
+                return null;
+            }
+
+            slot = blobId % CanvasArchive.SLOTS;
+
+            try {
+                archive = this.getArchive(blobId / CanvasArchive.SLOTS);
+            } catch (IOException e) {
+                Zetter.LOG.error("Error loading canvas pixels " + contentHash, e);
+                return null;
+            }
+        }
+
+        try {
+            CompoundTag colorTag = archive.read(slot);
+
+            if (colorTag == null || !contentHash.equals(AbstractCanvasData.readContentHash(colorTag))) {
+                colorTag = this.readBlob(contentHash);
+            }
+
+            if (colorTag == null) {
+                return null;
+            }
+
+            int[] color = AbstractCanvasData.decodeColorTag(colorTag, pixelCount);
+
+            synchronized (this) {
+                // Could be read by another thread meanwhile
+                int[] sharedColor = this.getSharedColor(contentHash, pixelCount);
+
+                if (sharedColor != null) {
+                    return sharedColor;
+                }
+
+                this.sharedColors.put(contentHash, new WeakReference<>(color));
+            }
+
+            return color;
+        } catch (Exception e) {
+            Zetter.LOG.error("Error loading canvas pixels " + contentHash, e);
+            return null;
+        }
+    }
+
+    /**
+     * Slow path of {@link #read}, slot can't be
+     * reused while the lock is held
+     *
+     * @param contentHash
+     * @return null if there's no such blob
+     * @throws IOException
+     */
+    private synchronized @Nullable CompoundTag readBlob(String contentHash) throws IOException {
+        Integer blobId = this.blobIds.get(contentHash);
+
+        if (blobId == null) {
+            return null;
+        }
+
+        CompoundTag colorTag = this.getArchive(blobId / CanvasArchive.SLOTS).read(blobId % CanvasArchive.SLOTS);
+
+        if (colorTag == null || !contentHash.equals(AbstractCanvasData.readContentHash(colorTag))) {
+            Zetter.LOG.error("Canvas pixels " + contentHash + " do not match their slot");
+            return null;
+        }
+
+        return colorTag;
+    }
+
+    private @Nullable int[] getSharedColor(String contentHash, int pixelCount) {
+        WeakReference<int[]> reference = this.sharedColors.get(contentHash);
+        int[] color = reference != null ? reference.get() : null;
+
+        return color != null && color.length == pixelCount ? color : null;
+    }
+
+    public synchronized int getBlobCount() {
+        return this.blobIds.size();
+    }
+
+    public synchronized int getReferenceCount() {
+        return this.references;
+    }
+
+    /**
+     * Called once per save pass: write changed indexes,
+     * then remove blobs without references, index is
+     * saved first, so blob is never used without data
+     */
+    public synchronized void flush() {
+        for (CanvasArchive archive : this.archives.values()) {
+            try {
+                archive.flush();
+            } catch (IOException e) {
+                Zetter.LOG.error("Could not flush canvas pixels archive " + archive.getPath(), e);
+            }
+        }
+
+        if (this.changedIndexes.isEmpty()) {
+            return;
+        }
+
+        BitSet removedBlobIds = new BitSet();
+
+        for (int blobId = this.releasedBlobIds.nextSetBit(0); blobId >= 0; blobId = this.releasedBlobIds.nextSetBit(blobId + 1)) {
+            Index index = this.indexes.get(blobId / CanvasArchive.SLOTS);
+            final int slot = blobId % CanvasArchive.SLOTS;
+
+            // Acquired again after release
+            if (index.refs[slot] > 0 || index.hashes[slot] == null) {
+                continue;
+            }
+
+            this.blobIds.remove(index.hashes[slot]);
+            this.sharedColors.remove(index.hashes[slot]);
+            index.hashes[slot] = null;
+
+            removedBlobIds.set(blobId);
+        }
+
+        this.releasedBlobIds.clear();
+
+        try {
+            for (int archiveIndex : this.changedIndexes) {
+                this.saveIndex(archiveIndex);
+            }
+
+            this.changedIndexes.clear();
+
+            for (int blobId = removedBlobIds.nextSetBit(0); blobId >= 0; blobId = removedBlobIds.nextSetBit(blobId + 1)) {
+                this.getArchive(blobId / CanvasArchive.SLOTS).remove(blobId % CanvasArchive.SLOTS);
+                this.usedBlobIds.clear(blobId);
+            }
+
+            Files.deleteIfExists(this.directory.resolve(CHANGED_MARKER));
+        } catch (IOException e) {
+            Zetter.LOG.error("Could not save canvas pixels index", e);
+        }
+    }
+
+    /**
+     * @return true if server was stopped before changed indexes were written
+     */
+    public boolean isRecoveryNeeded() {
+        return Files.exists(this.directory.resolve(CHANGED_MARKER));
+    }
+
+    /**
+     * Set counters to the amount of saved canvases using
+     * every blob. Blobs written after last index save are
+     * not in the index, they're found by content hash,
+     * which is saved with every blob.
+     *
+     * @param references content hash to amount of saved canvases with it
+     * @throws IOException
+     */
+    public synchronized void recover(Map<String, Integer> references) throws IOException {
+        try (DirectoryStream<Path> archiveFiles = Files.newDirectoryStream(this.directory, ARCHIVE_PREFIX + "*" + CanvasArchiveStorage.ARCHIVE_EXTENSION)) {
+            for (Path archiveFile : archiveFiles) {
+                final String fileName = archiveFile.getFileName().toString();
+                final int archiveIndex = Integer.parseInt(fileName.substring(ARCHIVE_PREFIX.length(), fileName.length() - CanvasArchiveStorage.ARCHIVE_EXTENSION.length()));
+
+                CanvasArchive archive = this.getArchive(archiveIndex);
+                Index index = this.indexes.computeIfAbsent(archiveIndex, k -> new Index());
+
+                for (int slot = 0; slot < CanvasArchive.SLOTS; slot++) {
+                    if (index.hashes[slot] != null || !archive.has(slot)) {
+                        continue;
+                    }
+
+                    CompoundTag blobTag = archive.read(slot);
+                    final String contentHash = blobTag != null ? AbstractCanvasData.readContentHash(blobTag) : null;
+                    final int blobId = archiveIndex * CanvasArchive.SLOTS + slot;
+
+                    if (contentHash == null || this.blobIds.containsKey(contentHash)) {
+                        archive.remove(slot);
+                        continue;
+                    }
+
+                    index.hashes[slot] = contentHash;
+                    this.blobIds.put(contentHash, blobId);
+                    this.usedBlobIds.set(blobId);
+                }
+            }
+        }
+
+        this.references = 0;
+
+        for (Map.Entry<Integer, Index> entry : this.indexes.entrySet()) {
+            Index index = entry.getValue();
+
+            for (int slot = 0; slot < CanvasArchive.SLOTS; slot++) {
+                if (index.hashes[slot] == null) {
+                    continue;
+                }
+
+                index.refs[slot] = references.getOrDefault(index.hashes[slot], 0);
+                this.references += index.refs[slot];
+
+                if (index.refs[slot] == 0) {
+                    this.releasedBlobIds.set(entry.getKey() * CanvasArchive.SLOTS + slot);
+                }
+            }
+
+            this.changedIndexes.add(entry.getKey());
+        }
+
+        for (String contentHash : references.keySet()) {
+            if (!this.blobIds.containsKey(contentHash)) {
+                Zetter.LOG.error("Canvas pixels " + contentHash + " are lost");
+            }
+        }
+
+        this.flush();
+    }
+
+    public synchronized void close() {
+        for (CanvasArchive archive : this.archives.values()) {
+            try {
+                archive.close();
+            } catch (IOException e) {
+                Zetter.LOG.error("Could not close canvas pixels archive " + archive.getPath(), e);
+            }
+        }
+
+        this.archives.clear();
+        this.sharedColors.clear();
+    }
+
+    /**
+     * Marker is created with the first change after flush
+     *
+     * @param archiveIndex
+     * @throws IOException
+     */
+    private void markChanged(int archiveIndex) throws IOException {
+        if (this.changedIndexes.isEmpty()) {
+            Path marker = this.directory.resolve(CHANGED_MARKER);
+
+            if (!Files.exists(marker)) {
+                Files.createFile(marker);
+            }
+        }
+
+        this.changedIndexes.add(archiveIndex);
+    }
+
+    private CanvasArchive getArchive(int archiveIndex) throws IOException {
+        CanvasArchive archive = this.archives.get(archiveIndex);
+
+        if (archive == null) {
+            archive = new CanvasArchive(this.directory.resolve(ARCHIVE_PREFIX + archiveIndex + CanvasArchiveStorage.ARCHIVE_EXTENSION));
+            this.archives.put(archiveIndex, archive);
+        }
+
+        return archive;
+    }
+
+    /*
+     * Index
+     */
+
+    private void loadIndex(int archiveIndex, Path indexFile) throws IOException {
+        CompoundTag indexTag = NbtIo.readCompressed(indexFile.toFile());
+        ListTag hashesTag = indexTag.getList(NBT_TAG_HASHES, Tag.TAG_STRING);
+        int[] refs = indexTag.getIntArray(NBT_TAG_REFS);
+
+        if (hashesTag.size() != CanvasArchive.SLOTS || refs.length != CanvasArchive.SLOTS) {
+            throw new IOException("Broken canvas pixels index " + indexFile);
+        }
+
+        Index index = new Index();
+
+        for (int slot = 0; slot < CanvasArchive.SLOTS; slot++) {
+            final String contentHash = hashesTag.getString(slot);
+
+            if (contentHash.isEmpty() || refs[slot] <= 0) {
+                continue;
+            }
+
+            final int blobId = archiveIndex * CanvasArchive.SLOTS + slot;
+
+            index.hashes[slot] = contentHash;
+            index.refs[slot] = refs[slot];
+
+            this.blobIds.put(contentHash, blobId);
+            this.usedBlobIds.set(blobId);
+            this.references += refs[slot];
+        }
+
+        this.indexes.put(archiveIndex, index);
+    }
+
+    /**
+     * Written to temporary file and moved,
+     * so index is never half-written
+     *
+     * @param archiveIndex
+     * @throws IOException
+     */
+    private void saveIndex(int archiveIndex) throws IOException {
+        Index index = this.indexes.get(archiveIndex);
+        ListTag hashesTag = new ListTag();
+
+        for (String contentHash : index.hashes) {
+            hashesTag.add(StringTag.valueOf(contentHash != null ? contentHash : ""));
+        }
+
+        CompoundTag indexTag = new CompoundTag();
+        indexTag.put(NBT_TAG_HASHES, hashesTag);
+        indexTag.putIntArray(NBT_TAG_REFS, index.refs);
+
+        Path indexFile = this.directory.resolve(ARCHIVE_PREFIX + archiveIndex + INDEX_EXTENSION);
+        Path temporaryFile = this.directory.resolve(ARCHIVE_PREFIX + archiveIndex + INDEX_EXTENSION + ".tmp");
+
+        NbtIo.writeCompressed(indexTag, temporaryFile.toFile());
+        Files.move(temporaryFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static class Index {
+        private final String[] hashes = new String[CanvasArchive.SLOTS];
+        private final int[] refs = new int[CanvasArchive.SLOTS];
+    }
+}
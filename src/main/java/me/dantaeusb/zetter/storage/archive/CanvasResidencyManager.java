@@ -0,0 +1,158 @@
+package me.dantaeusb.zetter.storage.archive;
+
+import me.dantaeusb.zetter.storage.AbstractCanvasData;
+
+import javax.annotation.Nullable;
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Keeps loaded canvases in memory within the memory budget.
+ *
+ * Canvases are kept in order of last access, when they take
+ * more memory than allowed, least recently used canvases
+ * that are saved and can be evicted are removed.
+ *
+ * Evicted canvases are kept as weak references: if something
+ * still holds evicted canvas (i.e. easel), same object is
+ * returned on next access and changes made to it are
+ * not lost, as it's brought back when it's changed.
+ */
+public class CanvasResidencyManager {
+    private final LinkedHashMap<String, AbstractCanvasData> resident = new LinkedHashMap<>(16, 0.75F, true);
+    private final Map<String, WeakReference<AbstractCanvasData>> evicted = new HashMap<>();
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /**
+     * @param canvasCode
+     * @return canvas if it's in memory, null if it has to be loaded
+     */
+    public @Nullable AbstractCanvasData get(String canvasCode) {
+        AbstractCanvasData canvasData = this.resident.get(canvasCode);
+
+        if (canvasData == null) {
+            WeakReference<AbstractCanvasData> evictedReference = this.evicted.remove(canvasCode);
+            canvasData = evictedReference != null ? evictedReference.get() : null;
+
+            if (canvasData != null) {
+                this.resident.put(canvasCode, canvasData);
+            }
+        }
+
+        if (canvasData != null) {
+            this.hits++;
+        } else {
+            this.misses++;
+        }
+
+        return canvasData;
+    }
+
+    public void put(String canvasCode, AbstractCanvasData canvasData) {
+        this.evicted.remove(canvasCode);
+        this.resident.put(canvasCode, canvasData);
+    }
+
+    public void remove(String canvasCode) {
+        this.resident.remove(canvasCode);
+        this.evicted.remove(canvasCode);
+    }
+
+    /**
+     * Canvases that should be checked for changes, evicted
+     * canvases that were changed are brought back first
+     * @return
+     */
+    public Set<Map.Entry<String, AbstractCanvasData>> getResidentEntries() {
+        Iterator<Map.Entry<String, WeakReference<AbstractCanvasData>>> iterator = this.evicted.entrySet().iterator();
+
+        while (iterator.hasNext()) {
+            Map.Entry<String, WeakReference<AbstractCanvasData>> entry = iterator.next();
+            AbstractCanvasData canvasData = entry.getValue().get();
+
+            if (canvasData == null) {
+                iterator.remove();
+            } else if (canvasData.isDirty()) {
+                iterator.remove();
+                this.resident.put(entry.getKey(), canvasData);
+            }
+        }
+
+        return this.resident.entrySet();
+    }
+
+    /**
+     * Remove least recently used canvases until
+     * memory used by canvases fits the budget
+     *
+     * @param memoryBudget in bytes
+     * @param canEvict if canvas is not in use and saved
+     * @return amount of evicted canvases
+     */
+    public int evict(long memoryBudget, Predicate<String> canEvict) {
+        this.evicted.values().removeIf(reference -> reference.get() == null);
+
+        long memoryUsage = this.getResidentMemory();
+
+        if (memoryUsage <= memoryBudget) {
+            return 0;
+        }
+
+        int evictedCount = 0;
+        Iterator<Map.Entry<String, AbstractCanvasData>> iterator = this.resident.entrySet().iterator();
+
+        while (iterator.hasNext() && memoryUsage > memoryBudget) {
+            Map.Entry<String, AbstractCanvasData> entry = iterator.next();
+            AbstractCanvasData canvasData = entry.getValue();
+
+            if (canvasData.isDirty() || !canEvict.test(entry.getKey())) {
+                continue;
+            }
+
+            iterator.remove();
+            this.evicted.put(entry.getKey(), new WeakReference<>(canvasData));
+
+            memoryUsage -= canvasData.estimateMemoryUsage();
+            evictedCount++;
+        }
+
+        this.evictions += evictedCount;
+
+        return evictedCount;
+    }
+
+    public long getResidentMemory() {
+        long memoryUsage = 0;
+
+        for (AbstractCanvasData canvasData : this.resident.values()) {
+            memoryUsage += canvasData.estimateMemoryUsage();
+        }
+
+        return memoryUsage;
+    }
+
+    public int getResidentCount() {
+        return this.resident.size();
+    }
+
+    public long getHits() {
+        return this.hits;
+    }
+
+    public long getMisses() {
+        return this.misses;
+    }
+
+    public long getEvictions() {
+        return this.evictions;
+    }
+
+    public void clear() {
+        this.resident.clear();
+        this.evicted.clear();
+    }
+}
@@ -0,0 +1,287 @@
+package me.dantaeusb.zetter.storage.archive;
+
+import me.dantaeusb.zetter.Zetter;
+
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Encodes, compresses and writes canvases on a separate thread,
+ * so autosave won't stop the server thread.
+ *
+ * Server thread only makes snapshots of changed canvases.
+ * If canvas is saved again before previous snapshot was
+ * written, tasks are merged, so only the latest
+ * state is written. Queue is limited, if writer can't keep
+ * up, server thread waits for a free place.
+ *
+ * If canvas could not be written, it's kept as pending
+ * until the next save, which writes the whole canvas
+ * again, see {@link #retryFailed()}.
+ */
+public class CanvasSaveQueue {
+    public static final int CAPACITY = 256;
+
+    private final CanvasArchiveStorage storage;
+    private final Thread thread;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = this.lock.newCondition();
+    private final Condition notFull = this.lock.newCondition();
+    private final Condition drained = this.lock.newCondition();
+
+    private final LinkedHashMap<String, CanvasSaveTask> pending = new LinkedHashMap<>();
+
+    /**
+     * Canvases which were not written, removals
+     * are kept to be submitted again
+     */
+    private final Map<String, CanvasSaveTask> failed = new HashMap<>();
+
+    private boolean writing = false;
+    private @Nullable String writingCode = null;
+    private boolean running = true;
+
+    public CanvasSaveQueue(CanvasArchiveStorage storage) {
+        this.storage = storage;
+
+        this.thread = new Thread(this::run, "Zetter Canvas Saving");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Add canvas to queue, merging with task that is not
+     * written yet. Waits if queue is full.
+     *
+     * @param canvasCode
+     * @param task
+     */
+    void submit(String canvasCode, CanvasSaveTask task) {
+        this.lock.lock();
+
+        try {
+            if (!this.running) {
+                throw new IllegalStateException("Canvas save queue is closed");
+            }
+
+            CanvasSaveTask pendingTask = this.pending.get(canvasCode);
+
+            if (pendingTask != null) {
+                pendingTask.merge(task);
+                return;
+            }
+
+            while (this.pending.size() >= CAPACITY) {
+                this.notFull.awaitUninterruptibly();
+            }
+
+            this.pending.put(canvasCode, task);
+            this.notEmpty.signal();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * If canvas is waiting to be written or being written now,
+     * such canvas should not be removed from memory
+     *
+     * @param canvasCode
+     * @return
+     */
+    public boolean isPending(String canvasCode) {
+        this.lock.lock();
+
+        try {
+            return this.pending.containsKey(canvasCode) || this.failed.containsKey(canvasCode) || canvasCode.equals(this.writingCode);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Submit failed removals again, and take canvases
+     * that were not written, their saved state is unknown,
+     * so they should be saved whole
+     *
+     * @return codes of canvases to save again
+     */
+    public List<String> retryFailed() {
+        this.lock.lock();
+
+        try {
+            List<String> failedCodes = new ArrayList<>();
+
+            for (Map.Entry<String, CanvasSaveTask> failedEntry : this.failed.entrySet()) {
+                final String canvasCode = failedEntry.getKey();
+                final CanvasSaveTask task = failedEntry.getValue();
+
+                if (!task.remove) {
+                    failedCodes.add(canvasCode);
+                    continue;
+                }
+
+                // Newer task goes after removal
+                CanvasSaveTask newerTask = this.pending.remove(canvasCode);
+
+                if (newerTask != null) {
+                    task.merge(newerTask);
+                }
+
+                this.pending.put(canvasCode, task);
+                this.notEmpty.signal();
+            }
+
+            this.failed.clear();
+
+            return failedCodes;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Wait until every submitted canvas is written
+     */
+    public void flush() {
+        this.lock.lock();
+
+        try {
+            while (!this.pending.isEmpty() || this.writing) {
+                this.drained.awaitUninterruptibly();
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Write everything and stop writer thread
+     */
+    public void close() {
+        this.flush();
+
+        this.lock.lock();
+
+        try {
+            this.running = false;
+            this.notEmpty.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+
+        try {
+            this.thread.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Keep canvas pending until next save, changes queued after
+     * failed task are relative to what was not written, so
+     * they're dropped and next save writes whole canvas
+     *
+     * @param canvasCode
+     * @param task
+     */
+    private void fail(String canvasCode, CanvasSaveTask task) {
+        this.lock.lock();
+
+        try {
+            this.failed.merge(canvasCode, task, (failedTask, newerTask) -> {
+                failedTask.merge(newerTask);
+                return failedTask;
+            });
+
+            CanvasSaveTask pendingTask = this.pending.get(canvasCode);
+
+            if (pendingTask != null && !pendingTask.remove && pendingTask.snapshot == null) {
+                pendingTask.delta = null;
+
+                if (pendingTask.propertiesTag == null) {
+                    this.pending.remove(canvasCode);
+                    this.notFull.signal();
+                }
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            String canvasCode;
+            CanvasSaveTask task;
+
+            this.lock.lock();
+
+            try {
+                while (this.pending.isEmpty() && this.running) {
+                    this.notEmpty.awaitUninterruptibly();
+                }
+
+                if (this.pending.isEmpty()) {
+                    return;
+                }
+
+                Iterator<Map.Entry<String, CanvasSaveTask>> iterator = this.pending.entrySet().iterator();
+                Map.Entry<String, CanvasSaveTask> next = iterator.next();
+                iterator.remove();
+
+                canvasCode = next.getKey();
+                task = next.getValue();
+
+                this.writing = true;
+                this.writingCode = canvasCode;
+                this.notFull.signal();
+            } finally {
+                this.lock.unlock();
+            }
+
+            try {
+                this.storage.write(canvasCode, task);
+            } catch (Exception e) {
+                Zetter.LOG.error("Could not save canvas " + canvasCode + ", it will be saved again", e);
+                this.fail(canvasCode, task);
+            }
+
+            boolean queueDrained;
+            this.lock.lock();
+
+            try {
+                queueDrained = this.pending.isEmpty();
+                this.writingCode = null;
+
+                if (!queueDrained) {
+                    this.writing = false;
+                }
+            } finally {
+                this.lock.unlock();
+            }
+
+            if (!queueDrained) {
+                continue;
+            }
+
+            // Flush to disk once queue is empty, not after every canvas
+            this.storage.flushArchives();
+
+            this.lock.lock();
+
+            try {
+                this.writing = false;
+
+                if (this.pending.isEmpty()) {
+                    this.drained.signalAll();
+                }
+            } finally {
+                this.lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package me.dantaeusb.zetter.storage.archive;
+
+import me.dantaeusb.zetter.storage.AbstractCanvasData;
+import net.minecraft.nbt.CompoundTag;
+
+import javax.annotation.Nullable;
+
+/**
+ * What should be written for a canvas: properties, whole
+ * color data, changed regions, or all of them. Tasks for the
+ * same canvas are merged while waiting in the queue.
+ *
+ * Canvas could be removed, then it's removed before
+ * writing anything, as code could be used again.
+ */
+class CanvasSaveTask {
+    boolean remove;
+    @Nullable AbstractCanvasData.SaveSnapshot snapshot;
+    @Nullable CompoundTag propertiesTag;
+    @Nullable CanvasJournal.Delta delta;
+
+    /**
+     * Content hash should be added to properties
+     * by the save queue, it's not computed on
+     * server thread
+     */
+    boolean contentHashPending;
+
+    private CanvasSaveTask() {
+    }
+
+    /**
+     * Whole canvas, if color data was not loaded,
+     * only properties will be written
+     * @param snapshot
+     * @return
+     */
+    static CanvasSaveTask full(AbstractCanvasData.SaveSnapshot snapshot) {
+        CanvasSaveTask task = new CanvasSaveTask();
+        task.propertiesTag = snapshot.getPropertiesTag();
+        task.contentHashPending = snapshot.isContentHashPending();
+
+        if (snapshot.hasColorData()) {
+            task.snapshot = snapshot;
+        }
+
+        return task;
+    }
+
+    /**
+     * Only changed regions, properties are not changed
+     * @param delta
+     * @return
+     */
+    static CanvasSaveTask delta(CanvasJournal.Delta delta) {
+        CanvasSaveTask task = new CanvasSaveTask();
+        task.delta = delta;
+
+        return task;
+    }
+
+    /**
+     * Remove canvas from archives
+     * @return
+     */
+    static CanvasSaveTask removal() {
+        CanvasSaveTask task = new CanvasSaveTask();
+        task.remove = true;
+
+        return task;
+    }
+
+    /**
+     * Combine with newer task for the same canvas,
+     * whole color data replaces earlier changes,
+     * removal replaces everything
+     * @param newer
+     */
+    void merge(CanvasSaveTask newer) {
+        if (newer.remove) {
+            this.remove = true;
+            this.snapshot = null;
+            this.delta = null;
+            this.propertiesTag = null;
+        }
+
+        if (newer.snapshot != null) {
+            this.snapshot = newer.snapshot;
+            this.delta = null;
+        }
+
+        if (newer.delta != null) {
+            this.delta = this.delta != null ? this.delta.merge(newer.delta) : newer.delta;
+        }
+
+        if (newer.propertiesTag != null) {
+            this.propertiesTag = newer.propertiesTag;
+            this.contentHashPending = newer.contentHashPending;
+        }
+    }
+}
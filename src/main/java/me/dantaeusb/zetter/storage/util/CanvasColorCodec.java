@@ -0,0 +1,677 @@
+package me.dantaeusb.zetter.storage.util;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compact encoding of canvas color data for saving and syncing.
+ *
+ * Paintings are usually made with a handful of colors,
+ * so in most cases we can write a palette table and
+ * 1, 2, 4 or 8 bits per pixel instead of 4 bytes.
+ * If there are too many colors, falls back to RGB,
+ * or RGBA if some pixels are not opaque.
+ *
+ * Encoded data is self-describing: first byte is a format,
+ * the rest depends on the format:
+ * SOLID: single ARGB color for the whole canvas
+ * PALETTE: bits per index, palette size - 1, palette ARGB colors, packed indices
+ * RGB: 3 bytes per pixel, alpha is 0xFF
+ * RGBA: 4 bytes per pixel, same as legacy format
+ * FILTERED: version, channels, width, deflated channel planes
+ *
+ * FILTERED is used for saving only: every channel is written
+ * as a separate plane, and every row of the plane is predicted
+ * from neighbour pixels like in PNG, so deflate sees small
+ * repeating differences instead of interleaved raw colors.
+ */
+public class CanvasColorCodec {
+    public static final int MAX_PALETTE_SIZE = 256;
+
+    private static final int OPAQUE = 0xFF000000;
+
+    private static final byte FILTERED_VERSION = 1;
+    private static final int FILTERED_HEADER_SIZE = 7;
+    private static final int FILTER_COUNT = 5;
+
+    public static byte[] encode(int[] color, boolean allowPalette) {
+        if (allowPalette) {
+            int[] palette = collectPalette(color);
+
+            if (palette != null && palette.length == 1) {
+                return encodeSolid(palette[0]);
+            } else if (palette != null) {
+                return encodePalette(color, palette);
+            }
+        }
+
+        return hasAlpha(color) ? encodeRGBA(color) : encodeRGB(color);
+    }
+
+    /**
+     * Smallest encoding for saving: single color, or filtered
+     * and compressed planes, or palette if it's smaller. Noise
+     * does not compress, then raw colors are used
+     *
+     * @param color
+     * @param width canvas width, used to predict rows
+     * @return
+     */
+    public static byte[] encodeCompressed(int[] color, int width) {
+        int[] palette = collectPalette(color);
+
+        if (palette != null && palette.length == 1) {
+            return encodeSolid(palette[0]);
+        }
+
+        byte[] filtered = encodeFiltered(color, width);
+
+        if (palette != null) {
+            byte[] paletted = encodePalette(color, palette);
+
+            if (paletted.length <= filtered.length) {
+                return paletted;
+            }
+        }
+
+        if (filtered.length >= 1 + color.length * (hasAlpha(color) ? 4 : 3)) {
+            return encode(color, false);
+        }
+
+        return filtered;
+    }
+
+    /**
+     * @param data encoded data
+     * @param pixelCount expected amount of pixels
+     * @return ARGB colors
+     */
+    public static int[] decode(byte[] data, int pixelCount) {
+        if (data.length == 0) {
+            throw new IllegalArgumentException("Empty color data");
+        }
+
+        Format format = Format.get(data[0]);
+
+        if (format == null) {
+            throw new IllegalArgumentException("Unknown color data format " + data[0]);
+        }
+
+        return switch (format) {
+            case SOLID -> decodeSolid(data, pixelCount);
+            case PALETTE -> decodePalette(data, pixelCount);
+            case RGB -> decodeRGB(data, pixelCount);
+            case RGBA -> decodeRGBA(data, pixelCount);
+            case FILTERED -> decodeFiltered(data, pixelCount);
+        };
+    }
+
+    /*
+     * Content hash
+     */
+
+    /**
+     * SHA-256 of size and ARGB colors, does not depend
+     * on encoding, so canvases with the same pixels
+     * have the same hash however they were saved
+     *
+     * @param color colors, or null for solid fill
+     * @param fillColor color of every pixel when there's no color array
+     * @param width
+     * @param height
+     * @return lowercase hex string
+     */
+    public static String hash(@Nullable int[] color, int fillColor, int width, int height) {
+        MessageDigest digest;
+
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+
+        ByteBuffer row = ByteBuffer.allocate(Math.max(8, width * 4));
+        row.putInt(width).putInt(height).flip();
+        digest.update(row);
+
+        for (int y = 0; y < height; y++) {
+            row.clear();
+
+            for (int x = 0; x < width; x++) {
+                row.putInt(color != null ? color[y * width + x] : fillColor);
+            }
+
+            row.flip();
+            digest.update(row);
+        }
+
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /*
+     * Solid
+     */
+
+    public static byte[] encodeSolid(int fillColor) {
+        return ByteBuffer.allocate(5).put(Format.SOLID.id).putInt(fillColor).array();
+    }
+
+    /**
+     * Check if data is a single color fill, so
+     * canvas could avoid allocating color array
+     * @param data
+     * @return
+     */
+    public static boolean isSolid(byte[] data) {
+        return data.length == 5 && data[0] == Format.SOLID.id;
+    }
+
+    public static int getSolidColor(byte[] data) {
+        if (!isSolid(data)) {
+            throw new IllegalArgumentException("Color data is not a solid fill");
+        }
+
+        return ByteBuffer.wrap(data, 1, 4).getInt();
+    }
+
+    private static int[] decodeSolid(byte[] data, int pixelCount) {
+        int[] color = new int[pixelCount];
+        Arrays.fill(color, getSolidColor(data));
+
+        return color;
+    }
+
+    /*
+     * Palette
+     */
+
+    /**
+     * Returns unique colors in order of appearance, or null
+     * if there are more than MAX_PALETTE_SIZE colors
+     *
+     * @param color
+     * @return
+     */
+    private static int[] collectPalette(int[] color) {
+        PaletteLookup lookup = new PaletteLookup();
+
+        for (int pixelColor : color) {
+            if (lookup.indexOf(pixelColor) == -1) {
+                if (lookup.size == MAX_PALETTE_SIZE) {
+                    return null;
+                }
+
+                lookup.add(pixelColor);
+            }
+        }
+
+        return Arrays.copyOf(lookup.colors, lookup.size);
+    }
+
+    private static byte[] encodePalette(int[] color, int[] palette) {
+        final int bits = getIndexBits(palette.length);
+        final int indicesPerByte = 8 / bits;
+        final int indicesLength = (color.length + indicesPerByte - 1) / indicesPerByte;
+
+        ByteBuffer buffer = ByteBuffer.allocate(3 + palette.length * 4 + indicesLength);
+        buffer.put(Format.PALETTE.id);
+        buffer.put((byte) bits);
+        buffer.put((byte) (palette.length - 1));
+
+        PaletteLookup lookup = new PaletteLookup();
+
+        for (int paletteColor : palette) {
+            buffer.putInt(paletteColor);
+            lookup.add(paletteColor);
+        }
+
+        int currentByte = 0;
+        int filled = 0;
+
+        for (int pixelColor : color) {
+            currentByte = (currentByte << bits) | lookup.indexOf(pixelColor);
+
+            if (++filled == indicesPerByte) {
+                buffer.put((byte) currentByte);
+                currentByte = 0;
+                filled = 0;
+            }
+        }
+
+        if (filled > 0) {
+            buffer.put((byte) (currentByte << (bits * (indicesPerByte - filled))));
+        }
+
+        return buffer.array();
+    }
+
+    private static int[] decodePalette(byte[] data, int pixelCount) {
+        ByteBuffer buffer = ByteBuffer.wrap(data, 1, data.length - 1);
+
+        final int bits = buffer.get();
+
+        if (bits != 1 && bits != 2 && bits != 4 && bits != 8) {
+            throw new IllegalArgumentException("Unsupported palette index size " + bits);
+        }
+
+        final int paletteSize = (buffer.get() & 0xFF) + 1;
+        int[] palette = new int[paletteSize];
+
+        for (int i = 0; i < paletteSize; i++) {
+            palette[i] = buffer.getInt();
+        }
+
+        final int indicesPerByte = 8 / bits;
+        final int mask = (1 << bits) - 1;
+
+        if (buffer.remaining() < (pixelCount + indicesPerByte - 1) / indicesPerByte) {
+            throw new IllegalArgumentException("Not enough color data");
+        }
+
+        int[] color = new int[pixelCount];
+        int currentByte = 0;
+
+        for (int i = 0; i < pixelCount; i++) {
+            final int position = i % indicesPerByte;
+
+            if (position == 0) {
+                currentByte = buffer.get() & 0xFF;
+            }
+
+            final int index = (currentByte >> (8 - bits * (position + 1))) & mask;
+
+            if (index >= paletteSize) {
+                throw new IllegalArgumentException("Palette index out of bounds");
+            }
+
+            color[i] = palette[index];
+        }
+
+        return color;
+    }
+
+    private static int getIndexBits(int paletteSize) {
+        if (paletteSize <= 2) {
+            return 1;
+        } else if (paletteSize <= 4) {
+            return 2;
+        } else if (paletteSize <= 16) {
+            return 4;
+        }
+
+        return 8;
+    }
+
+    /*
+     * Raw
+     */
+
+    private static byte[] encodeRGB(int[] color) {
+        byte[] data = new byte[1 + color.length * 3];
+        data[0] = Format.RGB.id;
+
+        for (int i = 0; i < color.length; i++) {
+            final int offset = 1 + i * 3;
+
+            data[offset] = (byte) (color[i] >> 16);
+            data[offset + 1] = (byte) (color[i] >> 8);
+            data[offset + 2] = (byte) color[i];
+        }
+
+        return data;
+    }
+
+    private static int[] decodeRGB(byte[] data, int pixelCount) {
+        if (data.length - 1 < pixelCount * 3) {
+            throw new IllegalArgumentException("Not enough color data");
+        }
+
+        int[] color = new int[pixelCount];
+
+        for (int i = 0; i < pixelCount; i++) {
+            final int offset = 1 + i * 3;
+
+            color[i] = OPAQUE
+                | (data[offset] & 0xFF) << 16
+                | (data[offset + 1] & 0xFF) << 8
+                | (data[offset + 2] & 0xFF);
+        }
+
+        return color;
+    }
+
+    private static byte[] encodeRGBA(int[] color) {
+        ByteBuffer buffer = ByteBuffer.allocate(1 + color.length * 4);
+        buffer.put(Format.RGBA.id);
+        buffer.asIntBuffer().put(color);
+
+        return buffer.array();
+    }
+
+    private static int[] decodeRGBA(byte[] data, int pixelCount) {
+        if (data.length - 1 < pixelCount * 4) {
+            throw new IllegalArgumentException("Not enough color data");
+        }
+
+        int[] color = new int[pixelCount];
+        ByteBuffer.wrap(data, 1, data.length - 1).asIntBuffer().get(color);
+
+        return color;
+    }
+
+    /*
+     * Filtered
+     */
+
+    private static byte[] encodeFiltered(int[] color, int width) {
+        if (width <= 0 || color.length % width != 0) {
+            throw new IllegalArgumentException("Color data does not match width " + width);
+        }
+
+        final int height = color.length / width;
+        final int channels = hasAlpha(color) ? 4 : 3;
+        final int rowLength = width + 1;
+
+        byte[] planes = new byte[channels * height * rowLength];
+        byte[] previousRow = new byte[width];
+        byte[] row = new byte[width];
+        byte[] candidate = new byte[width];
+        byte[] best = new byte[width];
+
+        for (int channel = 0; channel < channels; channel++) {
+            // Alpha goes first, then red, green and blue
+            final int shift = (channels == 4 ? 24 : 16) - channel * 8;
+            Arrays.fill(previousRow, (byte) 0);
+
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    row[x] = (byte) (color[y * width + x] >> shift);
+                }
+
+                int bestFilter = 0;
+                long bestScore = Long.MAX_VALUE;
+
+                for (int filter = 0; filter < FILTER_COUNT; filter++) {
+                    final long score = applyFilter(filter, row, previousRow, candidate);
+
+                    if (score < bestScore) {
+                        bestScore = score;
+                        bestFilter = filter;
+                        System.arraycopy(candidate, 0, best, 0, width);
+                    }
+                }
+
+                final int offset = (channel * height + y) * rowLength;
+                planes[offset] = (byte) bestFilter;
+                System.arraycopy(best, 0, planes, offset + 1, width);
+
+                System.arraycopy(row, 0, previousRow, 0, width);
+            }
+        }
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        ByteArrayOutputStream stream = new ByteArrayOutputStream(planes.length / 4 + FILTERED_HEADER_SIZE);
+
+        stream.write(Format.FILTERED.id);
+        stream.write(FILTERED_VERSION);
+        stream.write(channels);
+        stream.writeBytes(ByteBuffer.allocate(4).putInt(width).array());
+
+        try {
+            deflater.setInput(planes);
+            deflater.finish();
+
+            byte[] buffer = new byte[4096];
+
+            while (!deflater.finished()) {
+                final int length = deflater.deflate(buffer);
+                stream.write(buffer, 0, length);
+            }
+        } finally {
+            deflater.end();
+        }
+
+        return stream.toByteArray();
+    }
+
+    private static int[] decodeFiltered(byte[] data, int pixelCount) {
+        if (data.length < FILTERED_HEADER_SIZE) {
+            throw new IllegalArgumentException("Not enough color data");
+        }
+
+        if (data[1] != FILTERED_VERSION) {
+            throw new IllegalArgumentException("Unsupported filtered color data version " + data[1]);
+        }
+
+        final int channels = data[2];
+        final int width = ByteBuffer.wrap(data, 3, 4).getInt();
+
+        if ((channels != 3 && channels != 4) || width <= 0 || pixelCount % width != 0) {
+            throw new IllegalArgumentException("Broken filtered color data");
+        }
+
+        final int height = pixelCount / width;
+        final int rowLength = width + 1;
+
+        byte[] planes = new byte[channels * height * rowLength];
+        Inflater inflater = new Inflater(true);
+
+        try {
+            inflater.setInput(data, FILTERED_HEADER_SIZE, data.length - FILTERED_HEADER_SIZE);
+            int inflated = 0;
+
+            while (inflated < planes.length && !inflater.finished()) {
+                final int length = inflater.inflate(planes, inflated, planes.length - inflated);
+
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+
+                inflated += length;
+            }
+
+            if (inflated != planes.length) {
+                throw new IllegalArgumentException("Not enough color data");
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Broken filtered color data", e);
+        } finally {
+            inflater.end();
+        }
+
+        int[] color = new int[pixelCount];
+
+        if (channels == 3) {
+            Arrays.fill(color, OPAQUE);
+        }
+
+        byte[] previousRow = new byte[width];
+        byte[] row = new byte[width];
+
+        for (int channel = 0; channel < channels; channel++) {
+            final int shift = (channels == 4 ? 24 : 16) - channel * 8;
+            Arrays.fill(previousRow, (byte) 0);
+
+            for (int y = 0; y < height; y++) {
+                final int offset = (channel * height + y) * rowLength;
+                removeFilter(planes[offset], planes, offset + 1, previousRow, row);
+
+                for (int x = 0; x < width; x++) {
+                    color[y * width + x] |= (row[x] & 0xFF) << shift;
+                }
+
+                byte[] swap = previousRow;
+                previousRow = row;
+                row = swap;
+            }
+        }
+
+        return color;
+    }
+
+    private static boolean hasAlpha(int[] color) {
+        for (int pixelColor : color) {
+            if ((pixelColor & OPAQUE) != OPAQUE) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /*
+     * Row prediction, same filters as PNG
+     * with one byte per pixel: none, sub, up, average, paeth
+     */
+
+    /**
+     * @param filter
+     * @param row
+     * @param previousRow
+     * @param output filtered row
+     * @return sum of absolute differences, lower is
+     * usually better compressed
+     */
+    private static long applyFilter(int filter, byte[] row, byte[] previousRow, byte[] output) {
+        long score = 0;
+
+        for (int x = 0; x < row.length; x++) {
+            final int left = x > 0 ? row[x - 1] & 0xFF : 0;
+            final int up = previousRow[x] & 0xFF;
+            final int upLeft = x > 0 ? previousRow[x - 1] & 0xFF : 0;
+
+            output[x] = (byte) ((row[x] & 0xFF) - predict(filter, left, up, upLeft));
+            score += Math.abs(output[x]);
+        }
+
+        return score;
+    }
+
+    private static void removeFilter(int filter, byte[] data, int offset, byte[] previousRow, byte[] row) {
+        if (filter < 0 || filter >= FILTER_COUNT) {
+            throw new IllegalArgumentException("Unknown row filter " + filter);
+        }
+
+        for (int x = 0; x < row.length; x++) {
+            final int left = x > 0 ? row[x - 1] & 0xFF : 0;
+            final int up = previousRow[x] & 0xFF;
+            final int upLeft = x > 0 ? previousRow[x - 1] & 0xFF : 0;
+
+            row[x] = (byte) (data[offset + x] + predict(filter, left, up, upLeft));
+        }
+    }
+
+    private static int predict(int filter, int left, int up, int upLeft) {
+        return switch (filter) {
+            case 1 -> left;
+            case 2 -> up;
+            case 3 -> (left + up) >> 1;
+            case 4 -> paeth(left, up, upLeft);
+            default -> 0;
+        };
+    }
+
+    private static int paeth(int left, int up, int upLeft) {
+        final int estimate = left + up - upLeft;
+        final int leftDistance = Math.abs(estimate - left);
+        final int upDistance = Math.abs(estimate - up);
+        final int upLeftDistance = Math.abs(estimate - upLeft);
+
+        if (leftDistance <= upDistance && leftDistance <= upLeftDistance) {
+            return left;
+        } else if (upDistance <= upLeftDistance) {
+            return up;
+        }
+
+        return upLeft;
+    }
+
+    public enum Format {
+        RGBA((byte) 0),
+        RGB((byte) 1),
+        PALETTE((byte) 2),
+        SOLID((byte) 3),
+        FILTERED((byte) 4);
+
+        public final byte id;
+
+        Format(byte id) {
+            this.id = id;
+        }
+
+        public static Format get(byte id) {
+            for (Format format : Format.values()) {
+                if (format.id == id) {
+                    return format;
+                }
+            }
+
+            return null;
+        }
+    }
+
+    /**
+     * Small open-addressing color to index map, palette
+     * is limited so we can use fixed table without resizing
+     */
+    private static class PaletteLookup {
+        private static final int TABLE_SIZE = MAX_PALETTE_SIZE * 2;
+
+        private final int[] keys = new int[TABLE_SIZE];
+        private final int[] values = new int[TABLE_SIZE];
+        private final boolean[] used = new boolean[TABLE_SIZE];
+
+        private final int[] colors = new int[MAX_PALETTE_SIZE];
+        private int size = 0;
+
+        // Paintings have large areas of same color
+        private int lastColor;
+        private int lastIndex = -1;
+
+        public int indexOf(int color) {
+            if (this.lastIndex != -1 && this.lastColor == color) {
+                return this.lastIndex;
+            }
+
+            int slot = hash(color);
+
+            while (this.used[slot]) {
+                if (this.keys[slot] == color) {
+                    this.lastColor = color;
+                    this.lastIndex = this.values[slot];
+
+                    return this.lastIndex;
+                }
+
+                slot = (slot + 1) & (TABLE_SIZE - 1);
+            }
+
+            return -1;
+        }
+
+        public void add(int color) {
+            int slot = hash(color);
+
+            while (this.used[slot]) {
+                slot = (slot + 1) & (TABLE_SIZE - 1);
+            }
+
+            this.used[slot] = true;
+            this.keys[slot] = color;
+            this.values[slot] = this.size;
+            this.colors[this.size++] = color;
+        }
+
+        private static int hash(int color) {
+            return (color * 0x9E3779B9 >>> 16) & (TABLE_SIZE - 1);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package me.dantaeusb.zetter.storage.util;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Splits canvas into square tiles and keeps
+ * version of the last change for every tile,
+ * so consumers (renderer, tracker, save path)
+ * could ask what changed since the version they
+ * have seen last time instead of processing
+ * the whole canvas.
+ *
+ * Version is a simple counter which is incremented
+ * on every change, it's not persisted and makes
+ * sense only within the lifetime of canvas object.
+ */
+public class CanvasTileTracker {
+    public static final int TILE_SIZE = 16;
+
+    private final int width;
+    private final int height;
+
+    private final int tilesX;
+    private final int tilesY;
+
+    private final int[] tileVersions;
+    private int version = 0;
+
+    public CanvasTileTracker(int width, int height) {
+        this.width = width;
+        this.height = height;
+
+        this.tilesX = (width + TILE_SIZE - 1) / TILE_SIZE;
+        this.tilesY = (height + TILE_SIZE - 1) / TILE_SIZE;
+
+        this.tileVersions = new int[this.tilesX * this.tilesY];
+    }
+
+    /**
+     * Mark tile containing pixel as changed
+     * @param pixelIndex Integer index, not byte index
+     */
+    public void markPixelChanged(int pixelIndex) {
+        final int pixelX = pixelIndex % this.width;
+        final int pixelY = pixelIndex / this.width;
+
+        this.tileVersions[(pixelY / TILE_SIZE) * this.tilesX + pixelX / TILE_SIZE] = ++this.version;
+    }
+
+    /**
+     * Mark every tile that intersects with the region as changed
+     *
+     * @param x in pixels
+     * @param y in pixels
+     * @param width in pixels
+     * @param height in pixels
+     */
+    public void markRegionChanged(int x, int y, int width, int height) {
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+
+        this.version++;
+
+        for (int tileY = y / TILE_SIZE; tileY <= (y + height - 1) / TILE_SIZE; tileY++) {
+            for (int tileX = x / TILE_SIZE; tileX <= (x + width - 1) / TILE_SIZE; tileX++) {
+                this.tileVersions[tileY * this.tilesX + tileX] = this.version;
+            }
+        }
+    }
+
+    /**
+     * Mark every tile as changed, i.e. when
+     * whole color data is replaced
+     */
+    public void markAllChanged() {
+        this.version++;
+
+        for (int i = 0; i < this.tileVersions.length; i++) {
+            this.tileVersions[i] = this.version;
+        }
+    }
+
+    public int getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Returns tile indices which were changed after given version,
+     * if the version is the current one, returned set is empty
+     *
+     * @param sinceVersion
+     * @return
+     */
+    public BitSet getTilesChangedSince(int sinceVersion) {
+        BitSet changedTiles = new BitSet(this.tileVersions.length);
+
+        if (sinceVersion >= this.version) {
+            return changedTiles;
+        }
+
+        for (int i = 0; i < this.tileVersions.length; i++) {
+            if (this.tileVersions[i] > sinceVersion) {
+                changedTiles.set(i);
+            }
+        }
+
+        return changedTiles;
+    }
+
+    /**
+     * Changed tiles merged into rectangles, consecutive
+     * changed tiles in a row of tiles make one rectangle
+     *
+     * @param sinceVersion
+     * @return x, y, width and height in pixels for every rectangle
+     */
+    public int[] getRegionsChangedSince(int sinceVersion) {
+        final BitSet changedTiles = this.getTilesChangedSince(sinceVersion);
+        int[] regions = new int[changedTiles.cardinality() * 4];
+        int regionCount = 0;
+
+        for (int tile = changedTiles.nextSetBit(0); tile >= 0; tile = changedTiles.nextSetBit(tile + 1)) {
+            final int rowEnd = (tile / this.tilesX + 1) * this.tilesX;
+            int lastTile = tile;
+
+            while (lastTile + 1 < rowEnd && changedTiles.get(lastTile + 1)) {
+                lastTile++;
+            }
+
+            regions[regionCount * 4] = this.getTileX(tile);
+            regions[regionCount * 4 + 1] = this.getTileY(tile);
+            regions[regionCount * 4 + 2] = this.getTileX(lastTile) + this.getTileWidth(lastTile) - this.getTileX(tile);
+            regions[regionCount * 4 + 3] = this.getTileHeight(tile);
+            regionCount++;
+
+            tile = lastTile;
+        }
+
+        return Arrays.copyOf(regions, regionCount * 4);
+    }
+
+    public boolean hasChangedSince(int sinceVersion) {
+        return sinceVersion < this.version;
+    }
+
+    public int getTilesX() {
+        return this.tilesX;
+    }
+
+    public int getTilesY() {
+        return this.tilesY;
+    }
+
+    public int getTileCount() {
+        return this.tileVersions.length;
+    }
+
+    /*
+     * Tile bounds, in pixels, last row and column could be smaller
+     * than tile size if canvas size is not divisible by it
+     */
+
+    public int getTileX(int tileIndex) {
+        return (tileIndex % this.tilesX) * TILE_SIZE;
+    }
+
+    public int getTileY(int tileIndex) {
+        return (tileIndex / this.tilesX) * TILE_SIZE;
+    }
+
+    public int getTileWidth(int tileIndex) {
+        return Math.min(TILE_SIZE, this.width - this.getTileX(tileIndex));
+    }
+
+    public int getTileHeight(int tileIndex) {
+        return Math.min(TILE_SIZE, this.height - this.getTileY(tileIndex));
+    }
+}